@@ -0,0 +1,59 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import models.CouncillorType;
+import models.Host;
+import models.HostList;
+import models.Message;
+import models.MessageType;
+import models.PaxosRole;
+import utils.BinaryMessageCodec;
+import utils.JavaSerializationCodec;
+import utils.MessageCodec;
+
+/*
+ * Encode and decode throughput of the binary codec against Java
+ * serialization. The frame size of each codec is printed during setup.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodecBenchmark {
+
+    @Param({ "JAVA", "BINARY" })
+    public String codecName;
+
+    private MessageCodec codec;
+    private Message message;
+    private byte[] frame;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        HostList hostList = new HostList();
+        for (int i = 1; i <= 9; i++) {
+            hostList.addHost(new Host("127.0.0.1", 4569 + i, "M" + i, PaxosRole.ACCEPTOR, CouncillorType.M4_9));
+        }
+        Host sender = hostList.getHosts().get(0);
+        codec = "BINARY".equals(codecName) ? new BinaryMessageCodec(hostList) : new JavaSerializationCodec();
+        message = new Message(MessageType.PROPOSE, 12, "M1", sender);
+        frame = codec.encode(message);
+        System.out.println(codecName + " frame size: " + frame.length + " bytes");
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return codec.encode(message);
+    }
+
+    @Benchmark
+    public Message decode() throws IOException {
+        return codec.decode(frame, 0, frame.length);
+    }
+}
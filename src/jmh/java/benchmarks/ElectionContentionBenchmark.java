@@ -0,0 +1,107 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import council.M1;
+import council.M4_9;
+import models.CouncillorType;
+import models.Host;
+import models.HostList;
+import models.PaxosRole;
+import paxos.PaxosNode;
+import utils.InMemoryNetwork;
+
+/*
+ * Time until an election is decided when several proposers start it at the
+ * same moment, with jittered backoff after a NACK against retrying at once.
+ * Acceptors follow the M4_9 profile with millisecond send delays so ballots
+ * are in flight long enough to collide. Each invocation runs on a fresh
+ * cluster over the in-memory network.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ElectionContentionBenchmark {
+
+    private static final String ADDRESS = "127.0.0.1";
+    private static final int ACCEPTORS = 5;
+
+    @Param({ "1", "2", "4", "8" })
+    public int proposerCount;
+
+    @Param({ "JITTERED", "IMMEDIATE" })
+    public String backoff;
+
+    @Param({ "20" })
+    public int sendDelayMillis;
+
+    private List<PaxosNode> nodes;
+    private List<PaxosNode> proposers;
+    private PaxosNode learner;
+
+    @Setup(Level.Invocation)
+    public void setup() {
+        InMemoryNetwork network = new InMemoryNetwork();
+        HostList hostList = new HostList();
+        int port = 4570;
+        List<Host> proposerHosts = new ArrayList<>();
+        for (int i = 0; i < proposerCount; i++) {
+            Host host = new Host(ADDRESS, port++, "P" + i, PaxosRole.PROPOSER, CouncillorType.M1);
+            hostList.addHost(host);
+            proposerHosts.add(host);
+        }
+        List<Host> acceptorHosts = new ArrayList<>();
+        for (int i = 0; i < ACCEPTORS; i++) {
+            Host host = new Host(ADDRESS, port++, "A" + i, PaxosRole.ACCEPTOR, CouncillorType.M4_9);
+            hostList.addHost(host);
+            acceptorHosts.add(host);
+        }
+        Host learnerHost = new Host(ADDRESS, port, "L", PaxosRole.LEARNER, CouncillorType.M1);
+        hostList.addHost(learnerHost);
+
+        nodes = new ArrayList<>();
+        proposers = new ArrayList<>();
+        for (Host host : proposerHosts) {
+            M1 proposer = new M1(host, hostList, network.connect(host));
+            if ("IMMEDIATE".equals(backoff)) {
+                proposer.setBackoff(0, 0);
+            }
+            proposers.add(proposer);
+            nodes.add(proposer);
+        }
+        for (Host host : acceptorHosts) {
+            M4_9 acceptor = new M4_9(host, hostList, network.connect(host));
+            acceptor.setSendDelay(sendDelayMillis);
+            acceptor.setReceiveDelay(0);
+            nodes.add(acceptor);
+        }
+        learner = new M1(learnerHost, hostList, network.connect(learnerHost));
+        nodes.add(learner);
+        for (PaxosNode node : nodes) {
+            node.setQuiet(true);
+            node.startNode();
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+        for (PaxosNode node : nodes) {
+            node.stopNode();
+        }
+    }
+
+    @Benchmark
+    public Object elect() throws Exception {
+        for (PaxosNode proposer : proposers) {
+            proposer.initiateElection();
+        }
+        return learner.whenLearned(0).get(60, TimeUnit.SECONDS);
+    }
+}
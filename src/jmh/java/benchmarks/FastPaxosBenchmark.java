@@ -0,0 +1,186 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.*;
+
+import models.CouncillorType;
+import models.Host;
+import models.HostList;
+import models.Message;
+import models.PaxosRole;
+import paxos.PaxosNode;
+import utils.InMemoryNetwork;
+import utils.NodeSetupUtils;
+import utils.Transport;
+
+/*
+ * Time from clients sending values until the learner has applied them, in
+ * classic mode, where a client's value travels through the leader, against
+ * fast mode, where it goes straight to the acceptors. Every message is
+ * delayed by a random 1 to 3 milliseconds, so concurrent values can reach the
+ * acceptors in different orders. Each invocation has every client send one
+ * value at once; with more than one client, fast rounds collide and fall back
+ * to classic rounds. In classic mode the hop from client to leader is
+ * modelled by submitting to the leader after one message delay. The number of
+ * collisions is printed at the end of each trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FastPaxosBenchmark {
+
+    private static final String ADDRESS = "127.0.0.1";
+    private static final int ACCEPTORS = 3;
+    private static final int MIN_DELAY_MICROS = 1000;
+    private static final int MAX_DELAY_MICROS = 3000;
+
+    @Param({ "CLASSIC", "FAST" })
+    public String mode;
+
+    @Param({ "1", "4" })
+    public int clientCount;
+
+    private ScheduledExecutorService links;
+    private List<PaxosNode> nodes;
+    private List<PaxosNode> clients;
+    private PaxosNode leader;
+    private PaxosNode learner;
+    private int submitted;
+    /* learner slots already looked at */
+    private int scannedSlot;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        links = Executors.newSingleThreadScheduledExecutor();
+        InMemoryNetwork network = new InMemoryNetwork();
+        HostList hostList = new HostList();
+        int port = 4570;
+        hostList.addHost(new Host(ADDRESS, port++, "P", PaxosRole.PROPOSER, CouncillorType.M1));
+        for (int i = 0; i < ACCEPTORS; i++) {
+            hostList.addHost(new Host(ADDRESS, port++, "A" + i, PaxosRole.ACCEPTOR, CouncillorType.M1));
+        }
+        // the learners double as clients
+        for (int i = 0; i < clientCount; i++) {
+            hostList.addHost(new Host(ADDRESS, port++, "L" + i, PaxosRole.LEARNER, CouncillorType.M1));
+        }
+
+        nodes = new ArrayList<>();
+        clients = new ArrayList<>();
+        for (Host host : hostList.getHosts()) {
+            PaxosNode node = NodeSetupUtils.createNode(host, hostList,
+                    new DelayedTransport(network.connect(host), links));
+            node.setQuiet(true);
+            node.setFastMode("FAST".equals(mode));
+            node.startNode();
+            nodes.add(node);
+            if (host.getRole() == PaxosRole.LEARNER) {
+                clients.add(node);
+            }
+        }
+        leader = nodes.get(0);
+        learner = clients.get(0);
+        leader.submit("first");
+        learner.whenLearned(0).get(10, TimeUnit.SECONDS);
+        submitted = 1;
+        scannedSlot = 1;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.println(mode + " with " + clientCount + " clients: "
+                + leader.getMetrics().counter("proposer.collisions").get() + " collisions");
+        for (PaxosNode node : nodes) {
+            node.stopNode();
+        }
+        links.shutdownNow();
+    }
+
+    /*
+     * Values caught in a collision may be decided twice, so the learner's log
+     * is scanned for the values themselves rather than counted
+     */
+    @Benchmark
+    public int decideValues() {
+        Set<String> waiting = new HashSet<>();
+        for (PaxosNode client : clients) {
+            String value = client.getId() + "-" + submitted++;
+            waiting.add(value);
+            if ("FAST".equals(mode)) {
+                client.submit(value);
+            } else {
+                links.schedule(() -> leader.submit(value), delayMicros(), TimeUnit.MICROSECONDS);
+            }
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!waiting.isEmpty()) {
+            Object value = learner.getLearnedValue(scannedSlot);
+            if (value != null) {
+                waiting.remove(value);
+                scannedSlot++;
+            } else if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Values not decided: " + waiting);
+            } else {
+                LockSupport.parkNanos(20_000);
+            }
+        }
+        return scannedSlot;
+    }
+
+    private static int delayMicros() {
+        return ThreadLocalRandom.current().nextInt(MIN_DELAY_MICROS, MAX_DELAY_MICROS + 1);
+    }
+
+    /* Hands every message to the network after a random delay */
+    private static final class DelayedTransport implements Transport {
+        private final Transport transport;
+        private final ScheduledExecutorService links;
+
+        DelayedTransport(Transport transport, ScheduledExecutorService links) {
+            this.transport = transport;
+            this.links = links;
+        }
+
+        @Override
+        public void sendMessage(Message message, Host targetHost) {
+            links.schedule(() -> transport.sendMessage(message, targetHost), delayMicros(), TimeUnit.MICROSECONDS);
+        }
+
+        @Override
+        public void startListening(BlockingQueue<Message> messageQueue) {
+            transport.startListening(messageQueue);
+        }
+
+        @Override
+        public void stopListening() {
+            transport.stopListening();
+        }
+
+        @Override
+        public void startMessageProcessing() {
+            transport.startMessageProcessing();
+        }
+
+        @Override
+        public void stopMessageProcessing() {
+            transport.stopMessageProcessing();
+        }
+
+        @Override
+        public Host getLocalHost() {
+            return transport.getLocalHost();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import models.CouncillorType;
+import models.Host;
+import models.HostList;
+import models.PaxosRole;
+
+/*
+ * Role filtering on the host list, which runs on every broadcast. A fifth of
+ * the hosts are proposers, a fifth learners and the rest acceptors.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HostListBenchmark {
+
+    @Param({ "9", "101" })
+    public int hostCount;
+
+    private HostList hostList;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        hostList = new HostList();
+        for (int i = 0; i < hostCount; i++) {
+            PaxosRole role = i % 5 == 0 ? PaxosRole.PROPOSER : i % 5 == 1 ? PaxosRole.LEARNER : PaxosRole.ACCEPTOR;
+            hostList.addHost(new Host("127.0.0.1", 5000 + i, "M" + (i + 1), role, CouncillorType.M4_9));
+        }
+    }
+
+    @Benchmark
+    public List<Host> getAcceptorHosts() {
+        return hostList.getAcceptorHosts();
+    }
+
+    @Benchmark
+    public List<Host> getLearnerHosts() {
+        return hostList.getLearnerHosts();
+    }
+
+    @Benchmark
+    public List<Host> getHosts() {
+        return hostList.getHosts();
+    }
+}
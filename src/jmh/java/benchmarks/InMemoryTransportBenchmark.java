@@ -0,0 +1,50 @@
+package benchmarks;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import models.Host;
+import models.Message;
+import models.MessageType;
+import models.PaxosRole;
+import utils.InMemoryNetwork;
+import utils.InMemoryTransport;
+
+/*
+ * Messages per second through the in-memory transport, for comparison with
+ * the TCP receive paths in ReceivePathBenchmark. Each operation sends one
+ * message and takes it from the receiver's queue.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InMemoryTransportBenchmark {
+
+    private InMemoryTransport sender;
+    private Host receiverHost;
+    private BlockingQueue<Message> messageQueue;
+    private Message message;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        InMemoryNetwork network = new InMemoryNetwork();
+        Host senderHost = new Host("127.0.0.1", 4570, "sender", PaxosRole.PROPOSER);
+        receiverHost = new Host("127.0.0.1", 4571, "receiver", PaxosRole.ACCEPTOR);
+        sender = network.connect(senderHost);
+        messageQueue = new LinkedTransferQueue<>();
+        network.connect(receiverHost).startListening(messageQueue);
+        message = new Message(MessageType.PREPARE, 1, "M1", senderHost);
+    }
+
+    @Benchmark
+    public Message sendAndReceive() throws InterruptedException {
+        sender.sendMessage(message, receiverHost);
+        return messageQueue.take();
+    }
+}
@@ -0,0 +1,108 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import kv.KeyValueStore;
+import kv.KvCommand;
+import kv.LongHashMap;
+
+/*
+ * Apply throughput of the key-value store, with no cluster around it. The
+ * map benchmarks put and get KEYS random long keys in the LongHashMap the
+ * store keeps its entries in and in a HashMap<Long, String>, which boxes
+ * every key and allocates an entry per mapping. The apply benchmarks feed
+ * the store a slot's worth of BATCH puts, one apply() call per command
+ * against one applyBatch() call, which takes the store's lock once.
+ * Scores are operations, i.e. keys or commands, per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class KeyValueStoreBenchmark {
+
+    private static final int KEYS = 1 << 16;
+    private static final int BATCH = 100;
+
+    private long[] keys;
+    private String[] values;
+    private LongHashMap<String> longHashMap;
+    private HashMap<Long, String> hashMap;
+    private KeyValueStore store;
+    private long nextRequestId;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        keys = new long[KEYS];
+        values = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = random.nextLong();
+            values[i] = "value-" + i;
+        }
+        longHashMap = new LongHashMap<>(KEYS);
+        hashMap = new HashMap<>(KEYS * 2);
+        store = new KeyValueStore(KEYS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public int longHashMapPutGet() {
+        int found = 0;
+        for (int i = 0; i < KEYS; i++) {
+            longHashMap.put(keys[i], values[i]);
+        }
+        for (int i = 0; i < KEYS; i++) {
+            found += longHashMap.get(keys[i]) != null ? 1 : 0;
+        }
+        return found;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public int hashMapPutGet() {
+        int found = 0;
+        for (int i = 0; i < KEYS; i++) {
+            hashMap.put(keys[i], values[i]);
+        }
+        for (int i = 0; i < KEYS; i++) {
+            found += hashMap.get(keys[i]) != null ? 1 : 0;
+        }
+        return found;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public Object applySingly() {
+        Object last = null;
+        for (Object command : nextBatch()) {
+            last = store.apply(command);
+        }
+        return last;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public Object applyBatched() {
+        return store.applyBatch(nextBatch());
+    }
+
+    /* Fresh requests, so none is answered from the session; each frees the results before it */
+    private List<Object> nextBatch() {
+        List<Object> batch = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            long requestId = nextRequestId++;
+            int key = (int) (requestId & (KEYS - 1));
+            batch.add(KvCommand.put("client", requestId, requestId, keys[key], values[key]));
+        }
+        return batch;
+    }
+}
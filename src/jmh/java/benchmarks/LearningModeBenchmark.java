@@ -0,0 +1,99 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.*;
+
+import models.CouncillorType;
+import models.Host;
+import models.HostList;
+import models.PaxosRole;
+import paxos.LearningMode;
+import paxos.PaxosNode;
+import utils.InMemoryNetwork;
+import utils.NodeSetupUtils;
+
+/*
+ * Decisions per second of a stable leader with all-to-all learning against a
+ * distinguished learner, for growing clusters of one proposer and equal
+ * numbers of acceptors and learners. Each invocation waits until the last
+ * learner in the host list, which is never the distinguished one, has
+ * applied every value. Messages delivered per decision are printed at the
+ * end of each trial.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LearningModeBenchmark {
+
+    private static final String ADDRESS = "127.0.0.1";
+    private static final int VALUES_PER_INVOCATION = 16;
+
+    @Param({ "9", "25", "101" })
+    public int nodeCount;
+
+    @Param({ "ALL_TO_ALL", "DISTINGUISHED" })
+    public LearningMode learningMode;
+
+    private InMemoryNetwork network;
+    private List<PaxosNode> nodes;
+    private PaxosNode leader;
+    private PaxosNode lastLearner;
+    private int submitted;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        network = new InMemoryNetwork();
+        HostList hostList = new HostList();
+        int port = 4570;
+        hostList.addHost(new Host(ADDRESS, port++, "P", PaxosRole.PROPOSER, CouncillorType.M1));
+        int acceptorCount = (nodeCount - 1) / 2;
+        for (int i = 0; i < acceptorCount; i++) {
+            hostList.addHost(new Host(ADDRESS, port++, "A" + i, PaxosRole.ACCEPTOR, CouncillorType.M1));
+        }
+        for (int i = 1 + acceptorCount; i < nodeCount; i++) {
+            hostList.addHost(new Host(ADDRESS, port++, "L" + i, PaxosRole.LEARNER, CouncillorType.M1));
+        }
+
+        nodes = new ArrayList<>();
+        for (Host host : hostList.getHosts()) {
+            PaxosNode node = NodeSetupUtils.createNode(host, hostList, network.connect(host));
+            node.setQuiet(true);
+            node.setLearningMode(learningMode);
+            node.startNode();
+            nodes.add(node);
+        }
+        leader = nodes.get(0);
+        lastLearner = nodes.get(nodes.size() - 1);
+        submitted = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (PaxosNode node : nodes) {
+            node.stopNode();
+        }
+        if (submitted > 0) {
+            System.out.println(learningMode + " with " + nodeCount + " nodes: "
+                    + network.getDeliveredCount() / submitted + " messages per decision");
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES_PER_INVOCATION)
+    public int decideValues() {
+        for (int i = 0; i < VALUES_PER_INVOCATION; i++) {
+            leader.submit("value-" + submitted++);
+        }
+        while (lastLearner.getAppliedSlotCount() < submitted) {
+            LockSupport.parkNanos(100_000);
+        }
+        return lastLearner.getAppliedSlotCount();
+    }
+}
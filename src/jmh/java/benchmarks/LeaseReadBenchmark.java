@@ -0,0 +1,90 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import models.CouncillorType;
+import models.Host;
+import models.HostList;
+import models.PaxosRole;
+import paxos.PaxosNode;
+import utils.InMemoryNetwork;
+import utils.NodeSetupUtils;
+
+/*
+ * Linearizable reads per second served by a stable leader, with a lease,
+ * where each read waits only for the leader's own learner, against without
+ * one, where each read is a marker put in the log and costs a Phase 2 round.
+ * Nodes talk over the in-memory transport, so the gap is the protocol's
+ * rather than the network's; a real network widens it by a round trip per
+ * read. Reads are issued one after another by each benchmark thread.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LeaseReadBenchmark {
+
+    private static final String ADDRESS = "127.0.0.1";
+    private static final int ACCEPTORS = 3;
+    private static final long LEASE_MILLIS = 2000;
+
+    @Param({ "LEASE", "LOG" })
+    public String readPath;
+
+    private List<PaxosNode> nodes;
+    private PaxosNode leader;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        InMemoryNetwork network = new InMemoryNetwork();
+        HostList hostList = new HostList();
+        int port = 4630;
+        hostList.addHost(new Host(ADDRESS, port++, "P", PaxosRole.PROPOSER, CouncillorType.M1));
+        for (int i = 0; i < ACCEPTORS; i++) {
+            hostList.addHost(new Host(ADDRESS, port++, "A" + i, PaxosRole.ACCEPTOR, CouncillorType.M1));
+        }
+        hostList.addHost(new Host(ADDRESS, port, "L", PaxosRole.LEARNER, CouncillorType.M1));
+
+        nodes = new ArrayList<>();
+        for (Host host : hostList.getHosts()) {
+            PaxosNode node = NodeSetupUtils.createNode(host, hostList, network.connect(host));
+            node.setQuiet(true);
+            node.setLeaderLease("LEASE".equals(readPath) ? LEASE_MILLIS : 0);
+            node.startNode();
+            nodes.add(node);
+        }
+        leader = nodes.get(0);
+        leader.submit("first");
+        nodes.get(nodes.size() - 1).whenLearned(0).get(10, TimeUnit.SECONDS);
+        if ("LEASE".equals(readPath)) {
+            long deadline = System.currentTimeMillis() + 10000;
+            while (leader.getMetrics().getGauges().get("proposer.lease_held").getValue() == 0) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IllegalStateException("Leader never got its lease");
+                }
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.println(readPath + ": " + leader.getMetrics().counter("node.reads_leased").get()
+                + " leased reads, " + leader.getMetrics().counter("node.reads_through_log").get()
+                + " reads through the log");
+        for (PaxosNode node : nodes) {
+            node.stopNode();
+        }
+    }
+
+    @Benchmark
+    public Object read() throws Exception {
+        return leader.read(leader::getConsensusValue).get(10, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,81 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import storage.FileChannelLogStorage;
+import storage.LogStorage;
+import storage.MappedSegmentLogStorage;
+
+/*
+ * Sequential appends and reads of recently written slots for the mapped
+ * segment storage against a plain FileChannel file. Neither side forces to
+ * disk, so this measures the write and read paths rather than the device.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LogStorageBenchmark {
+
+    private static final int RECENT_SLOTS = 1024;
+
+    @Param({ "MAPPED", "FILE_CHANNEL" })
+    public String storageName;
+
+    @Param({ "64", "512" })
+    public int recordBytes;
+
+    private File directory;
+    private LogStorage storage;
+    private byte[] record;
+    private int nextSlot;
+    private int readCursor;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("log-storage-bench").toFile();
+        storage = "MAPPED".equals(storageName)
+                ? new MappedSegmentLogStorage(directory)
+                : new FileChannelLogStorage(new File(directory, "plain.log"));
+        record = new byte[recordBytes];
+        for (nextSlot = 0; nextSlot < RECENT_SLOTS; nextSlot++) {
+            storage.append(nextSlot, record);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        storage.close();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public void append() throws IOException {
+        storage.append(nextSlot++, record);
+        // compact as the log grows so the trial does not fill the disk
+        if (nextSlot % (1 << 20) == 0) {
+            storage.truncateBefore(nextSlot - RECENT_SLOTS);
+        }
+    }
+
+    @Benchmark
+    public int readRecent() throws IOException {
+        readCursor = (readCursor + 1) % RECENT_SLOTS;
+        ByteBuffer view = storage.read(nextSlot - 1 - readCursor);
+        return view.get(view.limit() - 1);
+    }
+}
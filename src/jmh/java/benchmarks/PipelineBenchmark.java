@@ -0,0 +1,104 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.*;
+
+import council.M1;
+import council.M4_9;
+import models.CouncillorType;
+import models.Host;
+import models.HostList;
+import models.PaxosRole;
+import paxos.PaxosNode;
+
+/*
+ * Decisions per second of a stable leader as the pipeline window grows, with
+ * the acceptors running the M4_9 random-delay profile. The delay bounds are
+ * lowered from seconds to milliseconds so a run finishes in reasonable time;
+ * the shape of the curve is what matters. A send delay models time in flight,
+ * which the window hides. A receive delay keeps the acceptor busy and caps
+ * throughput whatever the window.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PipelineBenchmark {
+
+    private static final String ADDRESS = "127.0.0.1";
+    private static final int BASE_PORT = 4600;
+    private static final int ACCEPTORS = 3;
+    private static final int VALUES_PER_INVOCATION = 64;
+
+    @Param({ "1", "4", "16", "64" })
+    public int pipelineWindow;
+
+    @Param({ "20" })
+    public int sendDelayMillis;
+
+    @Param({ "0", "5" })
+    public int receiveDelayMillis;
+
+    private List<PaxosNode> nodes;
+    private PaxosNode leader;
+    private PaxosNode learner;
+    private int submitted;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        HostList hostList = new HostList();
+        Host leaderHost = new Host(ADDRESS, BASE_PORT, "M1", PaxosRole.PROPOSER, CouncillorType.M1);
+        hostList.addHost(leaderHost);
+        List<Host> acceptorHosts = new ArrayList<>();
+        for (int i = 0; i < ACCEPTORS; i++) {
+            Host acceptorHost = new Host(ADDRESS, BASE_PORT + 1 + i, "M" + (4 + i), PaxosRole.ACCEPTOR,
+                    CouncillorType.M4_9);
+            hostList.addHost(acceptorHost);
+            acceptorHosts.add(acceptorHost);
+        }
+        Host learnerHost = new Host(ADDRESS, BASE_PORT + 1 + ACCEPTORS, "M9", PaxosRole.LEARNER, CouncillorType.M1);
+        hostList.addHost(learnerHost);
+
+        nodes = new ArrayList<>();
+        leader = new M1(leaderHost, hostList);
+        nodes.add(leader);
+        for (Host acceptorHost : acceptorHosts) {
+            M4_9 acceptor = new M4_9(acceptorHost, hostList);
+            acceptor.setSendDelay(sendDelayMillis);
+            acceptor.setReceiveDelay(receiveDelayMillis);
+            nodes.add(acceptor);
+        }
+        learner = new M1(learnerHost, hostList);
+        nodes.add(learner);
+        for (PaxosNode node : nodes) {
+            node.startNode();
+        }
+        leader.setPipelineWindow(pipelineWindow);
+        submitted = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (PaxosNode node : nodes) {
+            node.stopNode();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES_PER_INVOCATION)
+    public int decideValues() {
+        for (int i = 0; i < VALUES_PER_INVOCATION; i++) {
+            leader.submit("value-" + submitted++);
+        }
+        while (learner.getAppliedSlotCount() < submitted) {
+            LockSupport.parkNanos(100_000);
+        }
+        return learner.getAppliedSlotCount();
+    }
+}
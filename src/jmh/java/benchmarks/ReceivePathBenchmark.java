@@ -0,0 +1,77 @@
+package benchmarks;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import models.Host;
+import models.Message;
+import models.MessageType;
+import models.PaxosRole;
+import utils.NetworkHandler;
+import utils.NetworkHandler.ReceiveMode;
+
+/*
+ * Compares the blocking thread-per-connection receive path with the selector
+ * based one. Each operation sends one message from one of several senders and
+ * waits for it to arrive in the receiver's queue, so throughput is messages per
+ * second and the sample time percentiles give the p99 latency.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReceivePathBenchmark {
+
+    private static final String ADDRESS = "127.0.0.1";
+    private static final int BASE_PORT = 4590;
+
+    @Param({ "BLOCKING", "NIO" })
+    public ReceiveMode receiveMode;
+
+    @Param({ "1", "8" })
+    public int senderCount;
+
+    private NetworkHandler receiver;
+    private NetworkHandler[] senders;
+    private Host receiverHost;
+    private BlockingQueue<Message> messageQueue;
+    private Message message;
+    private int nextSender;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        receiverHost = new Host(ADDRESS, BASE_PORT, "receiver", PaxosRole.ACCEPTOR);
+        messageQueue = new LinkedBlockingQueue<>();
+        receiver = new NetworkHandler(receiverHost, receiveMode, NetworkHandler.DEFAULT_IO_THREADS);
+        receiver.startListening(messageQueue);
+
+        senders = new NetworkHandler[senderCount];
+        for (int i = 0; i < senderCount; i++) {
+            Host senderHost = new Host(ADDRESS, BASE_PORT + 1 + i, "sender-" + i, PaxosRole.PROPOSER);
+            senders[i] = new NetworkHandler(senderHost);
+            senders[i].startMessageProcessing();
+        }
+        message = new Message(MessageType.PREPARE, 1, "M1", senders[0].getLocalHost());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (NetworkHandler sender : senders) {
+            sender.stopMessageProcessing();
+            sender.stopListening();
+        }
+        receiver.stopListening();
+    }
+
+    @Benchmark
+    public Message sendAndReceive() throws InterruptedException {
+        senders[nextSender].sendMessage(message, receiverHost);
+        nextSender = (nextSender + 1) % senders.length;
+        return messageQueue.take();
+    }
+}
@@ -0,0 +1,68 @@
+package benchmarks;
+
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import utils.NodeThreads;
+import utils.ThreadMode;
+
+/*
+ * Platform against virtual threads for the work a node does: a message handed
+ * between two threads, as from a reader to the message loop, and starting a
+ * short-lived thread. The hand-off is two context switches per operation.
+ * With the gc profiler, the start benchmark also shows the heap each thread
+ * costs. On a JVM without virtual threads both modes create platform threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ThreadModeBenchmark {
+
+    private static final Integer PING = 1;
+
+    @Param({ "PLATFORM", "VIRTUAL" })
+    public ThreadMode mode;
+
+    private final SynchronousQueue<Integer> requests = new SynchronousQueue<>();
+    private final SynchronousQueue<Integer> replies = new SynchronousQueue<>();
+    private Thread echo;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        NodeThreads.setMode(mode);
+        echo = NodeThreads.start("Echo", () -> {
+            try {
+                while (true) {
+                    replies.put(requests.take());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        echo.interrupt();
+        echo.join();
+        NodeThreads.setMode(ThreadMode.PLATFORM);
+    }
+
+    @Benchmark
+    public Integer handOff() throws InterruptedException {
+        requests.put(PING);
+        return replies.take();
+    }
+
+    @Benchmark
+    public void startAndJoin() throws InterruptedException {
+        Thread thread = NodeThreads.start("ShortLived", () -> {
+        });
+        thread.join();
+    }
+}
@@ -0,0 +1,62 @@
+package benchmarks;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import utils.HashedWheelTimer;
+import utils.Timeout;
+
+/*
+ * Cost of scheduling a delayed send and cancelling it, as a retry timer does
+ * once its reply arrives: the hashed wheel against a scheduled executor,
+ * whose delay queue is a heap.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TimerBenchmark {
+
+    private static final Runnable NOOP = () -> {
+    };
+
+    private HashedWheelTimer wheel;
+    private ScheduledThreadPoolExecutor executor;
+    private long delay;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        wheel = new HashedWheelTimer("BenchmarkTimer", 10, 512);
+        executor = new ScheduledThreadPoolExecutor(1);
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        wheel.stop();
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public boolean wheelScheduleAndCancel() {
+        Timeout timeout = wheel.newTimeout(NOOP, nextDelay(), TimeUnit.MILLISECONDS);
+        return timeout.cancel();
+    }
+
+    @Benchmark
+    public boolean executorScheduleAndCancel() {
+        ScheduledFuture<?> future = executor.schedule(NOOP, nextDelay(), TimeUnit.MILLISECONDS);
+        return future.cancel(false);
+    }
+
+    /* delays between 1 and 5 seconds, like the council members' */
+    private long nextDelay() {
+        delay = (delay + 997) % 4000;
+        return 1000 + delay;
+    }
+}
@@ -0,0 +1,151 @@
+package paxos;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import models.Ballot;
+import models.CouncillorType;
+import models.Host;
+import models.HostList;
+import models.Message;
+import models.MessageType;
+import models.PaxosRole;
+import utils.InMemoryNetwork;
+
+/*
+ * Cost of the proposer, acceptor and learner message handlers on their own.
+ * The node behind them never touches the network: sends and broadcasts are
+ * dropped, so only the protocol logic and its allocations are measured. Lives
+ * in the paxos package because the handlers are not public.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConsensusHotPathBenchmark {
+
+    private static final String ADDRESS = "127.0.0.1";
+    private static final int PORT = 4630;
+    private static final int ACCEPTORS = 3;
+    /* acceptors whose ACCEPTED messages make a slot chosen */
+    private static final int QUORUM = ACCEPTORS / 2 + 1;
+    /* the acceptor and learner logs wrap around after this many slots */
+    private static final int SLOTS = 1024;
+
+    private OfflineNode node;
+    private Message[] promises;
+    private Message prepare;
+    private Message[] proposes;
+    private Message[] accepts;
+    private int nextPropose;
+    private int nextAccept;
+
+    /* A node whose outgoing messages go nowhere */
+    static class OfflineNode extends PaxosNode {
+        OfflineNode(Host host, HostList hostList) {
+            super(host, hostList, new InMemoryNetwork().connect(host));
+        }
+
+        @Override
+        protected void send(Message message, Host targetHost) {
+        }
+
+        @Override
+        protected Message receive(Message message) {
+            return message;
+        }
+
+        @Override
+        protected void broadcast(Message message, List<Host> hosts) {
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        HostList hostList = new HostList();
+        Host self = new Host(ADDRESS, PORT, "M1", PaxosRole.PROPOSER, CouncillorType.M1);
+        hostList.addHost(self);
+        List<Host> acceptors = new ArrayList<>();
+        for (int i = 0; i < ACCEPTORS; i++) {
+            Host acceptor = new Host(ADDRESS, PORT + 1 + i, "M" + (2 + i), PaxosRole.ACCEPTOR, CouncillorType.M4_9);
+            hostList.addHost(acceptor);
+            acceptors.add(acceptor);
+        }
+        node = new OfflineNode(self, hostList);
+
+        // the ballot a reset proposer runs its first Phase 1 with
+        node.proposer.reset();
+        node.proposer.submit("value");
+        int ballot = node.proposer.getProposalNumber();
+        promises = new Message[ACCEPTORS];
+        for (int i = 0; i < ACCEPTORS; i++) {
+            promises[i] = new Message(MessageType.PROMISE, 0, ballot, new ArrayList<>(), acceptors.get(i));
+        }
+        if (!proposerHandlePromise()) {
+            throw new IllegalStateException("Promises for ballot " + Ballot.toString(ballot) + " do not elect the proposer");
+        }
+        prepare = new Message(MessageType.PREPARE, 0, ballot, "M1", self);
+        proposes = new Message[SLOTS];
+        // each slot is accepted by a quorum of distinct acceptors, so the learner learns it
+        accepts = new Message[SLOTS * QUORUM];
+        for (int slot = 0; slot < SLOTS; slot++) {
+            proposes[slot] = new Message(MessageType.PROPOSE, slot, ballot, "command-" + slot, self);
+            for (int i = 0; i < QUORUM; i++) {
+                accepts[slot * QUORUM + i] = new Message(MessageType.ACCEPTED, slot, ballot, "command-" + slot,
+                        acceptors.get(i));
+            }
+        }
+        for (int i = 0; i < QUORUM; i++) {
+            learnerHandleAccepted();
+        }
+        if (node.learner.getNextSlotToApply() != 1) {
+            throw new IllegalStateException("A quorum of ACCEPTED messages did not get slot 0 applied");
+        }
+        node.learner.reset();
+        nextAccept = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        node.stopNode();
+    }
+
+    /* Phase 1 from a fresh proposer until a quorum of promises makes it leader */
+    @Benchmark
+    public boolean proposerHandlePromise() {
+        node.proposer.reset();
+        node.proposer.submit("value");
+        for (Message promise : promises) {
+            node.proposer.handlePromise(promise);
+        }
+        return node.proposer.isLeader();
+    }
+
+    @Benchmark
+    public int acceptorHandlePrepare() {
+        node.acceptor.reset();
+        node.acceptor.handlePrepare(prepare);
+        return node.acceptor.getMaxIdSeen();
+    }
+
+    @Benchmark
+    public void acceptorHandlePropose() {
+        node.acceptor.handlePropose(proposes[nextPropose]);
+        nextPropose = (nextPropose + 1) % SLOTS;
+    }
+
+    @Benchmark
+    public int learnerHandleAccepted() {
+        if (nextAccept == accepts.length) {
+            node.learner.reset();
+            nextAccept = 0;
+        }
+        node.learner.handleAccepted(accepts[nextAccept++]);
+        return node.learner.getNextSlotToApply();
+    }
+}
@@ -2,6 +2,7 @@ package council;
 
 import models.*;
 import paxos.PaxosNode;
+import utils.Transport;
 
 /* Member M1 – M1 has wanted to be council president for a very long time.
 M1 is very chatty over social media and responds to emails/texts/calls almost
@@ -13,9 +14,13 @@ public class M1 extends PaxosNode {
         super(host, hostList);
     }
 
+    public M1(Host host, HostList hostList, Transport transport) {
+        super(host, hostList, transport);
+    }
+
     @Override
     protected void send(Message message, Host targetHost) {
-        this.networkHandler.sendMessage(message, targetHost);
+        this.transport.sendMessage(message, targetHost);
     }
 
     @Override
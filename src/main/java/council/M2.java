@@ -2,7 +2,7 @@ package council;
 
 import models.*;
 import paxos.PaxosNode;
-import java.util.Random;
+import utils.Transport;
 
 /* M2 has also wanted to be council president for a very long time, 
 except their very long time is longer than everybody else's. M2 lives in the Adelaide Hills ]
@@ -11,18 +11,17 @@ and sometimes only to one of the emails in the email thread, so it is unclear wh
 However, M2 sometimes likes to work at Sheoak Café.  When that happens, their responses are instant and M2 replies to all emails. */
 public class M2 extends PaxosNode {
 
-    private boolean atCafe;
-    private Random randomDelay;
+    private boolean atCafe = false;
 
-    private int sendDelay;
-    private int receiveDelay;
+    private int sendDelay = 5000; // default delay for sending messages
+    private int receiveDelay = 5000; // default delay for receiving messages
 
     public M2(Host host, HostList hostList) {
         super(host, hostList);
-        this.atCafe = false;
-        this.randomDelay = new Random();
-        this.sendDelay = 5000; // default delay for sending messages
-        this.receiveDelay = 5000; // default delay for receiving messages
+    }
+
+    public M2(Host host, HostList hostList, Transport transport) {
+        super(host, hostList, transport);
     }
 
     public void setAtCafe(boolean atCafe) {
@@ -43,20 +42,12 @@ public class M2 extends PaxosNode {
     protected void send(Message message, Host targetHost) {
         // When at the café, send messages instantly
         if (atCafe) {
-            this.networkHandler.sendMessage(message, targetHost);
+            this.transport.sendMessage(message, targetHost);
         } else {
             // Simulate a delay when not at the café
-            new Thread(() -> {
-                try {
-
-                    int delay = randomDelay.nextInt(sendDelay) + 1000; // 1 second + random delay
-                    Thread.sleep(delay);
-                    Thread.sleep(delay);
-                    this.networkHandler.sendMessage(message, targetHost);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
-            }).start();
+            int delay = scheduler.getRandom().nextInt(sendDelay) + 1000; // 1 second + random delay
+            // the drawn delay is waited out twice before the reply leaves
+            scheduler.schedule(() -> this.transport.sendMessage(message, targetHost), 2L * delay);
         }
     }
 
@@ -65,8 +56,8 @@ public class M2 extends PaxosNode {
         if (!atCafe) {
             // Simulate a delay in receiving the message when not at the café.
             try {
-                int delay = randomDelay.nextInt(receiveDelay) + 1000; // 1 second + random delay
-                Thread.sleep(delay);
+                int delay = scheduler.getRandom().nextInt(receiveDelay) + 1000; // 1 second + random delay
+                scheduler.sleep(delay);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
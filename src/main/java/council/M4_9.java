@@ -2,46 +2,53 @@ package council;
 
 import models.*;
 import paxos.PaxosNode;
-import java.util.Random;
+import utils.Transport;
 
 /* Members M4-M9 have no particular ambitions about council presidency and no particular preferences or animosities, 
 so they will try to vote fairly. Their jobs keep them fairly busy and as such their response times  will vary. */
 public class M4_9 extends PaxosNode {
 
-    private Random random;
+    private int sendDelay = 5000; // default upper bound on the send delay
+    private int receiveDelay = 5000; // default upper bound on the receive delay
 
     public M4_9(Host host, HostList hostList) {
         super(host, hostList);
-        this.random = new Random();
+    }
+
+    public M4_9(Host host, HostList hostList, Transport transport) {
+        super(host, hostList, transport);
+    }
+
+    // Set a custom upper bound for the random send delay
+    public void setSendDelay(int delay) {
+        this.sendDelay = delay;
+    }
+
+    // Set a custom upper bound for the random receive delay
+    public void setReceiveDelay(int delay) {
+        this.receiveDelay = delay;
     }
 
     @Override
     protected void send(Message message, Host targetHost) {
-        new Thread(() -> {
-            try {
-                int delay = getRandomDelay();
-                Thread.sleep(delay);
-                this.networkHandler.sendMessage(message, targetHost);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-        }).start();
+        int delay = getRandomDelay(sendDelay);
+        scheduler.schedule(() -> this.transport.sendMessage(message, targetHost), delay);
     }
 
     @Override
     protected Message receive(Message message) {
         try {
             // Simulate busy schedule by random delay
-            int delay = getRandomDelay();
-            Thread.sleep(delay);
+            int delay = getRandomDelay(receiveDelay);
+            scheduler.sleep(delay);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
         return message;
     }
 
-    /* Return a random delay, for example, between 0 and 5 seconds */
-    private int getRandomDelay() {
-        return random.nextInt(5000);
+    /* Return a random delay below the bound, by default between 0 and 5 seconds */
+    private int getRandomDelay(int bound) {
+        return bound > 0 ? scheduler.getRandom().nextInt(bound) : 0;
     }
 }
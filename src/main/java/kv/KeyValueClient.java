@@ -0,0 +1,73 @@
+package kv;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import paxos.PaxosNode;
+
+/**
+ * In-process client of the replicated key-value store, bound to a proposer
+ * whose state machine is a {@link KeyValueStore}. Writes are submitted as
+ * {@link KvCommand}s and complete with their result once the node has
+ * applied them. Reads go through {@link PaxosNode#read}, so they are
+ * linearizable, and cost no messages on a leader that holds a lease. Every
+ * client of the cluster needs its own id. Safe to use from several threads.
+ */
+public class KeyValueClient {
+
+    private final PaxosNode node;
+    private final KeyValueStore store;
+    private final String clientId;
+    private final AtomicLong nextRequestId = new AtomicLong();
+    /* requests whose results have not come back yet */
+    private final ConcurrentSkipListSet<Long> pendingRequests = new ConcurrentSkipListSet<>();
+
+    /**
+     * @param node     Proposer to submit to; normally the leader.
+     * @param clientId Id no other client of the cluster uses.
+     * @throws IllegalArgumentException If the node does not run a
+     *                                  KeyValueStore.
+     */
+    public KeyValueClient(PaxosNode node, String clientId) {
+        if (!(node.getStateMachine() instanceof KeyValueStore)) {
+            throw new IllegalArgumentException("Node " + node.getId() + " does not run a KeyValueStore");
+        }
+        this.node = node;
+        this.store = (KeyValueStore) node.getStateMachine();
+        this.clientId = clientId;
+    }
+
+    /* Completes with the key's value, or null if it has none */
+    public CompletableFuture<String> get(long key) {
+        return node.read(() -> store.get(key));
+    }
+
+    /* Completes with the value the key had before, or null */
+    public CompletableFuture<String> put(long key, String value) {
+        long requestId = nextRequestId.getAndIncrement();
+        return send(KvCommand.put(clientId, requestId, oldestPending(requestId), key, value))
+                .thenApply(result -> (String) result);
+    }
+
+    /* Completes with whether the key held the expected value, null meaning none, and was set */
+    public CompletableFuture<Boolean> compareAndSet(long key, String expected, String value) {
+        long requestId = nextRequestId.getAndIncrement();
+        return send(KvCommand.compareAndSet(clientId, requestId, oldestPending(requestId), key, expected, value))
+                .thenApply(result -> (Boolean) result);
+    }
+
+    /* Registers the request and returns the oldest one the store must still remember a result for */
+    private long oldestPending(long requestId) {
+        pendingRequests.add(requestId);
+        return pendingRequests.first();
+    }
+
+    private CompletableFuture<Object> send(KvCommand command) {
+        return node.execute(command).whenComplete((result, error) -> pendingRequests.remove(command.getRequestId()));
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+}
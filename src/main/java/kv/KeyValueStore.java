@@ -0,0 +1,257 @@
+package kv;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import paxos.StateMachine;
+
+/**
+ * Replicated key-value store: string values under long keys, written by
+ * {@link KvCommand}s decided in the log and read locally. Entries are kept in
+ * a {@link LongHashMap}, so applying a command boxes nothing. Every client
+ * has a session holding the results of its requests that may still be
+ * waited for, so a command decided twice is applied once and the second copy
+ * gets the first one's result. Reads and writes take the store's lock; a
+ * batch takes it once.
+ *
+ * A snapshot shares the entries table copy-on-write: taking one freezes the
+ * table and later writes go to an overlay, so the learner does not wait for
+ * a copy of every entry. The snapshot is serialized from the frozen table in
+ * the background, and once it is released the overlay, which holds only the
+ * writes made meanwhile, is merged back.
+ */
+public class KeyValueStore implements StateMachine {
+
+    /* every entry, or while a snapshot holds it, those written before the snapshot */
+    private LongHashMap<String> entries;
+    /* writes made while a snapshot holds the entries table, or null */
+    private LongHashMap<String> overlay;
+    /* keys in the overlay that the entries table does not have */
+    private int overlayOnlyKeys;
+    private final Map<String, Session> sessions = new HashMap<>();
+
+    public KeyValueStore() {
+        this.entries = new LongHashMap<>();
+    }
+
+    /* @param expectedSize Number of keys the store holds before its table grows */
+    public KeyValueStore(int expectedSize) {
+        this.entries = new LongHashMap<>(expectedSize);
+    }
+
+    /* Value of a key on this node, or null; use KeyValueClient.get for a linearizable read */
+    public synchronized String get(long key) {
+        String value = overlay == null ? null : overlay.get(key);
+        return value != null ? value : entries.get(key);
+    }
+
+    public synchronized int size() {
+        return entries.size() + overlayOnlyKeys;
+    }
+
+    @Override
+    public synchronized Object apply(Object command) {
+        return applyCommand(command);
+    }
+
+    @Override
+    public synchronized List<Object> applyBatch(List<Object> commands) {
+        List<Object> results = new ArrayList<>(commands.size());
+        for (Object command : commands) {
+            results.add(applyCommand(command));
+        }
+        return results;
+    }
+
+    /* Values that are not KvCommands, e.g. election nominations, leave the store alone */
+    private Object applyCommand(Object command) {
+        if (!(command instanceof KvCommand)) {
+            return null;
+        }
+        KvCommand write = (KvCommand) command;
+        Session session = sessions.get(write.getClientId());
+        if (session == null) {
+            session = new Session();
+            sessions.put(write.getClientId(), session);
+        }
+        session.forgetBefore(write.getOldestPendingRequestId());
+        long requestId = write.getRequestId();
+        if (session.results.containsKey(requestId)) {
+            return session.results.get(requestId);
+        }
+        if (requestId < session.forgottenBelow) {
+            // a late copy of a request the client has its result for
+            return null;
+        }
+        Object result = execute(write);
+        session.results.put(requestId, result);
+        return result;
+    }
+
+    private Object execute(KvCommand write) {
+        switch (write.getOp()) {
+            case PUT:
+                return put(write.getKey(), write.getValue());
+            case CAS:
+                String current = get(write.getKey());
+                boolean matches = write.getExpected() == null ? current == null
+                        : write.getExpected().equals(current);
+                if (matches) {
+                    put(write.getKey(), write.getValue());
+                }
+                return matches;
+            default:
+                throw new IllegalArgumentException("Unknown operation " + write.getOp());
+        }
+    }
+
+    /* Returns the value the key had before, or null */
+    private String put(long key, String value) {
+        if (overlay == null) {
+            return entries.put(key, value);
+        }
+        String previous = overlay.put(key, value);
+        if (previous != null) {
+            return previous;
+        }
+        previous = entries.get(key);
+        if (previous == null) {
+            overlayOnlyKeys++;
+        }
+        return previous;
+    }
+
+    /*
+     * Freezes the entries table for the snapshot rather than copying it; only
+     * the sessions, which hold the results of requests still in flight, are
+     * copied. A snapshot taken while an earlier one still holds the table
+     * gets a merged copy, since the frozen table cannot take the overlay.
+     */
+    @Override
+    public synchronized Object snapshot() {
+        if (overlay != null) {
+            entries = merged();
+        }
+        overlay = new LongHashMap<>();
+        overlayOnlyKeys = 0;
+        HashMap<String, Session> sessionsCopy = new HashMap<>();
+        for (Map.Entry<String, Session> session : sessions.entrySet()) {
+            sessionsCopy.put(session.getKey(), session.getValue().copy());
+        }
+        return new State(entries, sessionsCopy);
+    }
+
+    /* Writes the overlay back once the newest snapshot no longer holds the table */
+    @Override
+    public synchronized void snapshotReleased(Object snapshot) {
+        if (overlay == null || !(snapshot instanceof State) || ((State) snapshot).entries != entries) {
+            return;
+        }
+        overlay.forEach(entries::put);
+        overlay = null;
+        overlayOnlyKeys = 0;
+    }
+
+    private LongHashMap<String> merged() {
+        LongHashMap<String> merged = new LongHashMap<>(entries.size() + overlayOnlyKeys);
+        entries.forEach(merged::put);
+        overlay.forEach(merged::put);
+        return merged;
+    }
+
+    /* The snapshot's table stays with the snapshot, so the store gets a copy */
+    @Override
+    public synchronized void restore(Object snapshot) {
+        overlay = null;
+        overlayOnlyKeys = 0;
+        sessions.clear();
+        if (!(snapshot instanceof State)) {
+            entries = new LongHashMap<>();
+            return;
+        }
+        State state = (State) snapshot;
+        entries = new LongHashMap<>(state.entries.size());
+        state.entries.forEach(entries::put);
+        for (Map.Entry<String, Session> session : state.sessions.entrySet()) {
+            sessions.put(session.getKey(), session.getValue().copy());
+        }
+    }
+
+    /* Results of one client's requests at or above the oldest it may still wait for */
+    private static final class Session implements Serializable {
+        static final long serialVersionUID = 1L;
+
+        private final TreeMap<Long, Object> results = new TreeMap<>();
+        private long forgottenBelow;
+
+        void forgetBefore(long requestId) {
+            if (requestId > forgottenBelow) {
+                results.headMap(requestId).clear();
+                forgottenBelow = requestId;
+            }
+        }
+
+        Session copy() {
+            Session copy = new Session();
+            copy.results.putAll(results);
+            copy.forgottenBelow = forgottenBelow;
+            return copy;
+        }
+    }
+
+    /*
+     * What a snapshot holds: the frozen entries table, written out as its
+     * count and then key and value pairs, and the sessions
+     */
+    private static final class State implements Serializable {
+        static final long serialVersionUID = 2L;
+
+        private transient LongHashMap<String> entries;
+        private final HashMap<String, Session> sessions;
+
+        State(LongHashMap<String> entries, HashMap<String, Session> sessions) {
+            this.entries = entries;
+            this.sessions = sessions;
+        }
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            out.defaultWriteObject();
+            out.writeInt(entries.size());
+            IOException[] failure = { null };
+            entries.forEach((key, value) -> {
+                if (failure[0] == null) {
+                    try {
+                        out.writeLong(key);
+                        out.writeObject(value);
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        }
+
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            in.defaultReadObject();
+            int size = in.readInt();
+            entries = new LongHashMap<>(size);
+            for (int i = 0; i < size; i++) {
+                entries.put(in.readLong(), (String) in.readObject());
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "KeyValueStore.State{" + entries.size() + " keys, " + sessions.size() + " sessions}";
+        }
+    }
+}
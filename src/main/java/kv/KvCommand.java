@@ -0,0 +1,104 @@
+package kv;
+
+import java.io.Serializable;
+
+/**
+ * A write to the replicated key-value store, decided in the log like any
+ * other value. A command is identified by the client that issued it and the
+ * client's request number, so a command decided twice is applied once. It
+ * also tells the store the client's oldest request still waiting, so results
+ * of older requests can be forgotten.
+ */
+public class KvCommand implements Serializable {
+    static final long serialVersionUID = 42L;
+
+    public enum Op {
+        /* sets the key; the result is the previous value, or null */
+        PUT,
+        /* sets the key only if it holds the expected value, null meaning absent; the result says whether it did */
+        CAS,
+    }
+
+    private final Op op;
+    private final long key;
+    private final String value;
+    private final String expected;
+    private final String clientId;
+    private final long requestId;
+    private final long oldestPendingRequestId;
+
+    private KvCommand(Op op, long key, String value, String expected, String clientId, long requestId,
+            long oldestPendingRequestId) {
+        if (value == null) {
+            throw new IllegalArgumentException("The store does not hold null values");
+        }
+        this.op = op;
+        this.key = key;
+        this.value = value;
+        this.expected = expected;
+        this.clientId = clientId;
+        this.requestId = requestId;
+        this.oldestPendingRequestId = oldestPendingRequestId;
+    }
+
+    public static KvCommand put(String clientId, long requestId, long oldestPendingRequestId, long key, String value) {
+        return new KvCommand(Op.PUT, key, value, null, clientId, requestId, oldestPendingRequestId);
+    }
+
+    public static KvCommand compareAndSet(String clientId, long requestId, long oldestPendingRequestId, long key,
+            String expected, String value) {
+        return new KvCommand(Op.CAS, key, value, expected, clientId, requestId, oldestPendingRequestId);
+    }
+
+    public Op getOp() {
+        return op;
+    }
+
+    public long getKey() {
+        return key;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public String getExpected() {
+        return expected;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public long getRequestId() {
+        return requestId;
+    }
+
+    public long getOldestPendingRequestId() {
+        return oldestPendingRequestId;
+    }
+
+    /* Equal when issued by the same client as the same request */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof KvCommand)) {
+            return false;
+        }
+        KvCommand other = (KvCommand) o;
+        return requestId == other.requestId && clientId.equals(other.clientId);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * clientId.hashCode() + Long.hashCode(requestId);
+    }
+
+    @Override
+    public String toString() {
+        return "KvCommand{" + clientId + '#' + requestId + ' ' + op + ' ' + key
+                + (op == Op.CAS ? " " + expected + "->" : "=") + value + '}';
+    }
+}
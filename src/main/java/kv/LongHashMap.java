@@ -0,0 +1,130 @@
+package kv;
+
+import java.util.Arrays;
+
+/**
+ * Map from primitive long keys to values, with open addressing and linear
+ * probing in two parallel arrays. Keys are never boxed, so a put or get
+ * allocates nothing and touches one or two cache lines instead of chasing an
+ * entry object. Null values are not allowed; a null marks a free slot. Not
+ * thread-safe.
+ *
+ * @param <V> Type of the values.
+ */
+public class LongHashMap<V> {
+    private static final int DEFAULT_CAPACITY = 16;
+    /* table grows once it is three quarters full */
+    private static final int MAX_LOAD_PERCENT = 75;
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+    private int resizeAt;
+
+    public LongHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /* @param expectedSize Number of entries the map holds without growing */
+    public LongHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(DEFAULT_CAPACITY,
+                (int) Math.min(1 << 30, expectedSize * 100L / MAX_LOAD_PERCENT)) * 2 - 1);
+        allocate(capacity);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask); values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return (V) values[i];
+            }
+        }
+        return null;
+    }
+
+    /* Returns the value the key had before, or null if it was absent */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new NullPointerException("LongHashMap does not hold null values");
+        }
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        for (; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                V previous = (V) values[i];
+                values[i] = value;
+                return previous;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size >= resizeAt) {
+            grow();
+        }
+        return null;
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /* Visits every entry, in no particular order */
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryConsumer<? super V> consumer) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                consumer.accept(keys[i], (V) values[i]);
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(keys.length * 2);
+        int mask = keys.length - 1;
+        for (int j = 0; j < oldValues.length; j++) {
+            if (oldValues[j] == null) {
+                continue;
+            }
+            int i = slot(oldKeys[j], mask);
+            while (values[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        resizeAt = (int) (capacity * (long) MAX_LOAD_PERCENT / 100);
+    }
+
+    /* Spreads sequential keys over the table, which plain masking would cluster */
+    private static int slot(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /* Receives the entries of a LongHashMap without boxing their keys */
+    public interface EntryConsumer<V> {
+        void accept(long key, V value);
+    }
+}
@@ -0,0 +1,21 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/* Count that many threads can add to without contending */
+public class Counter {
+
+    private final LongAdder count = new LongAdder();
+
+    public void increment() {
+        count.increment();
+    }
+
+    public void add(long amount) {
+        count.add(amount);
+    }
+
+    public long get() {
+        return count.sum();
+    }
+}
@@ -0,0 +1,7 @@
+package metrics;
+
+/* Value read at the time it is exported, e.g. the depth of a queue */
+public interface Gauge {
+
+    long getValue();
+}
@@ -0,0 +1,162 @@
+package metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registers a registry with the platform MBean server as
+ * {@code paxos:type=Metrics,name=<registry name>}. Every counter and gauge is
+ * an attribute; a histogram is exposed as its count, mean, p50, p99, p99.9
+ * and max attributes, in nanoseconds. Attributes are read from the registry
+ * each time, so metrics registered later show up too.
+ */
+public class JmxMetricsExporter implements MetricsExporter {
+
+    private static final Logger LOGGER = Logger.getLogger(JmxMetricsExporter.class.getName());
+
+    private final MBeanServer server;
+    private ObjectName objectName;
+
+    public JmxMetricsExporter() {
+        this(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    public JmxMetricsExporter(MBeanServer server) {
+        this.server = server;
+    }
+
+    @Override
+    public synchronized void start(MetricsRegistry registry) {
+        try {
+            objectName = new ObjectName("paxos:type=Metrics,name=" + ObjectName.quote(registry.getName()));
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(new RegistryMBean(registry), objectName);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Could not register metrics of " + registry.getName(), e);
+            objectName = null;
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            server.unregisterMBean(objectName);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Could not unregister " + objectName, e);
+        }
+        objectName = null;
+    }
+
+    public synchronized ObjectName getObjectName() {
+        return objectName;
+    }
+
+    private static final class RegistryMBean implements DynamicMBean {
+        private final MetricsRegistry registry;
+
+        RegistryMBean(MetricsRegistry registry) {
+            this.registry = registry;
+        }
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Counter counter = registry.getCounters().get(attribute);
+            if (counter != null) {
+                return counter.get();
+            }
+            Gauge gauge = registry.getGauges().get(attribute);
+            if (gauge != null) {
+                return gauge.getValue();
+            }
+            int dot = attribute.lastIndexOf('.');
+            LatencyHistogram histogram = dot < 0 ? null : registry.getHistograms().get(attribute.substring(0, dot));
+            if (histogram != null) {
+                switch (attribute.substring(dot + 1)) {
+                    case "count":
+                        return histogram.getCount();
+                    case "mean":
+                        return (long) histogram.getMean();
+                    case "p50":
+                        return histogram.getValueAtPercentile(50);
+                    case "p99":
+                        return histogram.getValueAtPercentile(99);
+                    case "p999":
+                        return histogram.getValueAtPercentile(99.9);
+                    case "max":
+                        return histogram.getMax();
+                    default:
+                        break;
+                }
+            }
+            throw new AttributeNotFoundException(attribute);
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                try {
+                    list.add(new Attribute(attribute, getAttribute(attribute)));
+                } catch (AttributeNotFoundException e) {
+                    // left out, as the interface allows
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) {
+            throw new UnsupportedOperationException("Metrics are read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException("Metrics have no operations");
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            for (String name : registry.getCounters().keySet()) {
+                attributes.add(longAttribute(name, "Counter"));
+            }
+            for (String name : registry.getGauges().keySet()) {
+                attributes.add(longAttribute(name, "Gauge"));
+            }
+            for (Map.Entry<String, LatencyHistogram> histogram : registry.getHistograms().entrySet()) {
+                for (String statistic : new String[] { "count", "mean", "p50", "p99", "p999", "max" }) {
+                    attributes.add(longAttribute(histogram.getKey() + "." + statistic, "Latency in nanoseconds"));
+                }
+            }
+            return new MBeanInfo(RegistryMBean.class.getName(), "Metrics of " + registry.getName(),
+                    attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+
+        private static MBeanAttributeInfo longAttribute(String name, String description) {
+            return new MBeanAttributeInfo(name, "long", description, true, false, false);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package metrics;
+
+/* Publishes a registry somewhere outside the process, until stopped */
+public interface MetricsExporter {
+
+    void start(MetricsRegistry registry);
+
+    void stop();
+}
@@ -0,0 +1,55 @@
+package metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Named counters, gauges and latency histograms of one node. Asking for a
+ * name that is already registered returns the existing metric, so callers
+ * look their metrics up once and keep the reference. Exporters read the
+ * registry through the sorted views.
+ */
+public class MetricsRegistry {
+
+    private final String name;
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    /* @param name Name the registry is exported under, e.g. the node's id */
+    public MetricsRegistry(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Counter counter(String metricName) {
+        return counters.computeIfAbsent(metricName, key -> new Counter());
+    }
+
+    public LatencyHistogram histogram(String metricName) {
+        return histograms.computeIfAbsent(metricName, key -> new LatencyHistogram());
+    }
+
+    /* Registers a gauge, replacing any earlier one of the same name */
+    public void gauge(String metricName, Gauge gauge) {
+        gauges.put(metricName, gauge);
+    }
+
+    public SortedMap<String, Counter> getCounters() {
+        return Collections.unmodifiableSortedMap(new TreeMap<>(counters));
+    }
+
+    public SortedMap<String, Gauge> getGauges() {
+        return Collections.unmodifiableSortedMap(new TreeMap<>(gauges));
+    }
+
+    public SortedMap<String, LatencyHistogram> getHistograms() {
+        return Collections.unmodifiableSortedMap(new TreeMap<>(histograms));
+    }
+}
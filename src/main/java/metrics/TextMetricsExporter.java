@@ -0,0 +1,81 @@
+package metrics;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import utils.HashedWheelTimer;
+import utils.Timeout;
+
+/**
+ * Prints a registry as plain text, one metric per line, every so often. A
+ * histogram line gives its count, mean and percentiles in microseconds.
+ * {@link #format(MetricsRegistry)} gives the same dump on demand.
+ */
+public class TextMetricsExporter implements MetricsExporter {
+
+    private final PrintStream out;
+    private final long periodMillis;
+    private volatile Timeout nextDump;
+    private volatile boolean running;
+
+    /**
+     * @param out          Stream the dumps are printed to.
+     * @param periodMillis Time between dumps.
+     */
+    public TextMetricsExporter(PrintStream out, long periodMillis) {
+        this.out = out;
+        this.periodMillis = periodMillis;
+    }
+
+    @Override
+    public void start(MetricsRegistry registry) {
+        running = true;
+        scheduleDump(registry);
+    }
+
+    private void scheduleDump(MetricsRegistry registry) {
+        nextDump = HashedWheelTimer.shared().newTimeout(() -> {
+            if (running) {
+                out.print(format(registry));
+                scheduleDump(registry);
+            }
+        }, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Timeout timeout = nextDump;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    public static String format(MetricsRegistry registry) {
+        StringBuilder text = new StringBuilder();
+        String prefix = registry.getName() + ".";
+        for (Map.Entry<String, Counter> counter : registry.getCounters().entrySet()) {
+            text.append(prefix).append(counter.getKey()).append(' ').append(counter.getValue().get()).append('\n');
+        }
+        for (Map.Entry<String, Gauge> gauge : registry.getGauges().entrySet()) {
+            text.append(prefix).append(gauge.getKey()).append(' ').append(gauge.getValue().getValue()).append('\n');
+        }
+        for (Map.Entry<String, LatencyHistogram> entry : registry.getHistograms().entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            text.append(prefix).append(entry.getKey())
+                    .append(" count=").append(histogram.getCount())
+                    .append(String.format(" mean=%.1fus", histogram.getMean() / 1000))
+                    .append(" p50=").append(micros(histogram.getValueAtPercentile(50)))
+                    .append(" p99=").append(micros(histogram.getValueAtPercentile(99)))
+                    .append(" p99.9=").append(micros(histogram.getValueAtPercentile(99.9)))
+                    .append(" max=").append(micros(histogram.getMax()))
+                    .append('\n');
+        }
+        return text.toString();
+    }
+
+    private static String micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos) + "us";
+    }
+}
@@ -0,0 +1,64 @@
+package models;
+
+/**
+ * Ballot numbers that are unique across the cluster. A ballot packs a round
+ * and the index of the proposer in the host list into one int: the round in
+ * the high bits and the index in the low {@link #NODE_BITS} bits. Comparing
+ * two ballots as ints orders them by round first and node index second, so
+ * two proposers can never use the same ballot and the fields that carry
+ * ballots keep their int type.
+ *
+ * The bit between the two marks a fast round, in which acceptors take values
+ * straight from clients and a value needs a fast quorum to be chosen.
+ */
+public final class Ballot {
+
+    public static final int NODE_BITS = 10;
+    /* largest number of proposers whose ballots stay distinct */
+    public static final int MAX_NODES = 1 << NODE_BITS;
+    private static final int NODE_MASK = MAX_NODES - 1;
+    private static final int FAST_BIT = 1 << NODE_BITS;
+    private static final int ROUND_SHIFT = NODE_BITS + 1;
+
+    private Ballot() {
+    }
+
+    public static int of(int round, int nodeIndex) {
+        if (nodeIndex < 0 || nodeIndex >= MAX_NODES) {
+            throw new IllegalArgumentException("Node index " + nodeIndex + " does not fit in a ballot");
+        }
+        return (round << ROUND_SHIFT) | nodeIndex;
+    }
+
+    /* The fast ballot of a round, just above the classic one of the same node */
+    public static int fast(int round, int nodeIndex) {
+        return of(round, nodeIndex) | FAST_BIT;
+    }
+
+    public static boolean isFast(int ballot) {
+        return ballot >= 0 && (ballot & FAST_BIT) != 0;
+    }
+
+    public static int round(int ballot) {
+        return ballot >>> ROUND_SHIFT;
+    }
+
+    public static int nodeIndex(int ballot) {
+        return ballot & NODE_MASK;
+    }
+
+    /* Smallest ballot owned by the given node that is above every ballot seen so far */
+    public static int next(int highestSeen, int nodeIndex) {
+        // -1 stands for no ballot at all
+        return of(highestSeen < 0 ? 1 : round(highestSeen) + 1, nodeIndex);
+    }
+
+    /* Like next, but for a fast round */
+    public static int nextFast(int highestSeen, int nodeIndex) {
+        return next(highestSeen, nodeIndex) | FAST_BIT;
+    }
+
+    public static String toString(int ballot) {
+        return "(" + round(ballot) + ", " + nodeIndex(ballot) + (isFast(ballot) ? ", fast)" : ")");
+    }
+}
@@ -0,0 +1,30 @@
+package models;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/* Several client commands proposed together as the value of one slot. They
+are applied in the order they were submitted */
+public class CommandBatch implements Serializable {
+    static final long serialVersionUID = 1L;
+
+    private final ArrayList<Object> commands;
+
+    public CommandBatch(List<Object> commands) {
+        this.commands = new ArrayList<>(commands);
+    }
+
+    public List<Object> getCommands() {
+        return commands;
+    }
+
+    public int size() {
+        return commands.size();
+    }
+
+    @Override
+    public String toString() {
+        return "CommandBatch" + commands;
+    }
+}
@@ -1,15 +1,75 @@
 package models;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
+/**
+ * The members of the cluster in one configuration. The list read from the
+ * csv file is epoch 0; each {@link Reconfiguration} decided in the log gives
+ * a new view with the next epoch, produced by {@link #reconfigure}. Besides
+ * the active hosts a view keeps every host that has been a member so far, in
+ * the order they joined, so a host's member index never changes, and the
+ * hosts of epoch 0, which message codecs index senders by.
+ */
 public class HostList {
 
-    private List<Host> hosts;
+    private final List<Host> hosts;
+    private final int epoch;
+    /* slot of the reconfiguration that produced this view, or -1 for epoch 0 */
+    private final int configSlot;
+    private final List<Host> members;
+    private final List<Host> foundingHosts;
 
     public HostList() {
-        hosts = new ArrayList<>();
+        this.hosts = new ArrayList<>();
+        this.epoch = 0;
+        this.configSlot = -1;
+        // until the first reconfiguration the three lists are the same
+        this.members = hosts;
+        this.foundingHosts = hosts;
+    }
+
+    private HostList(List<Host> hosts, int epoch, int configSlot, List<Host> members, List<Host> foundingHosts) {
+        this.hosts = hosts;
+        this.epoch = epoch;
+        this.configSlot = configSlot;
+        this.members = members;
+        this.foundingHosts = foundingHosts;
+    }
+
+    /**
+     * The view that follows this one once a reconfiguration is decided.
+     *
+     * @param slot  Log slot the reconfiguration was decided in.
+     * @param hosts Members of the new configuration.
+     * @return A view with the next epoch.
+     */
+    public HostList reconfigure(int slot, List<Host> hosts) {
+        List<Host> nextMembers = new ArrayList<>(members);
+        for (Host host : hosts) {
+            if (!nextMembers.contains(host)) {
+                nextMembers.add(host);
+            }
+        }
+        return new HostList(new ArrayList<>(hosts), epoch + 1, slot, nextMembers,
+                Collections.unmodifiableList(new ArrayList<>(foundingHosts)));
+    }
+
+    /**
+     * The view a snapshot recorded, for a node that restores the snapshot
+     * instead of applying the reconfigurations behind it.
+     *
+     * @param epoch      Epoch of the recorded view.
+     * @param configSlot Log slot of the reconfiguration that produced it.
+     * @param hosts      Members of its configuration.
+     * @param members    Every host that has been a member up to it, in the order they joined.
+     * @return A view that keeps this one's founding hosts.
+     */
+    public HostList restore(int epoch, int configSlot, List<Host> hosts, List<Host> members) {
+        return new HostList(new ArrayList<>(hosts), epoch, configSlot, new ArrayList<>(members),
+                Collections.unmodifiableList(new ArrayList<>(foundingHosts)));
     }
 
     public List<Host> getHosts() {
@@ -36,10 +96,37 @@ public class HostList {
 
     public void addHost(Host host) {
         hosts.add(host);
+        if (members != hosts && !members.contains(host)) {
+            members.add(host);
+        }
     }
 
     public int getSize() {
         return hosts.size();
     }
 
+    public int getEpoch() {
+        return epoch;
+    }
+
+    public int getConfigSlot() {
+        return configSlot;
+    }
+
+    /* Position of the host among everyone that has been a member, or -1 */
+    public int getMemberIndex(Host host) {
+        return members.indexOf(host);
+    }
+
+    public Host getMember(int memberIndex) {
+        return memberIndex >= 0 && memberIndex < members.size() ? members.get(memberIndex) : null;
+    }
+
+    public List<Host> getMembers() {
+        return new ArrayList<>(members);
+    }
+
+    public List<Host> getFoundingHosts() {
+        return new ArrayList<>(foundingHosts);
+    }
 }
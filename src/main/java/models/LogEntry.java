@@ -0,0 +1,40 @@
+package models;
+
+import java.io.Serializable;
+
+/* A value accepted for one slot of the replicated log, together with the
+ballot it was accepted under */
+public class LogEntry implements Serializable {
+    static final long serialVersionUID = 1L;
+
+    private final int slot;
+    private final int proposalNumber;
+    private final Object value;
+
+    public LogEntry(int slot, int proposalNumber, Object value) {
+        this.slot = slot;
+        this.proposalNumber = proposalNumber;
+        this.value = value;
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    public int getProposalNumber() {
+        return proposalNumber;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "LogEntry{" +
+                "slot=" + slot +
+                ", proposalNumber=" + proposalNumber +
+                ", value=" + value +
+                '}';
+    }
+}
@@ -0,0 +1,54 @@
+package models;
+
+import java.io.Serializable;
+
+/**
+ * Marker a node puts in the log to read without a lease. Once the marker
+ * is applied, every value chosen before the read was issued has been applied
+ * too, so the state can be read at that point. Learners otherwise skip it.
+ */
+public class LogRead implements Serializable {
+    static final long serialVersionUID = 42L;
+
+    private final String readerId;
+    private final long sequence;
+
+    /*
+     * @param readerId Id of the node that issued the read.
+     * @param sequence Number of the read among that node's reads.
+     */
+    public LogRead(String readerId, long sequence) {
+        this.readerId = readerId;
+        this.sequence = sequence;
+    }
+
+    public String getReaderId() {
+        return readerId;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof LogRead)) {
+            return false;
+        }
+        LogRead other = (LogRead) o;
+        return sequence == other.sequence && readerId.equals(other.readerId);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * readerId.hashCode() + Long.hashCode(sequence);
+    }
+
+    @Override
+    public String toString() {
+        return "LogRead{" + readerId + '#' + sequence + '}';
+    }
+}
@@ -7,13 +7,24 @@ public class Message implements Serializable {
 
     private final Host senderHost;
     private final MessageType type;
+    private final int slot;
     private final int proposalNumber;
     private final Object proposedValue;
     private Integer highestSeenProposalNumber;
 
     public Message(MessageType type, int proposalNumber, Object proposedValue,
             Host senderHost) {
+        this(type, 0, proposalNumber, proposedValue, senderHost);
+    }
+
+    /*
+     * Message about a particular slot of the replicated log. For PREPARE and
+     * PROMISE the slot is the first slot the ballot covers.
+     */
+    public Message(MessageType type, int slot, int proposalNumber, Object proposedValue,
+            Host senderHost) {
         this.type = type;
+        this.slot = slot;
         this.proposalNumber = proposalNumber;
         this.proposedValue = proposedValue;
         this.senderHost = senderHost;
@@ -24,6 +35,10 @@ public class Message implements Serializable {
         return type;
     }
 
+    public int getSlot() {
+        return slot;
+    }
+
     public int getProposalNumber() {
         return proposalNumber;
     }
@@ -52,6 +67,7 @@ public class Message implements Serializable {
     public String toString() {
         return "Message{" +
                 "type=" + type +
+                ", slot=" + slot +
                 ", proposalNumber=" + proposalNumber +
                 ", proposedValue=" + proposedValue +
                 ", senderId=" + senderHost.getId() +
@@ -6,4 +6,20 @@ public enum MessageType {
     PROPOSE,
     ACCEPTED,
     NACK,
+    /* a value handed by a proposer to the leader to propose */
+    FORWARD,
+    /* a decided value, sent by the distinguished learner to every other node */
+    COMMIT,
+    /* opens a fast round: acceptors may take client values from the given slot on */
+    ANY,
+    /* a value a client sends straight to the acceptors in a fast round */
+    FAST_PROPOSE,
+    /* a leader asks the acceptors to turn away other proposers for a while */
+    LEASE,
+    /* an acceptor's answer to LEASE: it turns away other proposers until the lease runs out */
+    LEASE_GRANTED,
+    /* a learner that is behind asks another node for every slot it missed from the given one on */
+    CATCH_UP,
+    /* one chunk of a snapshot sent to a learner behind it; in an acceptor's log, the slot it was compacted up to */
+    SNAPSHOT,
 }
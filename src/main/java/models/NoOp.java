@@ -0,0 +1,12 @@
+package models;
+
+/* Value a new leader proposes to fill a gap in the log left by its
+predecessor. Learners skip it when applying the log */
+public enum NoOp {
+    INSTANCE;
+
+    @Override
+    public String toString() {
+        return "NO-OP";
+    }
+}
@@ -0,0 +1,53 @@
+package models;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A change of membership, decided in a slot of the log like any other
+ * value. Slots up to and including it are decided by the old configuration
+ * and every later slot by the new one.
+ */
+public class Reconfiguration implements Serializable {
+    static final long serialVersionUID = 42L;
+
+    private final List<Host> hosts;
+
+    /* @param hosts Every member of the new configuration, with its role */
+    public Reconfiguration(List<Host> hosts) {
+        this.hosts = new ArrayList<>(hosts);
+    }
+
+    public List<Host> getHosts() {
+        return new ArrayList<>(hosts);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Reconfiguration)) {
+            return false;
+        }
+        return hosts.equals(((Reconfiguration) o).hosts);
+    }
+
+    @Override
+    public int hashCode() {
+        return hosts.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder ids = new StringBuilder();
+        for (Host host : hosts) {
+            if (ids.length() > 0) {
+                ids.append(", ");
+            }
+            ids.append(host.getId()).append('=').append(host.getRole());
+        }
+        return "Reconfiguration{" + ids + '}';
+    }
+}
@@ -0,0 +1,67 @@
+package models;
+
+import java.io.Serializable;
+import java.util.List;
+
+/* The learner's applied state after every slot below a watermark has been
+applied, so that the log before the watermark can be discarded. It also
+keeps the membership view those slots' reconfigurations led to. */
+public class Snapshot implements Serializable {
+    static final long serialVersionUID = 1L;
+
+    private final int slot;
+    private final Object state;
+    private final int epoch;
+    private final int configSlot;
+    /* null in snapshots written before the view was kept */
+    private final List<Host> hosts;
+    private final List<Host> members;
+
+    /**
+     * @param slot  First slot not covered by the snapshot.
+     * @param state Applied state after every slot below it.
+     * @param view  Membership view after every slot below it.
+     */
+    public Snapshot(int slot, Object state, HostList view) {
+        this.slot = slot;
+        this.state = state;
+        this.epoch = view.getEpoch();
+        this.configSlot = view.getConfigSlot();
+        this.hosts = view.getHosts();
+        this.members = view.getMembers();
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    public Object getState() {
+        return state;
+    }
+
+    public int getEpoch() {
+        return epoch;
+    }
+
+    /* slot of the reconfiguration behind the view, or -1 for epoch 0 */
+    public int getConfigSlot() {
+        return configSlot;
+    }
+
+    public List<Host> getHosts() {
+        return hosts;
+    }
+
+    public List<Host> getMembers() {
+        return members;
+    }
+
+    @Override
+    public String toString() {
+        return "Snapshot{" +
+                "slot=" + slot +
+                ", state=" + state +
+                ", epoch=" + epoch +
+                '}';
+    }
+}
@@ -1,61 +1,350 @@
-
 package paxos;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 import models.*;
+import storage.LogStorage;
+import storage.WriteAheadLog;
+import utils.MessageCodec;
 
+/* Entry points are synchronized because compaction runs on the snapshot thread */
 public class Acceptor {
 
-    private Object acceptedValue;
-    private int acceptedId;
+    /* accepted values keyed by slot */
+    private final EntryLog acceptedEntries;
+    /* a promise covers every slot, so one ballot is enough for the whole log */
     private int maxIdSeen;
     private PaxosNode paxosNode;
+    /* when set, promises and accepts are on disk before they are answered */
+    private WriteAheadLog writeAheadLog;
+    private MessageCodec recordCodec;
+    /* fast ballot clients' values are accepted under while it is the promised one, or -1 */
+    private int fastBallot = -1;
+    /* slot the next client value goes into during the fast round */
+    private int nextFastSlot;
+    /* member index of the proposer holding a lease from this acceptor, or -1, and when it runs out */
+    private int leaseHolder = -1;
+    private long leaseExpiresAt;
+    /* entries below this slot were compacted into a snapshot, which only holds chosen slots */
+    private int compactedBefore;
 
     public Acceptor(PaxosNode paxosNode) {
         this.maxIdSeen = -1;
+        this.acceptedEntries = new EntryLog();
         this.paxosNode = paxosNode;
     }
 
-    /* Phase 1b */
-    protected void handlePrepare(Message message) {
+    /*
+     * Phase 1b: promise the ballot for every slot from the message's slot
+     * onwards and report anything already accepted in those slots that may
+     * still be unchosen. Slots compacted into a snapshot or applied by this
+     * node's learner are chosen, so the PROMISE starts after them, which
+     * tells the proposer every slot below is chosen and keeps the reply to
+     * the few slots still in flight rather than the whole log. A PREPARE for the ballot already promised is a
+     * retransmission and is answered again, since ballots are unique to their
+     * proposer. While another proposer holds a lease from this acceptor, the
+     * PREPARE is refused.
+     */
+    protected synchronized void handlePrepare(Message message) {
         int proposalId = message.getProposalNumber();
-        if (proposalId > maxIdSeen) {
+        if (proposalId >= maxIdSeen && !isLeasedToOther(Ballot.nodeIndex(proposalId))) {
             maxIdSeen = proposalId;
-            Message promise = new Message(MessageType.PROMISE, maxIdSeen,
-                    message.getProposedValue(), paxosNode.host);
-            paxosNode.send(promise, message.getSenderHost());
+            int reportedFrom = Math.max(message.getSlot(), chosenBefore());
+            ArrayList<LogEntry> accepted = new ArrayList<>(acceptedFrom(reportedFrom));
+            Message promise = new Message(MessageType.PROMISE, reportedFrom, maxIdSeen,
+                    accepted, paxosNode.host);
+            Message record = new Message(MessageType.PROMISE, message.getSlot(), maxIdSeen, null,
+                    paxosNode.host);
+            persistThenSend(record, () -> paxosNode.send(promise, message.getSenderHost()));
+        } else {
+            sendNack(message);
         }
     }
 
-    /* Phase 2b: */
-    protected void handlePropose(Message message) {
+    /*
+     * Phase 2b. A slot below the compaction point is already chosen, so a
+     * leader can only be proposing its chosen value there; it is acknowledged
+     * but not stored again.
+     */
+    protected synchronized void handlePropose(Message message) {
         int proposalId = message.getProposalNumber();
+        int slot = message.getSlot();
         Object value = message.getProposedValue();
 
         if (proposalId >= maxIdSeen) {
             maxIdSeen = proposalId;
-            acceptedId = proposalId;
-            acceptedValue = value;
+            if (slot >= compactedBefore) {
+                storeAccepted(new LogEntry(slot, proposalId, value));
+            }
             // Send an ACCEPTED message back to the proposer and to all learners
-            Message accepted = new Message(MessageType.ACCEPTED, acceptedId,
-                    acceptedValue, paxosNode.host);
-            paxosNode.send(accepted, message.getSenderHost());
+            Message accepted = new Message(MessageType.ACCEPTED, slot, proposalId,
+                    value, paxosNode.host);
+            persistThenSend(accepted, () -> {
+                paxosNode.send(accepted, message.getSenderHost());
+                broadcastToLearners(accepted);
+            });
+        } else {
+            sendNack(message);
+        }
+    }
+
+    /*
+     * The leader of a fast ballot has won Phase 1 and proposed everything it
+     * had to, so slots from the message's slot onwards are open to clients
+     */
+    protected synchronized void handleAny(Message message) {
+        int proposalId = message.getProposalNumber();
+        if (!Ballot.isFast(proposalId) || proposalId < maxIdSeen) {
+            sendNack(message);
+            return;
+        }
+        if (proposalId > maxIdSeen) {
+            maxIdSeen = proposalId;
+            persistThenSend(new Message(MessageType.PROMISE, message.getSlot(), maxIdSeen, null, paxosNode.host),
+                    () -> {
+                    });
+        }
+        if (fastBallot != proposalId) {
+            fastBallot = proposalId;
+            nextFastSlot = message.getSlot();
+        }
+        nextFastSlot = Math.max(nextFastSlot, message.getSlot());
+    }
+
+    /*
+     * A client's value in a fast round goes into this acceptor's next free
+     * slot; acceptors that got concurrent values in different orders collide,
+     * which the leader resolves. Once a higher ballot has closed the fast
+     * round, the first acceptor hands the value to that ballot's owner instead,
+     * so it is proposed once rather than by every acceptor.
+     */
+    protected synchronized void handleFastPropose(Message message) {
+        Object value = message.getProposedValue();
+        if (fastBallot < 0 || fastBallot != maxIdSeen) {
+            List<Host> acceptors = paxosNode.hostList.getAcceptorHosts();
+            Host leader = maxIdSeen < 0 ? null : paxosNode.hostList.getMember(Ballot.nodeIndex(maxIdSeen));
+            if (leader != null && !acceptors.isEmpty() && acceptors.get(0).equals(paxosNode.host)) {
+                paxosNode.send(new Message(MessageType.FORWARD, 0, maxIdSeen, value, paxosNode.host), leader);
+            }
+            return;
+        }
+        int slot = nextFastSlot++;
+        storeAccepted(new LogEntry(slot, fastBallot, value));
+        Message accepted = new Message(MessageType.ACCEPTED, slot, fastBallot, value, paxosNode.host);
+        Host coordinator = paxosNode.hostList.getMember(Ballot.nodeIndex(fastBallot));
+        persistThenSend(accepted, () -> {
+            if (coordinator != null) {
+                paxosNode.send(accepted, coordinator);
+            }
             broadcastToLearners(accepted);
+        });
+    }
+
+    /*
+     * Grants a leader the lease it asks for, for the duration the message
+     * carries, counted from now on this acceptor's clock. A request under a
+     * ballot below the promised one is refused, and one from another proposer
+     * than the current holder is ignored until that holder's lease runs out.
+     * Grants are not logged, so an acceptor that restarts should stay down
+     * for a lease duration.
+     */
+    protected synchronized void handleLease(Message message) {
+        int proposalId = message.getProposalNumber();
+        if (proposalId < maxIdSeen) {
+            sendNack(message);
+            return;
+        }
+        int holder = Ballot.nodeIndex(proposalId);
+        if (isLeasedToOther(holder) || !(message.getProposedValue() instanceof Number)) {
+            return;
+        }
+        long durationMillis = ((Number) message.getProposedValue()).longValue();
+        leaseHolder = holder;
+        leaseExpiresAt = paxosNode.scheduler.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        paxosNode.send(new Message(MessageType.LEASE_GRANTED, message.getSlot(), proposalId, null, paxosNode.host),
+                message.getSenderHost());
+    }
+
+    /* Whether a proposer other than the given member holds a lease from this acceptor */
+    private boolean isLeasedToOther(int proposer) {
+        return leaseHolder >= 0 && leaseHolder != proposer && paxosNode.scheduler.nanoTime() - leaseExpiresAt < 0;
+    }
+
+    /*
+     * Tells a proposer its ballot is too low. The NACK echoes the rejected
+     * ballot so the proposer can ignore answers to ballots it has given up, and
+     * carries the highest ballot seen so it can jump straight above it. No
+     * state changes, so there is nothing to log first.
+     */
+    private void sendNack(Message rejected) {
+        Message nack = new Message(MessageType.NACK, rejected.getSlot(), rejected.getProposalNumber(), null,
+                paxosNode.host);
+        nack.setHighestSeenProposalNumber(maxIdSeen);
+        paxosNode.send(nack, rejected.getSenderHost());
+    }
+
+    /*
+     * Replies go out only once the record of the state change is durable. The
+     * log completes appends in order, so replies keep the order of the
+     * messages that caused them.
+     */
+    private void persistThenSend(Message record, Runnable sendReplies) {
+        if (writeAheadLog == null) {
+            sendReplies.run();
+            return;
+        }
+        try {
+            writeAheadLog.append(recordCodec.encode(record)).thenRun(sendReplies);
+        } catch (IOException e) {
+            System.out.println("ERROR: Acceptor " + paxosNode.host.getId() + " could not log " + record);
+        }
+    }
 
+    /**
+     * Makes this acceptor durable: its state is rebuilt from the records in the
+     * log and every later promise and accept is logged before it is answered.
+     *
+     * @param writeAheadLog Log to replay and append to.
+     * @param recordCodec   Codec the records are written with.
+     */
+    protected synchronized void enableWriteAheadLog(WriteAheadLog writeAheadLog, MessageCodec recordCodec) throws IOException {
+        this.recordCodec = recordCodec;
+        writeAheadLog.replay(bytes -> {
+            try {
+                recover(recordCodec.decode(bytes, 0, bytes.length));
+            } catch (IOException e) {
+                System.out.println("ERROR: Skipping unreadable acceptor record: " + e.getMessage());
+            }
+        });
+        this.writeAheadLog = writeAheadLog;
+    }
+
+    /* Applies one logged promise, accept or compaction point during replay */
+    private void recover(Message record) {
+        maxIdSeen = Math.max(maxIdSeen, record.getProposalNumber());
+        if (record.getType() == MessageType.SNAPSHOT) {
+            compactedBefore = Math.max(compactedBefore, record.getSlot());
+        } else if (record.getType() == MessageType.ACCEPTED && record.getSlot() >= compactedBefore) {
+            storeAccepted(new LogEntry(record.getSlot(), record.getProposalNumber(), record.getProposedValue()));
+        }
+    }
+
+    /**
+     * Keeps accepted entries in the given storage instead of on the heap.
+     *
+     * @param storage Storage for the accepted entries.
+     * @param codec   Codec the entries are written with.
+     */
+    protected synchronized void useLogStorage(LogStorage storage, MessageCodec codec) throws IOException {
+        acceptedEntries.attach(storage, codec, paxosNode.host);
+    }
+
+    /**
+     * Drops accepted entries below a slot that is covered by a snapshot and
+     * rewrites the write-ahead log to hold only the current promise, the
+     * compaction point and the entries from that slot onwards.
+     *
+     * @param slot First slot that must be kept.
+     */
+    protected synchronized void compactBefore(int slot) throws IOException {
+        if (slot <= compactedBefore) {
+            return;
+        }
+        acceptedEntries.truncateBefore(slot);
+        compactedBefore = slot;
+        if (writeAheadLog == null) {
+            return;
+        }
+        List<byte[]> liveRecords = new ArrayList<>();
+        liveRecords.add(recordCodec.encode(new Message(MessageType.SNAPSHOT, slot, maxIdSeen, null, paxosNode.host)));
+        for (LogEntry entry : acceptedEntries.from(slot)) {
+            liveRecords.add(recordCodec.encode(new Message(MessageType.ACCEPTED, entry.getSlot(),
+                    entry.getProposalNumber(), entry.getValue(), paxosNode.host)));
+        }
+        writeAheadLog.compact(liveRecords);
+    }
+
+    /* Slots below this one are known to be chosen: compacted away, or applied by this node's learner */
+    private int chosenBefore() {
+        return Math.max(compactedBefore, paxosNode.learner.getNextSlotToApply());
+    }
+
+    private void storeAccepted(LogEntry entry) {
+        try {
+            acceptedEntries.put(entry);
+        } catch (IOException e) {
+            System.out.println("ERROR: Acceptor " + paxosNode.host.getId() + " could not store slot "
+                    + entry.getSlot() + ": " + e.getMessage());
+        }
+    }
+
+    private List<LogEntry> acceptedFrom(int slot) {
+        try {
+            return acceptedEntries.from(slot);
+        } catch (IOException e) {
+            System.out.println("ERROR: Acceptor " + paxosNode.host.getId() + " could not read its log: "
+                    + e.getMessage());
+            return new ArrayList<>();
         }
     }
 
+    /* Every learner, or in DISTINGUISHED mode only the distinguished one */
     protected void broadcastToLearners(Message accepted) {
-        paxosNode.broadcast(accepted, paxosNode.hostList.getLearnerHosts());
+        Host distinguished = paxosNode.getLearningMode() == LearningMode.DISTINGUISHED
+                ? paxosNode.getDistinguishedLearner()
+                : null;
+        if (distinguished != null) {
+            paxosNode.broadcast(accepted, Collections.singletonList(distinguished));
+        } else {
+            paxosNode.broadcast(accepted, paxosNode.hostList.getLearnerHosts());
+        }
     }
 
-    protected void handleNack(Message message) {
+    protected synchronized void handleNack(Message message) {
         int proposalId = message.getProposalNumber();
-        maxIdSeen = proposalId;
+        if (proposalId > maxIdSeen) {
+            maxIdSeen = proposalId;
+            persistThenSend(new Message(MessageType.PROMISE, 0, maxIdSeen, null, paxosNode.host), () -> {
+            });
+        }
+    }
 
+    public synchronized int getMaxIdSeen() {
+        return maxIdSeen;
     }
 
-    protected void reset() {
+    /* Every slot below this one is chosen and compacted away, or 0 */
+    public synchronized int getCompactedBefore() {
+        return compactedBefore;
+    }
+
+    public synchronized LogEntry getAcceptedEntry(int slot) {
+        try {
+            return acceptedEntries.get(slot);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    protected synchronized void reset() {
         this.maxIdSeen = -1;
+        this.fastBallot = -1;
+        this.nextFastSlot = 0;
+        this.leaseHolder = -1;
+        this.compactedBefore = 0;
+        try {
+            this.acceptedEntries.clear();
+        } catch (IOException e) {
+            System.out.println("ERROR: Acceptor " + paxosNode.host.getId() + " could not clear its log");
+        }
+    }
+
+    protected synchronized void close() throws IOException {
+        acceptedEntries.close();
     }
 
 }
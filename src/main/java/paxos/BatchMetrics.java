@@ -0,0 +1,70 @@
+package paxos;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters kept by the command batcher. Batch sizes are recorded in power of
+ * two buckets; the average batch size is the number of Phase 2 rounds saved
+ * per round actually run.
+ */
+public class BatchMetrics {
+
+    private static final int BUCKETS = 16;
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong commands = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLongArray sizeBuckets = new AtomicLongArray(BUCKETS);
+    private final long startedAt = System.nanoTime();
+
+    void recordBatch(int commandCount, long batchBytes) {
+        batches.incrementAndGet();
+        commands.addAndGet(commandCount);
+        bytes.addAndGet(batchBytes);
+        int bucket = Math.min(BUCKETS - 1, 31 - Integer.numberOfLeadingZeros(Math.max(1, commandCount)));
+        sizeBuckets.incrementAndGet(bucket);
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    public long getCommandCount() {
+        return commands.get();
+    }
+
+    public long getByteCount() {
+        return bytes.get();
+    }
+
+    /* Commands per proposal, i.e. how many times fewer rounds are needed */
+    public double getAverageBatchSize() {
+        long batchCount = batches.get();
+        return batchCount == 0 ? 0 : (double) commands.get() / batchCount;
+    }
+
+    public double getCommandsPerSecond() {
+        double seconds = (System.nanoTime() - startedAt) / 1e9;
+        return seconds <= 0 ? 0 : commands.get() / seconds;
+    }
+
+    /* Number of batches whose size was in [2^bucket, 2^(bucket + 1)) */
+    public long getBatchesInBucket(int bucket) {
+        return sizeBuckets.get(bucket);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder histogram = new StringBuilder();
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = sizeBuckets.get(i);
+            if (count > 0) {
+                histogram.append(' ').append(1 << i).append("+:").append(count);
+            }
+        }
+        return String.format("BatchMetrics{batches=%d, commands=%d, bytes=%d, avgBatchSize=%.2f, "
+                + "commandsPerSecond=%.1f, sizes=[%s]}", getBatchCount(), getCommandCount(), getByteCount(),
+                getAverageBatchSize(), getCommandsPerSecond(), histogram.toString().trim());
+    }
+}
@@ -0,0 +1,157 @@
+package paxos;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import models.CommandBatch;
+import utils.NodeThreads;
+
+/**
+ * Collects client commands in front of the proposer and hands them over as a
+ * single {@link CommandBatch} per slot. A batch is closed when it reaches the
+ * maximum number of commands or bytes, or when the linger time runs out.
+ *
+ * The linger time adapts to the arrival rate: when commands arrive too slowly
+ * for waiting to add anything to the batch it is sent at once, and under load
+ * it waits only as long as it should take to fill the batch.
+ */
+public class CommandBatcher {
+
+    /* weight given to the newest inter-arrival sample */
+    private static final double ARRIVAL_SMOOTHING = 0.2;
+    private static final int UNKNOWN_COMMAND_BYTES = 64;
+
+    private final Proposer proposer;
+    private final int maxBatchBytes;
+    private final int maxBatchCount;
+    private final long maxLingerNanos;
+    private final BlockingQueue<Object> pendingCommands = new LinkedBlockingQueue<>();
+    private final BatchMetrics metrics = new BatchMetrics();
+    private Thread batchingThread;
+    private volatile boolean running;
+
+    /* guards the arrival estimate, which submitting threads update concurrently */
+    private final Object arrivalLock = new Object();
+    /* smoothed time between command arrivals, read without the lock by the batching thread */
+    private volatile double interArrivalNanos;
+    private long lastArrival;
+
+    /**
+     * @param proposer        The proposer batches are submitted to.
+     * @param maxBatchBytes   Upper bound on the estimated size of a batch.
+     * @param maxBatchCount   Upper bound on the number of commands in a batch.
+     * @param maxLingerMillis Longest time the first command of a batch waits for
+     *                        others to join it.
+     */
+    public CommandBatcher(Proposer proposer, int maxBatchBytes, int maxBatchCount, long maxLingerMillis) {
+        this.proposer = proposer;
+        this.maxBatchBytes = maxBatchBytes;
+        this.maxBatchCount = maxBatchCount;
+        this.maxLingerNanos = TimeUnit.MILLISECONDS.toNanos(maxLingerMillis);
+        this.interArrivalNanos = maxLingerNanos;
+    }
+
+    public void start(String name) {
+        running = true;
+        batchingThread = NodeThreads.newThread("CommandBatcher-" + name, this::batchLoop);
+        batchingThread.setDaemon(true);
+        batchingThread.start();
+    }
+
+    public void stop() {
+        running = false;
+        if (batchingThread != null) {
+            batchingThread.interrupt();
+        }
+    }
+
+    public void add(Object command) {
+        synchronized (arrivalLock) {
+            long now = System.nanoTime();
+            long previous = lastArrival;
+            lastArrival = now;
+            if (previous != 0) {
+                interArrivalNanos += ARRIVAL_SMOOTHING * ((now - previous) - interArrivalNanos);
+            }
+        }
+        pendingCommands.add(command);
+    }
+
+    private void batchLoop() {
+        while (running) {
+            try {
+                Object first = pendingCommands.take();
+                List<Object> batch = new ArrayList<>();
+                batch.add(first);
+                long batchBytes = estimateSize(first);
+                long deadline = System.nanoTime() + lingerNanos();
+
+                while (batch.size() < maxBatchCount && batchBytes < maxBatchBytes) {
+                    Object next = pendingCommands.poll();
+                    if (next == null) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            break;
+                        }
+                        next = pendingCommands.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                    }
+                    long nextBytes = estimateSize(next);
+                    if (batchBytes + nextBytes > maxBatchBytes) {
+                        // leave it for the next batch rather than overflow this one
+                        flush(batch, batchBytes);
+                        batch = new ArrayList<>();
+                        batchBytes = 0;
+                    }
+                    batch.add(next);
+                    batchBytes += nextBytes;
+                }
+                flush(batch, batchBytes);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+        }
+    }
+
+    /*
+     * Waits only if at least one more command is expected within the maximum
+     * linger time, and then no longer than it should take to fill the batch
+     */
+    private long lingerNanos() {
+        double expectedGap = interArrivalNanos;
+        if (expectedGap >= maxLingerNanos / 2.0) {
+            return 0;
+        }
+        return (long) Math.min(maxLingerNanos, expectedGap * (maxBatchCount - 1));
+    }
+
+    private void flush(List<Object> batch, long batchBytes) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        metrics.recordBatch(batch.size(), batchBytes);
+        proposer.submit(batch.size() == 1 ? batch.get(0) : new CommandBatch(batch));
+    }
+
+    private static long estimateSize(Object command) {
+        if (command instanceof byte[]) {
+            return ((byte[]) command).length;
+        } else if (command instanceof String) {
+            return ((String) command).getBytes(StandardCharsets.UTF_8).length;
+        } else if (command instanceof Number) {
+            return Long.BYTES;
+        }
+        return UNKNOWN_COMMAND_BYTES;
+    }
+
+    public BatchMetrics getMetrics() {
+        return metrics;
+    }
+}
@@ -0,0 +1,76 @@
+package paxos;
+
+import java.util.Random;
+
+import models.Ballot;
+
+/**
+ * Decides when a proposer that lost its ballot competes again, and remembers
+ * who it lost to. Each pre-emption in a row doubles the window the retry
+ * delay is drawn from, up to a cap, and the delay is drawn uniformly from the
+ * whole window so proposers that collided once are unlikely to collide again.
+ * Winning Phase 1 resets the window.
+ *
+ * The ballot that pre-empted the proposer names the proposer that holds the
+ * higher ballot. Until this proposer competes again it treats that one as the
+ * leader and forwards new values to it instead of running Phase 1.
+ */
+class ContentionManager {
+    static final long DEFAULT_BASE_BACKOFF_MILLIS = 10;
+    static final long DEFAULT_MAX_BACKOFF_MILLIS = 1000;
+    /* doubling stops here, long before the shift could overflow */
+    private static final int MAX_DOUBLINGS = 20;
+
+    private long baseBackoffMillis = DEFAULT_BASE_BACKOFF_MILLIS;
+    private long maxBackoffMillis = DEFAULT_MAX_BACKOFF_MILLIS;
+    /* pre-emptions since this proposer last won Phase 1 */
+    private int preemptions;
+    /* ballot of the presumed leader, or -1 if none is known */
+    private int leaderBallot = -1;
+
+    /*
+     * Records that a higher ballot pre-empted this proposer and returns how
+     * long to wait before running Phase 1 again
+     */
+    long onPreempted(int higherBallot, Random random) {
+        leaderBallot = Math.max(leaderBallot, higherBallot);
+        preemptions++;
+        long window = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(preemptions - 1, MAX_DOUBLINGS));
+        return window > 0 ? (long) (random.nextDouble() * window) : 0;
+    }
+
+    /* This proposer is competing for leadership itself */
+    void onCompeting() {
+        leaderBallot = -1;
+    }
+
+    /* This proposer won Phase 1 */
+    void onLeadership() {
+        preemptions = 0;
+        leaderBallot = -1;
+    }
+
+    boolean hasLeader() {
+        return leaderBallot >= 0;
+    }
+
+    /* Host list index of the presumed leader; only valid if hasLeader() */
+    int getLeaderIndex() {
+        return Ballot.nodeIndex(leaderBallot);
+    }
+
+    int getPreemptions() {
+        return preemptions;
+    }
+
+    /* A base of 0 turns backoff off, so a pre-empted proposer retries at once */
+    void setBackoff(long baseBackoffMillis, long maxBackoffMillis) {
+        this.baseBackoffMillis = Math.max(0, baseBackoffMillis);
+        this.maxBackoffMillis = Math.max(this.baseBackoffMillis, maxBackoffMillis);
+    }
+
+    void reset() {
+        preemptions = 0;
+        leaderBallot = -1;
+    }
+}
@@ -0,0 +1,112 @@
+package paxos;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import models.Host;
+import models.LogEntry;
+import models.Message;
+import models.MessageType;
+import storage.LogStorage;
+import utils.MessageCodec;
+
+/**
+ * Log entries held by an acceptor or learner, keyed by slot. Entries live in
+ * a TreeMap on the heap until a {@link LogStorage} is attached. After that
+ * they are encoded as ACCEPTED messages with the node's codec and only the
+ * storage holds them.
+ */
+class EntryLog {
+
+    private final NavigableMap<Integer, LogEntry> entries = new TreeMap<>();
+    private LogStorage storage;
+    private MessageCodec codec;
+    private Host owner;
+
+    /* Moves the log into storage; entries already on the heap are written across */
+    void attach(LogStorage storage, MessageCodec codec, Host owner) throws IOException {
+        this.storage = storage;
+        this.codec = codec;
+        this.owner = owner;
+        for (LogEntry entry : entries.values()) {
+            put(entry);
+        }
+        entries.clear();
+    }
+
+    void put(LogEntry entry) throws IOException {
+        if (storage == null) {
+            entries.put(entry.getSlot(), entry);
+            return;
+        }
+        Message record = new Message(MessageType.ACCEPTED, entry.getSlot(), entry.getProposalNumber(),
+                entry.getValue(), owner);
+        storage.append(entry.getSlot(), codec.encode(record));
+    }
+
+    LogEntry get(int slot) throws IOException {
+        if (storage == null) {
+            return entries.get(slot);
+        }
+        byte[] bytes;
+        // the view is copied under the storage's lock so it cannot be unmapped meanwhile
+        synchronized (storage) {
+            ByteBuffer view = storage.read(slot);
+            if (view == null) {
+                return null;
+            }
+            bytes = new byte[view.remaining()];
+            view.get(bytes);
+        }
+        Message record = codec.decode(bytes, 0, bytes.length);
+        return new LogEntry(record.getSlot(), record.getProposalNumber(), record.getProposedValue());
+    }
+
+    boolean contains(int slot) throws IOException {
+        if (storage == null) {
+            return entries.containsKey(slot);
+        }
+        return storage.read(slot) != null;
+    }
+
+    /* Every entry from the given slot onwards, in slot order */
+    List<LogEntry> from(int slot) throws IOException {
+        if (storage == null) {
+            return new ArrayList<>(entries.tailMap(slot, true).values());
+        }
+        List<LogEntry> tail = new ArrayList<>();
+        for (int s = Math.max(slot, storage.getFirstSlot()); s <= storage.getLastSlot(); s++) {
+            LogEntry entry = get(s);
+            if (entry != null) {
+                tail.add(entry);
+            }
+        }
+        return tail;
+    }
+
+    /* Drops every entry below the given slot */
+    void truncateBefore(int slot) throws IOException {
+        if (storage == null) {
+            entries.headMap(slot, false).clear();
+        } else {
+            storage.truncateBefore(slot);
+        }
+    }
+
+    void clear() throws IOException {
+        entries.clear();
+        if (storage != null) {
+            storage.clear();
+        }
+    }
+
+    void close() throws IOException {
+        if (storage != null) {
+            storage.close();
+        }
+    }
+}
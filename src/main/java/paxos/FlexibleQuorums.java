@@ -0,0 +1,82 @@
+package paxos;
+
+import java.util.Collection;
+import java.util.List;
+
+import models.Host;
+
+/**
+ * Flexible Paxos quorums: any Phase 1 and Phase 2 sizes whose sum exceeds
+ * the number of acceptors, so that a quorum of each phase always shares an
+ * acceptor. A stable leader with a small Phase 2 quorum does not wait for
+ * its slowest acceptors on every decision.
+ */
+public class FlexibleQuorums implements QuorumSystem {
+
+    private final int phaseOneSize;
+    private final int phaseTwoSize;
+
+    /**
+     * @param phaseOneSize Acceptors that must promise before a leader proposes.
+     * @param phaseTwoSize Acceptors that must accept a value for it to be chosen.
+     */
+    public FlexibleQuorums(int phaseOneSize, int phaseTwoSize) {
+        if (phaseOneSize < 1 || phaseTwoSize < 1) {
+            throw new IllegalArgumentException("Quorums need at least one acceptor");
+        }
+        this.phaseOneSize = phaseOneSize;
+        this.phaseTwoSize = phaseTwoSize;
+    }
+
+    @Override
+    public void validate(List<Host> acceptors) {
+        int n = acceptors.size();
+        if (phaseOneSize > n || phaseTwoSize > n) {
+            throw new IllegalArgumentException(this + " needs more than the " + n + " acceptors");
+        }
+        if (phaseOneSize + phaseTwoSize <= n) {
+            throw new IllegalArgumentException(this + " do not intersect on " + n + " acceptors");
+        }
+    }
+
+    @Override
+    public boolean isPhaseOneQuorum(Collection<Host> responders, List<Host> acceptors) {
+        return countMembers(responders, acceptors) >= phaseOneSize;
+    }
+
+    @Override
+    public boolean isPhaseTwoQuorum(Collection<Host> responders, List<Host> acceptors) {
+        return countMembers(responders, acceptors) >= phaseTwoSize;
+    }
+
+    @Override
+    public int getPhaseOneSize(List<Host> acceptors) {
+        return phaseOneSize;
+    }
+
+    @Override
+    public int getPhaseTwoSize(List<Host> acceptors) {
+        return phaseTwoSize;
+    }
+
+    @Override
+    public String getName() {
+        return "flexible";
+    }
+
+    @Override
+    public String toString() {
+        return "flexible quorums of " + phaseOneSize + " in Phase 1 and " + phaseTwoSize + " in Phase 2";
+    }
+
+    /* Responders that are acceptors of the configuration; others, e.g. removed ones, do not count */
+    static int countMembers(Collection<Host> responders, List<Host> acceptors) {
+        int members = 0;
+        for (Host responder : responders) {
+            if (acceptors.contains(responder)) {
+                members++;
+            }
+        }
+        return members;
+    }
+}
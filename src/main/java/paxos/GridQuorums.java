@@ -0,0 +1,88 @@
+package paxos;
+
+import java.util.Collection;
+import java.util.List;
+
+import models.Host;
+
+/**
+ * Grid quorums. The acceptors are laid out row by row, in host list order,
+ * in a grid of the given shape. A Phase 1 quorum is every acceptor of some
+ * column and a Phase 2 quorum every acceptor of some row, so the two always
+ * meet in one cell while a Phase 2 quorum needs only one row. Slow acceptors
+ * placed in one row are then left out of the steady state.
+ */
+public class GridQuorums implements QuorumSystem {
+
+    private final int rows;
+    private final int columns;
+
+    public GridQuorums(int rows, int columns) {
+        if (rows < 1 || columns < 1) {
+            throw new IllegalArgumentException("A grid needs at least one row and one column");
+        }
+        this.rows = rows;
+        this.columns = columns;
+    }
+
+    @Override
+    public void validate(List<Host> acceptors) {
+        if (acceptors.size() != rows * columns) {
+            throw new IllegalArgumentException(this + " needs " + rows * columns + " acceptors, not "
+                    + acceptors.size());
+        }
+    }
+
+    @Override
+    public boolean isPhaseOneQuorum(Collection<Host> responders, List<Host> acceptors) {
+        for (int column = 0; column < columns; column++) {
+            boolean complete = true;
+            for (int row = 0; row < rows && complete; row++) {
+                complete = respondedAt(responders, acceptors, row, column);
+            }
+            if (complete) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isPhaseTwoQuorum(Collection<Host> responders, List<Host> acceptors) {
+        for (int row = 0; row < rows; row++) {
+            boolean complete = true;
+            for (int column = 0; column < columns && complete; column++) {
+                complete = respondedAt(responders, acceptors, row, column);
+            }
+            if (complete) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean respondedAt(Collection<Host> responders, List<Host> acceptors, int row, int column) {
+        int index = row * columns + column;
+        return index < acceptors.size() && responders.contains(acceptors.get(index));
+    }
+
+    @Override
+    public int getPhaseOneSize(List<Host> acceptors) {
+        return rows;
+    }
+
+    @Override
+    public int getPhaseTwoSize(List<Host> acceptors) {
+        return columns;
+    }
+
+    @Override
+    public String getName() {
+        return "grid";
+    }
+
+    @Override
+    public String toString() {
+        return rows + "x" + columns + " grid quorums";
+    }
+}
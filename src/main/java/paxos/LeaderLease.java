@@ -0,0 +1,90 @@
+package paxos;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import models.Host;
+
+/**
+ * The leader's side of a lease. A lease request is numbered, and the lease
+ * is held once a quorum of acceptors granted the newest request. Each
+ * acceptor turns other proposers away for the lease duration, counted from
+ * when it received the request on its own clock. The leader counts from when
+ * it sent the request, which is no later, and gives up a margin for clocks
+ * that run at different rates, so its lease runs out before any acceptor's.
+ *
+ * A lease belongs to the ballot it was requested under, so a leader that
+ * loses its ballot loses the lease with it.
+ */
+class LeaderLease {
+    static final double DEFAULT_MAX_CLOCK_DRIFT = 0.01;
+
+    private final long durationMillis;
+    /* how long the leader relies on a granted lease, after the drift margin */
+    private final long heldNanos;
+    /* newest request, when it was sent and under which ballot, and the acceptors that granted it */
+    private int request;
+    private long requestSentAt;
+    private int requestBallot = -1;
+    private final Set<Host> grants = new HashSet<>();
+    /* ballot the lease is held under and when it runs out, or -1 if none is held */
+    private int heldBallot = -1;
+    private long expiresAt;
+
+    /*
+     * @param durationMillis How long acceptors turn other proposers away.
+     * @param maxClockDrift  Largest fraction by which a clock may run fast or
+     *                       slow; both the leader's and an acceptor's may.
+     */
+    LeaderLease(long durationMillis, double maxClockDrift) {
+        if (durationMillis <= 0 || maxClockDrift < 0 || maxClockDrift >= 0.5) {
+            throw new IllegalArgumentException("Lease of " + durationMillis + "ms with clock drift " + maxClockDrift);
+        }
+        this.durationMillis = durationMillis;
+        this.heldNanos = (long) (TimeUnit.MILLISECONDS.toNanos(durationMillis) * (1 - 2 * maxClockDrift));
+    }
+
+    /* Starts a new request under the ballot and returns its number; grants of older ones no longer count */
+    int request(int ballot, long now) {
+        request++;
+        requestSentAt = now;
+        requestBallot = ballot;
+        grants.clear();
+        return request;
+    }
+
+    /* Records a grant and returns the acceptors that granted the newest request, or null if it is stale */
+    Set<Host> onGranted(int grantedRequest, int ballot, Host acceptor) {
+        if (grantedRequest != request || ballot != requestBallot) {
+            return null;
+        }
+        grants.add(acceptor);
+        return grants;
+    }
+
+    /* A quorum granted the newest request */
+    void onQuorum() {
+        heldBallot = requestBallot;
+        expiresAt = requestSentAt + heldNanos;
+    }
+
+    boolean isHeld(int ballot, long now) {
+        return heldBallot >= 0 && heldBallot == ballot && now - expiresAt < 0;
+    }
+
+    long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /* Renewing three times per lease leaves two tries before it runs out */
+    long getRenewalMillis() {
+        return Math.max(1, durationMillis / 3);
+    }
+
+    void reset() {
+        heldBallot = -1;
+        requestBallot = -1;
+        grants.clear();
+    }
+}
@@ -1,39 +1,508 @@
 package paxos;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import metrics.LatencyHistogram;
+import models.Ballot;
+import models.CommandBatch;
+import models.Host;
+import models.LogEntry;
+import models.LogRead;
 import models.Message;
+import models.MessageType;
+import models.NoOp;
+import models.Reconfiguration;
+import models.Snapshot;
+import storage.LogStorage;
+import storage.SnapshotStore;
+import utils.MessageCodec;
 
 public class Learner {
+    /* a COMMIT this far past the first unapplied slot means the slots between were missed, not overtaken */
+    private static final int CATCH_UP_GAP = 2 * Proposer.DEFAULT_PIPELINE_WINDOW;
+    /* a CATCH_UP from the same slot is sent again only after this long */
+    private static final long CATCH_UP_RETRY_NANOS = TimeUnit.SECONDS.toNanos(1);
 
-    private Object learnedValue;
-    private boolean hasLearned;
+    /* values learned for each slot */
+    private final EntryLog learnedValues;
+    /* slots below this one have been learned and applied in order */
+    private int nextSlotToApply;
     private PaxosNode paxosNode;
+    private SnapshotManager snapshots;
+    /* when the first ACCEPTED of each learned but not yet applied slot arrived */
+    private final Map<Integer, Long> learnedAt = new HashMap<>();
+    private final LatencyHistogram appliedLatency;
+    /* futures handed out by whenLearned() for slots that are not learned yet */
+    private final Map<Integer, CompletableFuture<Object>> pendingDecisions = new HashMap<>();
+    /* futures handed out by whenApplied(), keyed by the number of slots they wait for */
+    private final TreeMap<Integer, List<CompletableFuture<Void>>> pendingApplies = new TreeMap<>();
+    /* results of this node's own commands and reads, applied but not yet handed back */
+    private final List<Runnable> completions = new ArrayList<>();
+    /* acceptors that accepted each unlearned slot, per ballot and in fast ballots per value */
+    private final Map<Integer, Map<Object, Set<Host>>> votes = new HashMap<>();
+    /* first unapplied slot the last CATCH_UP asked from, or -1, and when it was sent */
+    private int catchUpSlot = -1;
+    private long catchUpSentAt;
+    /* chunks of a snapshot being received, the slot it covers and the node sending it */
+    private ByteArrayOutputStream incomingSnapshot;
+    private int incomingSnapshotSlot;
+    private Host incomingSnapshotSender;
 
     public Learner(PaxosNode paxosNode) {
         this.paxosNode = paxosNode;
-        this.hasLearned = false;
+        this.learnedValues = new EntryLog();
+        this.nextSlotToApply = 0;
+        this.appliedLatency = paxosNode.metrics.histogram("learner.accepted_to_applied");
     }
 
+    /*
+     * A slot is learned once acceptors forming a Phase 2 quorum accepted it
+     * under one ballot, since a value accepted by fewer can still lose the
+     * slot to another ballot. In ALL_TO_ALL mode every learner counts and
+     * sends a COMMIT to the cluster once it learns; in DISTINGUISHED mode
+     * only the distinguished learner takes ACCEPTED messages and commits.
+     */
     protected void handleAccepted(Message accept) {
-        if (!hasLearned) {
-            learnedValue = accept.getProposedValue();
-            hasLearned = true;
-            if (paxosNode.debug) {
-                System.out
-                        .println(
-                                "LEARN: Learner with ID " + paxosNode.host.getId() + " learned value: " +
-                                        learnedValue);
+        if (paxosNode.getLearningMode() == LearningMode.ALL_TO_ALL || paxosNode.isDistinguishedLearner()) {
+            if (receive(accept)) {
+                broadcastCommit(accept);
+            }
+        }
+    }
+
+    /* A value the distinguished learner has seen chosen */
+    protected void handleCommit(Message commit) {
+        receive(commit);
+    }
+
+    /* Learns the slot of the message unless it is known already; true if it was new */
+    private boolean receive(Message message) {
+        int slot = message.getSlot();
+        CompletableFuture<Object> decided = null;
+        List<Runnable> applied;
+        boolean behind;
+        synchronized (this) {
+            try {
+                // slots below nextSlotToApply are applied and may already be compacted away
+                if (slot < nextSlotToApply || learnedValues.contains(slot)) {
+                    return false;
+                }
+                // a COMMIT reports a value already chosen, an ACCEPTED is one vote for it
+                if (message.getType() == MessageType.ACCEPTED && !countVote(message)) {
+                    return false;
+                }
+                learn(message);
+                decided = pendingDecisions.remove(slot);
+                applied = takeApplied();
+                behind = message.getType() == MessageType.COMMIT && slot >= nextSlotToApply + CATCH_UP_GAP;
+            } catch (IOException e) {
+                System.out.println("ERROR: Learner " + paxosNode.host.getId() + " could not store slot " + slot
+                        + ": " + e.getMessage());
+                return false;
+            }
+        }
+        // completed outside the lock so callbacks can call back into the node
+        if (decided != null) {
+            decided.complete(message.getProposedValue());
+        }
+        runAll(applied);
+        if (behind) {
+            catchUp(slot, message.getSenderHost());
+        }
+        return true;
+    }
+
+    /*
+     * Asks a node that has learned every slot below chosenBefore for those
+     * this learner is missing. Until the first unapplied slot moves, the
+     * request is only repeated once the last one had time to be answered.
+     */
+    protected void catchUp(int chosenBefore, Host from) {
+        Message request;
+        synchronized (this) {
+            if (nextSlotToApply >= chosenBefore || from.equals(paxosNode.host)) {
+                return;
+            }
+            long now = paxosNode.scheduler.nanoTime();
+            if (catchUpSlot == nextSlotToApply && now - catchUpSentAt < CATCH_UP_RETRY_NANOS) {
+                return;
+            }
+            catchUpSlot = nextSlotToApply;
+            catchUpSentAt = now;
+            request = new Message(MessageType.CATCH_UP, nextSlotToApply, 0, null, paxosNode.host);
+        }
+        paxosNode.send(request, from);
+    }
+
+    /*
+     * Answers a CATCH_UP with a COMMIT for every applied slot from the given
+     * one on, stopping early at a slot compacted away meanwhile
+     */
+    protected void sendLearned(int from, Host to) {
+        for (int slot = from;; slot++) {
+            LogEntry entry;
+            synchronized (this) {
+                if (slot >= nextSlotToApply) {
+                    return;
+                }
+                try {
+                    entry = learnedValues.get(slot);
+                } catch (IOException e) {
+                    return;
+                }
+            }
+            if (entry == null) {
+                return;
+            }
+            paxosNode.send(new Message(MessageType.COMMIT, slot, entry.getProposalNumber(), entry.getValue(),
+                    paxosNode.host), to);
+        }
+    }
+
+    /*
+     * Takes one chunk of a snapshot sent in answer to a CATCH_UP. Chunks
+     * arrive in order from offset 0, each carrying the snapshot's size; a
+     * chunk that does not follow the ones before it drops the transfer. Once
+     * complete, the snapshot replaces the applied state if it is ahead of it.
+     */
+    protected void handleSnapshot(Message chunk) {
+        List<CompletableFuture<Object>> compacted = new ArrayList<>();
+        List<Runnable> applied;
+        synchronized (this) {
+            if (chunk.getSlot() <= nextSlotToApply || !(chunk.getProposedValue() instanceof byte[])) {
+                return;
+            }
+            if (chunk.getProposalNumber() == 0) {
+                incomingSnapshot = new ByteArrayOutputStream();
+                incomingSnapshotSlot = chunk.getSlot();
+                incomingSnapshotSender = chunk.getSenderHost();
+            } else if (incomingSnapshot == null || incomingSnapshotSlot != chunk.getSlot()
+                    || !incomingSnapshotSender.equals(chunk.getSenderHost())
+                    || incomingSnapshot.size() != chunk.getProposalNumber()) {
+                incomingSnapshot = null;
+                return;
+            }
+            byte[] bytes = (byte[]) chunk.getProposedValue();
+            incomingSnapshot.write(bytes, 0, bytes.length);
+            if (incomingSnapshot.size() < chunk.getHighestSeenProposalNumber()) {
+                return;
+            }
+            try {
+                Snapshot snapshot = SnapshotStore.decode(incomingSnapshot.toByteArray());
+                skipTo(snapshot, compacted);
+                applyLearnedValues();
+            } catch (IOException e) {
+                System.out.println("ERROR: Learner " + paxosNode.host.getId() + " could not install snapshot at slot "
+                        + chunk.getSlot() + ": " + e.getMessage());
+            } finally {
+                incomingSnapshot = null;
+            }
+            applied = takeApplied();
+        }
+        failCompacted(compacted);
+        runAll(applied);
+    }
+
+    /*
+     * Records the acceptance and tells whether a quorum accepted the slot's
+     * value under its ballot. A classic ballot carries one value per slot; in
+     * a fast one the votes are counted per value.
+     */
+    private boolean countVote(Message accept) {
+        int ballot = accept.getProposalNumber();
+        Object key = Ballot.isFast(ballot) ? Arrays.asList(ballot, accept.getProposedValue()) : ballot;
+        Set<Host> accepted = votes.computeIfAbsent(accept.getSlot(), s -> new HashMap<>())
+                .computeIfAbsent(key, b -> new HashSet<>());
+        accepted.add(accept.getSenderHost());
+        if (!paxosNode.isPhaseTwoQuorum(ballot, accepted)) {
+            return false;
+        }
+        votes.remove(accept.getSlot());
+        return true;
+    }
+
+    /**
+     * Future of the value decided for a slot. It completes on the thread that
+     * handles the ACCEPTED or COMMIT message the slot is learned from, so callers see
+     * the decision as soon as this learner does rather than when they next
+     * look. If the slot is already learned the future is already complete.
+     *
+     * @param slot Slot of the log.
+     * @return Future of the slot's value; it fails if the value was learned
+     *         but has since been compacted into a snapshot.
+     */
+    public CompletableFuture<Object> whenLearned(int slot) {
+        List<CompletableFuture<Object>> compacted = new ArrayList<>();
+        CompletableFuture<Object> decided;
+        synchronized (this) {
+            Object value = getLearnedValue(slot);
+            if (value != null) {
+                return CompletableFuture.completedFuture(value);
+            }
+            decided = pendingDecisions.computeIfAbsent(slot, s -> new CompletableFuture<>());
+            if (slot < nextSlotToApply) {
+                pendingDecisions.remove(slot);
+                compacted.add(decided);
+            }
+        }
+        failCompacted(compacted);
+        return decided;
+    }
+
+    /**
+     * Future that completes once this learner has applied the given number of
+     * slots, e.g. to read the state once it reflects everything a leader has
+     * proposed. Like {@link #whenLearned(int)}, it completes on the thread
+     * that applies the last of them.
+     *
+     * @param slotCount Number of slots, from slot 0, that must be applied.
+     * @return Future that completes once they are.
+     */
+    public CompletableFuture<Void> whenApplied(int slotCount) {
+        synchronized (this) {
+            if (nextSlotToApply < slotCount) {
+                CompletableFuture<Void> applied = new CompletableFuture<>();
+                pendingApplies.computeIfAbsent(slotCount, s -> new ArrayList<>()).add(applied);
+                return applied;
+            }
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /*
+     * Removes the results of applied commands and reads, and the whenApplied()
+     * futures the applied slots satisfy, to be completed outside the lock
+     */
+    private List<Runnable> takeApplied() {
+        List<Runnable> applied = new ArrayList<>(completions);
+        completions.clear();
+        while (!pendingApplies.isEmpty() && pendingApplies.firstKey() <= nextSlotToApply) {
+            for (CompletableFuture<Void> future : pendingApplies.pollFirstEntry().getValue()) {
+                applied.add(() -> future.complete(null));
+            }
+        }
+        return applied;
+    }
+
+    private static void runAll(List<Runnable> completions) {
+        for (Runnable completion : completions) {
+            completion.run();
+        }
+    }
+
+    private static void failCompacted(List<CompletableFuture<Object>> futures) {
+        for (CompletableFuture<Object> future : futures) {
+            future.completeExceptionally(new IllegalStateException("Slot was compacted into a snapshot"));
+        }
+    }
 
+    private void learn(Message accept) throws IOException {
+        int slot = accept.getSlot();
+        Object learnedValue = accept.getProposedValue();
+        learnedAt.put(slot, System.nanoTime());
+        votes.remove(slot);
+        learnedValues.put(new LogEntry(slot, accept.getProposalNumber(), learnedValue));
+        if (paxosNode.debug) {
+            System.out
+                    .println(
+                            "LEARN: Learner with ID " + paxosNode.host.getId() + " learned value: " +
+                                    learnedValue + " for slot " + slot);
+
+        }
+        applyLearnedValues();
+    }
+
+    /* Applies learned values in slot order, stopping at the first gap */
+    private void applyLearnedValues() throws IOException {
+        LogEntry entry;
+        while ((entry = learnedValues.get(nextSlotToApply)) != null) {
+            apply(nextSlotToApply, entry.getValue());
+            Long learned = learnedAt.remove(nextSlotToApply);
+            if (learned != null) {
+                appliedLatency.recordSince(learned);
             }
-            paxosNode.consensusValue = learnedValue;
-            broadcastLearnedValue(accept);
+            nextSlotToApply++;
+        }
+        if (snapshots != null) {
+            snapshots.onApplied(nextSlotToApply, paxosNode::snapshotState);
         }
     }
 
-    protected void broadcastLearnedValue(Message learned) {
-        paxosNode.broadcast(learned, paxosNode.hostList.getHosts());
+    /* Offers the applied state again, for a snapshot that came due while the last one was written */
+    protected synchronized void offerSnapshot() {
+        if (snapshots != null) {
+            snapshots.onApplied(nextSlotToApply, paxosNode::snapshotState);
+        }
+    }
+
+    private void apply(int slot, Object value) {
+        if (value instanceof CommandBatch) {
+            applyBatch(slot, ((CommandBatch) value).getCommands());
+        } else if (value instanceof Reconfiguration) {
+            paxosNode.installView(slot, (Reconfiguration) value);
+        } else if (value instanceof LogRead) {
+            CompletableFuture<Integer> read = paxosNode.takeLogRead((LogRead) value);
+            if (read != null) {
+                completions.add(() -> read.complete(slot));
+            }
+        } else if (!(value instanceof NoOp)) {
+            paxosNode.consensusValue = value;
+            StateMachine stateMachine = paxosNode.getStateMachine();
+            if (stateMachine != null) {
+                onCommandApplied(value, stateMachine.apply(value));
+            }
+        }
+    }
+
+    /*
+     * Hands the commands of a batch to the state machine together, so it can
+     * apply them at the cost of one; values the log itself handles are
+     * applied in their turn between them
+     */
+    private void applyBatch(int slot, List<Object> values) {
+        StateMachine stateMachine = paxosNode.getStateMachine();
+        List<Object> commands = new ArrayList<>(values.size());
+        for (Object value : values) {
+            if (stateMachine != null && !isLogValue(value)) {
+                commands.add(value);
+                continue;
+            }
+            applyCommands(stateMachine, commands);
+            commands.clear();
+            apply(slot, value);
+        }
+        applyCommands(stateMachine, commands);
+    }
+
+    private void applyCommands(StateMachine stateMachine, List<Object> commands) {
+        if (commands.isEmpty()) {
+            return;
+        }
+        List<Object> results = stateMachine.applyBatch(commands);
+        for (int i = 0; i < commands.size(); i++) {
+            onCommandApplied(commands.get(i), results.get(i));
+        }
+        paxosNode.consensusValue = commands.get(commands.size() - 1);
+    }
+
+    private static boolean isLogValue(Object value) {
+        return value instanceof CommandBatch || value instanceof Reconfiguration || value instanceof LogRead
+                || value instanceof NoOp;
+    }
+
+    /* Hands the result back if this node submitted the command */
+    private void onCommandApplied(Object command, Object result) {
+        CompletableFuture<Object> submitted = paxosNode.takeSubmittedCommand(command);
+        if (submitted != null) {
+            completions.add(() -> submitted.complete(result));
+        }
+    }
+
+    private void broadcastCommit(Message accepted) {
+        Message commit = new Message(MessageType.COMMIT, accepted.getSlot(), accepted.getProposalNumber(),
+                accepted.getProposedValue(), paxosNode.host);
+        paxosNode.broadcast(commit, paxosNode.hostList.getHosts());
+    }
+
+    public synchronized Object getLearnedValue(int slot) {
+        try {
+            LogEntry entry = learnedValues.get(slot);
+            return entry == null ? null : entry.getValue();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public synchronized int getNextSlotToApply() {
+        return nextSlotToApply;
+    }
+
+    /**
+     * Keeps learned values in the given storage instead of on the heap.
+     *
+     * @param storage Storage for the learned values.
+     * @param codec   Codec the values are written with.
+     */
+    protected synchronized void useLogStorage(LogStorage storage, MessageCodec codec) throws IOException {
+        learnedValues.attach(storage, codec, paxosNode.host);
+    }
+
+    /*
+     * Restores the applied state from the newest snapshot, if there is one,
+     * and from then on checkpoints it through the given manager
+     */
+    protected void enableSnapshots(SnapshotManager snapshots) throws IOException {
+        List<CompletableFuture<Object>> compacted = new ArrayList<>();
+        List<Runnable> applied;
+        synchronized (this) {
+            Snapshot snapshot = snapshots.recover();
+            if (snapshot != null) {
+                skipTo(snapshot, compacted);
+            }
+            this.snapshots = snapshots;
+            applyLearnedValues();
+            applied = takeApplied();
+        }
+        failCompacted(compacted);
+        runAll(applied);
+    }
+
+    /*
+     * Replaces the applied state with a snapshot ahead of it. Decisions the
+     * snapshot covers are no longer known one by one, so futures waiting for
+     * them are handed back to be failed.
+     */
+    private void skipTo(Snapshot snapshot, List<CompletableFuture<Object>> compacted) throws IOException {
+        if (snapshot.getSlot() <= nextSlotToApply) {
+            return;
+        }
+        nextSlotToApply = snapshot.getSlot();
+        paxosNode.restoreState(snapshot);
+        learnedValues.truncateBefore(nextSlotToApply);
+        learnedAt.keySet().removeIf(slot -> slot < nextSlotToApply);
+        votes.keySet().removeIf(slot -> slot < nextSlotToApply);
+        Iterator<Map.Entry<Integer, CompletableFuture<Object>>> pending = pendingDecisions.entrySet().iterator();
+        while (pending.hasNext()) {
+            Map.Entry<Integer, CompletableFuture<Object>> decision = pending.next();
+            if (decision.getKey() < nextSlotToApply) {
+                compacted.add(decision.getValue());
+                pending.remove();
+            }
+        }
+    }
+
+    /* Drops learned values below a slot covered by a snapshot */
+    protected synchronized void compactBefore(int slot) throws IOException {
+        learnedValues.truncateBefore(Math.min(slot, nextSlotToApply));
+    }
+
+    protected synchronized void reset() {
+        try {
+            this.learnedValues.clear();
+        } catch (IOException e) {
+            System.out.println("ERROR: Learner " + paxosNode.host.getId() + " could not clear its log");
+        }
+        this.nextSlotToApply = 0;
+        this.learnedAt.clear();
+        this.votes.clear();
+        this.completions.clear();
+        this.catchUpSlot = -1;
+        this.incomingSnapshot = null;
     }
 
-    protected void reset() {
-        this.hasLearned = false;
+    protected synchronized void close() throws IOException {
+        learnedValues.close();
     }
-}
\ No newline at end of file
+}
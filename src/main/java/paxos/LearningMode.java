@@ -0,0 +1,22 @@
+package paxos;
+
+/**
+ * How decisions reach the learners. Every node of a cluster must use the
+ * same mode.
+ */
+public enum LearningMode {
+    /*
+     * Acceptors send ACCEPTED to every learner. Each learner learns a value
+     * once a Phase 2 quorum accepted it under one ballot and sends a COMMIT
+     * to the whole cluster: quadratic traffic per decision, but no single
+     * learner the others depend on
+     */
+    ALL_TO_ALL,
+    /*
+     * Acceptors send ACCEPTED only to the first learner in the host list. It
+     * learns a value once a Phase 2 quorum accepted it under one ballot and
+     * sends a single COMMIT to every other node: linear traffic,
+     * but decisions stop reaching the others while that learner is down
+     */
+    DISTINGUISHED
+}
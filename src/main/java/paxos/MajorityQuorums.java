@@ -0,0 +1,45 @@
+package paxos;
+
+import java.util.Collection;
+import java.util.List;
+
+import models.Host;
+
+/* Any majority of the acceptors, in both phases; the default */
+public class MajorityQuorums implements QuorumSystem {
+
+    @Override
+    public void validate(List<Host> acceptors) {
+        // two majorities always intersect
+    }
+
+    @Override
+    public boolean isPhaseOneQuorum(Collection<Host> responders, List<Host> acceptors) {
+        return FlexibleQuorums.countMembers(responders, acceptors) >= getPhaseOneSize(acceptors);
+    }
+
+    @Override
+    public boolean isPhaseTwoQuorum(Collection<Host> responders, List<Host> acceptors) {
+        return FlexibleQuorums.countMembers(responders, acceptors) >= getPhaseTwoSize(acceptors);
+    }
+
+    @Override
+    public int getPhaseOneSize(List<Host> acceptors) {
+        return acceptors.size() / 2 + 1;
+    }
+
+    @Override
+    public int getPhaseTwoSize(List<Host> acceptors) {
+        return acceptors.size() / 2 + 1;
+    }
+
+    @Override
+    public String getName() {
+        return "majority";
+    }
+
+    @Override
+    public String toString() {
+        return "majority quorums";
+    }
+}
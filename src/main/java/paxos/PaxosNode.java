@@ -1,15 +1,39 @@
 package paxos;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
+import metrics.Counter;
+import metrics.MetricsRegistry;
+import models.Ballot;
 import models.Host;
 import models.HostList;
+import models.LogRead;
 import models.Message;
 import models.MessageType;
 import models.PaxosRole;
+import models.Reconfiguration;
+import models.Snapshot;
+import storage.MappedSegmentLogStorage;
+import storage.SnapshotStore;
+import storage.WriteAheadLog;
+import utils.BinaryMessageCodec;
+import utils.MessageCodec;
 import utils.NetworkHandler;
+import utils.NodeThreads;
+import utils.RealTimeScheduler;
+import utils.RttTracker;
+import utils.Scheduler;
+import utils.Transport;
 
 /**
  * Abstract class representing a node in the Paxos protocol.
@@ -17,13 +41,23 @@ import utils.NetworkHandler;
  * It is implemented by Member classes
  */
 public abstract class PaxosNode {
-    protected NetworkHandler networkHandler;
+    protected Transport transport;
+    /* encodes the node's own durable records */
+    protected final MessageCodec codec;
+    /* phase latencies, queue depths and traffic of this node */
+    protected final MetricsRegistry metrics;
+    /* clock and randomness behind the council behaviours */
+    protected Scheduler scheduler;
+    /* round-trip estimates per peer, behind the proposer's retransmission timeouts */
+    protected final RttTracker rtt;
+    /* when set, per-message INFO lines are not printed */
+    private boolean quiet;
     protected BlockingQueue<Message> messageQueue;
     protected Host host;
-    protected HostList hostList;
+    /* the active configuration, replaced whenever a reconfiguration is applied */
+    protected volatile HostList hostList;
     protected Boolean debug = false;
     private PaxosRole currentRole;
-    protected final int majority;
     /* use volatile to ensure visibility across threads */
     protected volatile boolean running;
     protected volatile Object consensusValue;;
@@ -31,27 +65,76 @@ public abstract class PaxosNode {
     Acceptor acceptor;
     Learner learner;
     Proposer proposer;
+    private CommandBatcher batcher;
+    private WriteAheadLog acceptorLog;
+    private SnapshotManager snapshots;
+    private volatile LearningMode learningMode = LearningMode.ALL_TO_ALL;
+    private volatile boolean fastMode;
+    private volatile QuorumSystem quorums = new MajorityQuorums();
+    /* service the learner applies decided commands to, or null to only keep the last one */
+    private volatile StateMachine stateMachine;
+    /* commands submitted through execute(), completed with their result once applied */
+    private final Map<Object, CompletableFuture<Object>> submittedCommands = new ConcurrentHashMap<>();
+    /* reads put in the log by this node, completed with their slot once applied */
+    private final Map<LogRead, CompletableFuture<Integer>> logReads = new ConcurrentHashMap<>();
+    private final AtomicLong readSequence = new AtomicLong();
+    private final Counter leasedReads;
+    private final Counter readsThroughLog;
 
     /**
-     * Constructor for PaxosNode.
+     * Constructor for PaxosNode. Messages travel over TCP.
      *
      * @param host     The host information for this node.
      * @param hostList A list of all hosts in the Paxos network.
      * @param debug    Flag to enable debug mode.
      */
     public PaxosNode(Host host, HostList hostList, Boolean debug) {
-        this.networkHandler = new NetworkHandler(host);
-        this.messageQueue = new LinkedBlockingQueue<>();
+        this(host, hostList, debug, new NetworkHandler(host, new BinaryMessageCodec(hostList)));
+    }
+
+    /**
+     * Constructor for PaxosNode with a given transport.
+     *
+     * @param host      The host information for this node.
+     * @param hostList  A list of all hosts in the Paxos network.
+     * @param debug     Flag to enable debug mode.
+     * @param transport How the node exchanges messages with the others.
+     */
+    public PaxosNode(Host host, HostList hostList, Boolean debug, Transport transport) {
+        this.transport = transport;
+        this.codec = new BinaryMessageCodec(hostList);
+        this.scheduler = new RealTimeScheduler();
+        this.messageQueue = new LinkedTransferQueue<>();
         this.host = host;
         this.hostList = hostList;
+        this.metrics = new MetricsRegistry(host.getId());
+        this.metrics.gauge("node.message_queue_depth", messageQueue::size);
+        transport.bindMetrics(metrics);
+        this.rtt = new RttTracker(metrics);
+        this.metrics.gauge("quorum.phase1_size", () -> quorums.getPhaseOneSize(this.hostList.getAcceptorHosts()));
+        this.metrics.gauge("quorum.phase2_size", () -> quorums.getPhaseTwoSize(this.hostList.getAcceptorHosts()));
+        this.metrics.gauge("quorum.system.majority", () -> quorums.getName().equals("majority") ? 1 : 0);
         this.running = true;
         this.consensusValue = null;
-        this.majority = (hostList.getSize() / 2) + 1;
         this.debug = debug;
         this.currentRole = host.getRole();
         this.proposer = new Proposer(this);
         this.acceptor = new Acceptor(this);
         this.learner = new Learner(this);
+        this.leasedReads = metrics.counter("node.reads_leased");
+        this.readsThroughLog = metrics.counter("node.reads_through_log");
+        this.metrics.gauge("proposer.lease_held", () -> proposer.getLeasedReadIndex() >= 0 ? 1 : 0);
+    }
+
+    /**
+     * Constructor for PaxosNode with a given transport, without debug mode.
+     *
+     * @param host      The host information for this node.
+     * @param hostList  A list of all hosts in the Paxos network.
+     * @param transport How the node exchanges messages with the others.
+     */
+    public PaxosNode(Host host, HostList hostList, Transport transport) {
+        this(host, hostList, false, transport);
     }
 
     /**
@@ -69,10 +152,22 @@ public abstract class PaxosNode {
      * process on a new thread to acheive distributed system functionality
      */
     public void startNode() {
-        this.networkHandler.startListening(this.messageQueue);
-        this.networkHandler.startMessageProcessing();
-        new Thread(this::startElectionProcess, "ElectionProcessThread-" +
-                host.getId()).start();
+        validateQuorums();
+        this.transport.startListening(this.messageQueue);
+        this.transport.startMessageProcessing();
+        NodeThreads.start("ElectionProcessThread-" + host.getId(), this::startElectionProcess);
+    }
+
+    /* Refuses to start with quorums that do not fit the acceptors, or with modes that do not go together */
+    private void validateQuorums() {
+        quorums.validate(hostList.getAcceptorHosts());
+        if (fastMode && !(quorums instanceof MajorityQuorums)) {
+            throw new IllegalStateException("Fast rounds need majority quorums, not " + quorums);
+        }
+        if (fastMode && proposer.hasLeaderLease()) {
+            throw new IllegalStateException("Leased reads need classic rounds, turn fast mode off first");
+        }
+        log("INFO: Node " + host.getId() + " uses " + quorums);
     }
 
     /**
@@ -87,6 +182,303 @@ public abstract class PaxosNode {
         }
     }
 
+    /**
+     * Appends a value to the replicated log. A proposer that already leads
+     * proposes it in the next free slot with a single Phase 2 round; otherwise
+     * it first runs Phase 1. In fast mode any node may submit, and the value
+     * goes straight to the acceptors instead.
+     *
+     * @param value The value to be decided.
+     */
+    public void submit(Object value) {
+        if (currentRole == PaxosRole.PROPOSER) {
+            if (batcher != null) {
+                batcher.add(value);
+            } else {
+                proposer.submit(value);
+            }
+        } else if (fastMode) {
+            sendFast(value);
+        } else {
+            System.out.println("INFO: Only proposers can submit values.");
+        }
+    }
+
+    /**
+     * Reads this node's applied state linearizably: the query sees every
+     * value chosen before the read was issued. A leader holding a lease
+     * answers with no messages, once its own learner has applied the slots it
+     * has proposed into. Without a lease the read is put in the log, and the
+     * query runs once that slot is applied, which costs a Phase 2 round. Only
+     * proposers serve reads, and a proposer other than the leader only
+     * completes them if it learns the log, as in DISTINGUISHED mode.
+     *
+     * @param query Reads the state, e.g. {@link #getConsensusValue()}.
+     * @return Future of the query's result. It completes on the thread that
+     *         applies the last slot the read waits for, or at once.
+     */
+    public <T> CompletableFuture<T> read(Supplier<T> query) {
+        if (currentRole != PaxosRole.PROPOSER) {
+            CompletableFuture<T> refused = new CompletableFuture<>();
+            refused.completeExceptionally(new IllegalStateException("Only proposers serve reads, "
+                    + host.getId() + " is a " + currentRole));
+            return refused;
+        }
+        int readIndex = proposer.getLeasedReadIndex();
+        if (readIndex >= 0) {
+            leasedReads.increment();
+            return learner.whenApplied(readIndex).thenApply(applied -> query.get());
+        }
+        readsThroughLog.increment();
+        LogRead marker = new LogRead(host.getId(), readSequence.incrementAndGet());
+        CompletableFuture<Integer> ordered = new CompletableFuture<>();
+        logReads.put(marker, ordered);
+        submit(marker);
+        return ordered.thenCompose(slot -> learner.whenApplied(slot + 1)).thenApply(applied -> query.get());
+    }
+
+    /* Future of a read marker the learner applied, or null if it was issued elsewhere or applied before */
+    CompletableFuture<Integer> takeLogRead(LogRead marker) {
+        return logReads.remove(marker);
+    }
+
+    /**
+     * Submits a command and hands back the state machine's result once this
+     * node has applied it. Like {@link #read}, this completes on the leader,
+     * or on another proposer if it learns the log. Commands waiting at once
+     * must not be equal to each other.
+     *
+     * @param command The command, e.g. a {@link kv.KvCommand}.
+     * @return Future of what {@link StateMachine#apply} returned for it.
+     */
+    public CompletableFuture<Object> execute(Object command) {
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        if (currentRole != PaxosRole.PROPOSER) {
+            result.completeExceptionally(new IllegalStateException("Only proposers execute commands, "
+                    + host.getId() + " is a " + currentRole));
+            return result;
+        }
+        submittedCommands.put(command, result);
+        submit(command);
+        return result;
+    }
+
+    /* Future of a command this node submitted through execute(), or null */
+    CompletableFuture<Object> takeSubmittedCommand(Object command) {
+        return submittedCommands.isEmpty() ? null : submittedCommands.remove(command);
+    }
+
+    /**
+     * Applies every decided command to a state machine from now on, such as
+     * a {@link kv.KeyValueStore}. Snapshots then hold its state. Call before
+     * startNode.
+     *
+     * @param stateMachine Service to replicate through the log.
+     */
+    public void setStateMachine(StateMachine stateMachine) {
+        this.stateMachine = stateMachine;
+    }
+
+    public StateMachine getStateMachine() {
+        return stateMachine;
+    }
+
+    /* A snapshot of the applied state and the view, once every slot below the given one is applied */
+    Snapshot snapshotState(int slot) {
+        StateMachine machine = stateMachine;
+        return new Snapshot(slot, machine != null ? machine.snapshot() : consensusValue, hostList);
+    }
+
+    /* The state of a snapshot snapshotState() returned has been written */
+    void releaseState(Object state) {
+        StateMachine machine = stateMachine;
+        if (machine != null) {
+            machine.snapshotReleased(state);
+        }
+    }
+
+    void restoreState(Snapshot snapshot) {
+        StateMachine machine = stateMachine;
+        if (machine != null) {
+            machine.restore(snapshot.getState());
+        } else {
+            consensusValue = snapshot.getState();
+        }
+        installView(snapshot);
+    }
+
+    /**
+     * Turns on leader leases, so the leader can serve {@link #read} locally.
+     * Once it wins Phase 1 it asks the acceptors for a lease and renews it
+     * while it leads. An acceptor that granted one turns other proposers away
+     * until it runs out, so a new leader takes over at least a lease duration
+     * after the old one stopped renewing. Leases rely on clocks running at
+     * nearly the same rate, not on them agreeing. Every node of the cluster
+     * should be given the same lease; it cannot be combined with fast mode.
+     *
+     * @param durationMillis How long acceptors turn other proposers away; 0
+     *                       turns leases off.
+     * @param maxClockDrift  Largest fraction by which any clock may run fast
+     *                       or slow, e.g. 0.01; the leader gives up twice
+     *                       that share of each lease as a margin.
+     */
+    public void setLeaderLease(long durationMillis, double maxClockDrift) {
+        proposer.setLeaderLease(durationMillis, maxClockDrift);
+    }
+
+    /* Turns on leader leases with a default margin for clock drift */
+    public void setLeaderLease(long durationMillis) {
+        setLeaderLease(durationMillis, LeaderLease.DEFAULT_MAX_CLOCK_DRIFT);
+    }
+
+    /* Sends a client value to every acceptor for the open fast round */
+    void sendFast(Object value) {
+        broadcast(new Message(MessageType.FAST_PROPOSE, 0, 0, value, host), hostList.getAcceptorHosts());
+    }
+
+    /**
+     * Puts a batching stage in front of the proposer so that commands passed to
+     * {@link #submit(Object)} are proposed several at a time.
+     *
+     * @param maxBatchBytes   Upper bound on the estimated size of a batch.
+     * @param maxBatchCount   Upper bound on the number of commands in a batch.
+     * @param maxLingerMillis Longest time a command waits for others to join it.
+     */
+    public void enableBatching(int maxBatchBytes, int maxBatchCount, long maxLingerMillis) {
+        if (batcher != null) {
+            batcher.stop();
+        }
+        batcher = new CommandBatcher(proposer, maxBatchBytes, maxBatchCount, maxLingerMillis);
+        batcher.start(host.getId());
+    }
+
+    /**
+     * Sets how many log slots this node may have proposed but not yet chosen at
+     * once while it is leader.
+     *
+     * @param pipelineWindow Number of in-flight slots; 1 gives stop-and-wait.
+     */
+    public void setPipelineWindow(int pipelineWindow) {
+        proposer.setPipelineWindow(pipelineWindow);
+    }
+
+    /**
+     * Sets how decisions reach the learners. Every node of the cluster must
+     * be given the same mode.
+     *
+     * @param learningMode ALL_TO_ALL, the default, or DISTINGUISHED.
+     */
+    public void setLearningMode(LearningMode learningMode) {
+        this.learningMode = learningMode;
+    }
+
+    public LearningMode getLearningMode() {
+        return learningMode;
+    }
+
+    /**
+     * Turns on Fast Paxos. The leader opens a fast round once it has nothing in
+     * flight, and from then on acceptors accept the values clients send them
+     * directly, saving the hop through the leader. A value needs a fast quorum
+     * of acceptors. When concurrent values collide in a slot, the leader
+     * resolves it with a classic round and then opens a fast round again.
+     * Every node of the cluster must be given the same mode.
+     *
+     * @param fastMode Whether to run fast rounds.
+     */
+    public void setFastMode(boolean fastMode) {
+        this.fastMode = fastMode;
+    }
+
+    public boolean isFastMode() {
+        return fastMode;
+    }
+
+    /* The learner acceptors report to in DISTINGUISHED mode, or null if there are no learners */
+    Host getDistinguishedLearner() {
+        List<Host> learners = hostList.getLearnerHosts();
+        return learners.isEmpty() ? null : learners.get(0);
+    }
+
+    boolean isDistinguishedLearner() {
+        return host.equals(getDistinguishedLearner());
+    }
+
+    /**
+     * Sets how long this node's proposer backs off after its ballot is
+     * rejected. The delay is drawn at random from a window that starts at the
+     * base and doubles with each rejection in a row, up to the maximum.
+     *
+     * @param baseBackoffMillis First backoff window; 0 retries at once.
+     * @param maxBackoffMillis  Largest backoff window.
+     */
+    public void setBackoff(long baseBackoffMillis, long maxBackoffMillis) {
+        proposer.setBackoff(baseBackoffMillis, maxBackoffMillis);
+    }
+
+    /**
+     * Makes this node's acceptor state survive a restart. The write-ahead log
+     * in the given directory is replayed, and from then on every promise and
+     * accept is forced to disk before it is answered. Call before startNode.
+     *
+     * @param directory Directory holding the node's log file.
+     */
+    public void enableDurableAcceptor(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        acceptorLog = new WriteAheadLog(new File(directory, "acceptor-" + host.getId() + ".wal"));
+        acceptor.enableWriteAheadLog(acceptorLog, codec);
+    }
+
+    /**
+     * Moves this node's accepted and learned log entries out of the heap into
+     * memory-mapped segment files, so long logs do not grow the heap. Call
+     * before startNode.
+     *
+     * @param directory Directory under which the node's segments are kept.
+     */
+    public void useMappedLogStorage(File directory) throws IOException {
+        acceptor.useLogStorage(new MappedSegmentLogStorage(new File(directory, "accepted-" + host.getId())),
+                codec);
+        learner.useLogStorage(new MappedSegmentLogStorage(new File(directory, "learned-" + host.getId())),
+                codec);
+    }
+
+    /**
+     * Checkpoints the learner's applied state every interval slots, then drops
+     * the learned values and acceptor records below the checkpoint. Snapshots
+     * are written on a background thread. If the directory already holds a
+     * snapshot, the node restarts from it. Call before startNode.
+     *
+     * @param directory Directory holding the node's snapshot file.
+     * @param interval  Number of applied slots between snapshots.
+     */
+    public void enableSnapshots(File directory, int interval) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        SnapshotStore store = new SnapshotStore(new File(directory, "snapshot-" + host.getId() + ".snap"));
+        snapshots = new SnapshotManager(this, store, interval);
+        learner.enableSnapshots(snapshots);
+    }
+
+    /* Discards log state below a slot that a snapshot covers */
+    void compactLog(int slot) throws IOException {
+        learner.compactBefore(slot);
+        acceptor.compactBefore(slot);
+    }
+
+    /* First slot not covered by the newest snapshot, or 0 without snapshots */
+    public int getLastSnapshotSlot() {
+        return snapshots == null ? 0 : snapshots.getLastSnapshotSlot();
+    }
+
+    /* Batch size and throughput figures, or null if batching is not enabled */
+    public BatchMetrics getBatchMetrics() {
+        return batcher == null ? null : batcher.getMetrics();
+    }
+
     protected abstract void send(Message message, Host targetHost);
 
     protected abstract Message receive(Message message);
@@ -108,16 +500,18 @@ public abstract class PaxosNode {
     }
 
     /**
-     * Processes the received message based on the node's current role.
+     * Processes the received message based on the node's current role. Runs
+     * on the node's own thread, or on the simulator's for simulated nodes.
      *
      * @param message The message to be handled.
      */
-    private void handleMessage(Message message) {
-        System.out.println("INFO: " + currentRole + " received message: " +
-                message.toString());
+    public void handleMessage(Message message) {
+        if (!quiet) {
+            log("INFO: " + currentRole + " received message: " + message.toString());
+        }
         message = receive(message);
         if (message == null) {
-            System.out.println("INFO: Received null message");
+            log("INFO: Received null message");
             return;
         }
         switch (currentRole) {
@@ -144,6 +538,24 @@ public abstract class PaxosNode {
             case NACK:
                 proposer.handleNack(message);
                 break;
+            case ACCEPTED:
+                proposer.handleAccepted(message);
+                break;
+            case FORWARD:
+                proposer.submit(message.getProposedValue());
+                break;
+            case LEASE_GRANTED:
+                proposer.handleLeaseGranted(message);
+                break;
+            case COMMIT:
+                learner.handleCommit(message);
+                break;
+            case CATCH_UP:
+                handleCatchUp(message);
+                break;
+            case SNAPSHOT:
+                learner.handleSnapshot(message);
+                break;
             default:
                 if (debug) {
                     System.out.println("INFO: Received an unhandled message type.");
@@ -163,9 +575,27 @@ public abstract class PaxosNode {
             case NACK:
                 acceptor.handleNack(message);
                 break;
+            case ANY:
+                acceptor.handleAny(message);
+                break;
+            case FAST_PROPOSE:
+                acceptor.handleFastPropose(message);
+                break;
+            case LEASE:
+                acceptor.handleLease(message);
+                break;
             case ACCEPTED:
                 learner.handleAccepted(message);
                 break;
+            case COMMIT:
+                learner.handleCommit(message);
+                break;
+            case CATCH_UP:
+                handleCatchUp(message);
+                break;
+            case SNAPSHOT:
+                learner.handleSnapshot(message);
+                break;
             default:
                 if (debug) {
                     System.out.println("INFO: Unhandled message type: " + message.getType());
@@ -177,26 +607,87 @@ public abstract class PaxosNode {
     void delegateToLearner(Message message) {
         if (message.getType() == MessageType.ACCEPTED) {
             learner.handleAccepted(message);
+        } else if (message.getType() == MessageType.COMMIT) {
+            learner.handleCommit(message);
+        } else if (message.getType() == MessageType.CATCH_UP) {
+            handleCatchUp(message);
+        } else if (message.getType() == MessageType.SNAPSHOT) {
+            learner.handleSnapshot(message);
+        } else {
+            log("LEARNER: Unhandled message type: " + message.getType());
+        }
+    }
+
+    /*
+     * Sends a learner that is behind what it asked for: the newest snapshot if
+     * the slots it needs were compacted away, then every applied slot after
+     */
+    private void handleCatchUp(Message request) {
+        SnapshotManager snapshots = this.snapshots;
+        if (snapshots != null) {
+            snapshots.sendTo(request.getSenderHost(), request.getSlot());
         } else {
-            System.out.println("LEARNER: Unhandled message type: " + message.getType());
+            learner.sendLearned(request.getSlot(), request.getSenderHost());
         }
     }
 
     /* Stops the node's operation */
     public void stopNode() {
         running = false;
-        this.networkHandler.stopListening();
-        this.networkHandler.stopMessageProcessing();
+        if (batcher != null) {
+            batcher.stop();
+        }
+        if (snapshots != null) {
+            snapshots.stop();
+        }
+        this.transport.stopListening();
+        this.transport.stopMessageProcessing();
+        if (acceptorLog != null) {
+            acceptorLog.close();
+        }
+        try {
+            acceptor.close();
+            learner.close();
+        } catch (IOException e) {
+            System.out.println("ERROR: Could not close log storage of " + host.getId() + ": " + e.getMessage());
+        }
     }
 
     protected void broadcast(Message message, List<Host> hosts) {
         for (Host targetHost : hosts) {
-            if (!targetHost.equals(networkHandler.getLocalHost())) {
-                networkHandler.sendMessage(message, targetHost);
+            if (!targetHost.equals(transport.getLocalHost())) {
+                transport.sendMessage(message, targetHost);
             }
         }
     }
 
+    /* Prints a line of the node's activity unless the node is quiet */
+    protected void log(String line) {
+        if (!quiet) {
+            System.out.println(line);
+        }
+    }
+
+    /* Stops the per-message INFO lines, e.g. for simulations of many elections */
+    public void setQuiet(boolean quiet) {
+        this.quiet = quiet;
+    }
+
+    /* Replaces the wall clock behind the council behaviours, e.g. with a simulator's */
+    public void setScheduler(Scheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /* Round-trip estimates and retransmission timeouts of the acceptors this node has sent to */
+    public RttTracker getRttTracker() {
+        return rtt;
+    }
+
+    /* The node's metrics, for an exporter such as TextMetricsExporter or JmxMetricsExporter */
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
     public PaxosRole getRole(PaxosRole newRole) {
         return currentRole;
     }
@@ -217,6 +708,119 @@ public abstract class PaxosNode {
         return hostList.getAcceptorHosts().size();
     }
 
+    /**
+     * Sets which acceptors form a quorum in each phase; majorities by default.
+     * Every node of the cluster must use the same quorum system. It is checked
+     * against the acceptors now and again when the node starts.
+     *
+     * @param quorums The quorum system, e.g. {@link FlexibleQuorums} or
+     *                {@link GridQuorums}.
+     * @throws IllegalArgumentException If its Phase 1 and Phase 2 quorums could
+     *                                  miss each other.
+     */
+    public void setQuorumSystem(QuorumSystem quorums) {
+        quorums.validate(hostList.getAcceptorHosts());
+        this.quorums = quorums;
+        String name = quorums.getName();
+        metrics.gauge("quorum.system." + name, () -> this.quorums.getName().equals(name) ? 1 : 0);
+    }
+
+    public QuorumSystem getQuorumSystem() {
+        return quorums;
+    }
+
+    /* Whether the acceptors that promised form a Phase 1 quorum of the active configuration */
+    boolean isPhaseOneQuorum(Set<Host> promised) {
+        return quorums.isPhaseOneQuorum(promised, hostList.getAcceptorHosts());
+    }
+
+    /* Whether acceptors that accepted a value under the ballot have chosen it */
+    boolean isPhaseTwoQuorum(int ballot, Set<Host> accepted) {
+        if (Ballot.isFast(ballot)) {
+            return accepted.size() >= getFastQuorumSize();
+        }
+        return quorums.isPhaseTwoQuorum(accepted, hostList.getAcceptorHosts());
+    }
+
+    /* Whether the acceptors that granted a lease meet every Phase 1 quorum, as a Phase 2 quorum does */
+    boolean isLeaseQuorum(Set<Host> granted) {
+        return quorums.isPhaseTwoQuorum(granted, hostList.getAcceptorHosts());
+    }
+
+    /*
+     * Acceptors that must accept a value in a fast round: three quarters, so
+     * any two fast quorums and a majority have an acceptor in common
+     */
+    int getFastQuorumSize() {
+        return (3 * getAcceptorsQuorumSize() + 3) / 4;
+    }
+
+    /* The configuration this node currently runs with */
+    public HostList getHostList() {
+        return hostList;
+    }
+
+    /**
+     * Proposes a change of membership. The new configuration is decided in a
+     * slot of the log, so every node switches to it at the same point, and
+     * quorums for every later slot are counted in it. Nodes that join should
+     * be created with the view {@link #getHostList()} returns once this node
+     * has switched. Only proposers can reconfigure.
+     *
+     * @param hosts Every member of the new configuration, with its role.
+     */
+    public void reconfigure(List<Host> hosts) {
+        if (getRole() != PaxosRole.PROPOSER) {
+            throw new IllegalStateException("Only proposers can reconfigure, " + host.getId() + " is a " + getRole());
+        }
+        if (fastMode) {
+            throw new IllegalStateException("Reconfiguration needs classic rounds, turn fast mode off first");
+        }
+        proposer.submit(new Reconfiguration(hosts));
+    }
+
+    /*
+     * Switches to the configuration decided in a slot. Both the learner and a
+     * proposer that saw the slot chosen call this, so a slot at or below the
+     * one behind the current view is ignored.
+     */
+    void installView(int slot, Reconfiguration reconfiguration) {
+        synchronized (this) {
+            if (slot <= hostList.getConfigSlot()) {
+                return;
+            }
+            hostList = hostList.reconfigure(slot, reconfiguration.getHosts());
+        }
+        viewInstalled(slot, reconfiguration);
+    }
+
+    /*
+     * Switches to the view a restored snapshot was taken in, since the
+     * reconfigurations that led to it are compacted away with the log
+     */
+    void installView(Snapshot snapshot) {
+        synchronized (this) {
+            if (snapshot.getHosts() == null || snapshot.getConfigSlot() <= hostList.getConfigSlot()) {
+                return;
+            }
+            hostList = hostList.restore(snapshot.getEpoch(), snapshot.getConfigSlot(), snapshot.getHosts(),
+                    snapshot.getMembers());
+        }
+        viewInstalled(snapshot.getConfigSlot(), new Reconfiguration(snapshot.getHosts()));
+    }
+
+    private void viewInstalled(int slot, Reconfiguration reconfiguration) {
+        try {
+            quorums.validate(hostList.getAcceptorHosts());
+        } catch (IllegalArgumentException e) {
+            // the change is decided already, so it can only be reported
+            System.out.println("ERROR: Node " + host.getId() + " switched to epoch " + hostList.getEpoch()
+                    + " whose acceptors do not fit its quorums: " + e.getMessage());
+        }
+        log("INFO: Node " + host.getId() + " switched to epoch " + hostList.getEpoch() + " at slot " + slot + ": "
+                + reconfiguration);
+    }
+
     public PaxosRole getRole() {
         return host.getRole();
     }
@@ -233,6 +837,34 @@ public abstract class PaxosNode {
         return consensusValue;
     }
 
+    /* Value learned for a slot of the log, or null if it is not known yet */
+    public Object getLearnedValue(int slot) {
+        return learner.getLearnedValue(slot);
+    }
+
+    /* Completes with the value of a slot as soon as this node learns it */
+    public CompletableFuture<Object> whenLearned(int slot) {
+        return learner.whenLearned(slot);
+    }
+
+    /* Number of log slots this node has learned and applied in order */
+    public int getAppliedSlotCount() {
+        return learner.getNextSlotToApply();
+    }
+
+    public boolean isLeader() {
+        return proposer.isLeader();
+    }
+
+    /* Highest ballot this node's acceptor has promised or accepted */
+    public int getPromisedProposalNumber() {
+        return acceptor.getMaxIdSeen();
+    }
+
+    /*
+     * Clears all protocol state. The replicated log does not need this between
+     * decisions; it is only for starting a fresh log
+     */
     public void rest() {
         proposer.reset();
         acceptor.reset();
@@ -241,10 +873,4 @@ public abstract class PaxosNode {
         consensusValue = null;
     }
 
-    /*
-     * public void setHostList(HostList hostList) {
-     * this.hostList = hostList;
-     * }
-     */
-
 }
@@ -1,74 +1,861 @@
 package paxos;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
+import metrics.Counter;
+import metrics.LatencyHistogram;
+import models.Ballot;
 import models.Host;
+import models.LogEntry;
 import models.Message;
 import models.MessageType;
+import models.NoOp;
+import models.Reconfiguration;
+import utils.Timeout;
 
+/**
+ * Multi-Paxos proposer. Phase 1 is run once for every slot from the first
+ * unchosen one onwards; after a quorum of promises the proposer is the leader
+ * and each further value costs only a Phase 2 round in the next free slot.
+ * Up to a window of slots may be in flight at once, each with its own quorum
+ * count, so throughput is not capped at one decision per round trip.
+ * Values may be submitted from any thread, so the entry points are
+ * synchronized.
+ *
+ * Ballots are {@link Ballot}s, so no two proposers share one. When an
+ * acceptor answers with a NACK the proposer runs Phase 1 again above the
+ * ballot the acceptor reported, after a jittered backoff from its
+ * {@link ContentionManager}. Meanwhile it takes the owner of that ballot to
+ * be the leader and forwards queued values to it rather than competing.
+ *
+ * An acceptor that still owes a reply when its retransmission timeout runs
+ * out is sent the outstanding PREPARE or PROPOSE messages again. The timeout
+ * is per acceptor and adapts to the round trips measured to it, so fast
+ * acceptors are retried quickly and slow ones are not flooded.
+ *
+ * A {@link Reconfiguration} is proposed only once every earlier slot is
+ * chosen, and nothing is proposed after it until it is chosen too. The
+ * proposer then switches to the new configuration and runs Phase 1 again
+ * with its acceptors, so every later slot is decided by the new quorums.
+ * A Reconfiguration found in the promises is completed the same way.
+ *
+ * In fast mode the leader wins Phase 1 with a fast ballot and, once nothing
+ * is in flight, sends ANY to open the following slots to values the clients
+ * send the acceptors directly. It counts the acceptances of those slots, and
+ * when concurrent values collide so that no value can reach a fast quorum it
+ * falls back to a classic round. That round takes, for every slot, the value
+ * most reported in the promises, proposes the other collided values again,
+ * and once it has drained a fast round is opened anew.
+ *
+ * With leases on, the leader asks the acceptors for a {@link LeaderLease}
+ * as soon as it wins Phase 1 and renews it while it leads. While it holds
+ * the lease no other proposer can win Phase 1, so every value chosen so far
+ * is in a slot below nextSlot and reads can be served locally. The leader's
+ * own learner is given every slot it sees chosen, so it can serve them.
+ */
 public class Proposer {
+    public static final int DEFAULT_PIPELINE_WINDOW = 32;
+    /* slot an election decides */
+    private static final int ELECTION_SLOT = 0;
+
+    /* current ballot, or after a NACK the highest ballot reported by it */
     private int proposalNumber;
     private Object proposalValue;
-    private Object acceptedValue;
-    private int highestPromisedId;
+    /* this node's own nomination, withdrawn once another candidate is found accepted */
+    private Object candidacy;
     private Set<Host> promiseResponses;
     private PaxosNode paxosNode;
 
+    /* first slot covered by the outstanding or won Phase 1 */
+    private int prepareSlot;
+    private boolean preparing;
+    private boolean leader;
+    /* next free slot this leader will propose into */
+    private int nextSlot;
+    /* lowest slot this proposer has not yet seen chosen */
+    private int firstUnchosenSlot;
+    /* entries reported per slot under the highest ballot seen in the promises so far */
+    private final Map<Integer, List<LogEntry>> promisedEntries;
+    /* acceptors that have accepted each in-flight slot under the current ballot */
+    private final Map<Integer, Set<Host>> acceptResponses;
+    /* value proposed for each slot not yet seen chosen, kept across a lost ballot */
+    private final Map<Integer, Object> proposedValues;
+    private final Set<Integer> chosenSlots;
+    /* values waiting for leadership or for room in the pipeline window */
+    private final Queue<Object> pendingValues;
+    /* most slots that may be proposed but not yet chosen at any time */
+    private int pipelineWindow;
+    /* when the outstanding Phase 1 was started, and when each in-flight slot was proposed */
+    private long prepareStartedAt;
+    private final Map<Integer, Long> proposedAt;
+    private boolean phaseOneStarted;
+    private final LatencyHistogram promiseQuorumLatency;
+    private final LatencyHistogram acceptedQuorumLatency;
+    private final Counter nacksReceived;
+    private final Counter phaseOneRetries;
+    private final Counter valuesForwarded;
+    private final ContentionManager contention;
+    /* Phase 1 retry waiting out its backoff, or null */
+    private Timeout retry;
+    /* retransmission timer of each acceptor that owes this proposer a reply */
+    private final Map<Host, Timeout> retransmits;
+    private final Counter retransmissions;
+    /* slot of the Reconfiguration in flight, or -1; no later slot is proposed meanwhile */
+    private int reconfigurationSlot = -1;
+    /* first slot of the open fast round, or -1 while values go through classic Phase 2 */
+    private int fastFromSlot = -1;
+    /* acceptors behind each value of the fast round's undecided slots, and when each got its first */
+    private final Map<Integer, Map<Object, Set<Host>>> fastVotes;
+    private final Map<Integer, Long> fastVotesStartedAt;
+    /* looks for fast slots some acceptors never voted in, e.g. as a value overtook the ANY */
+    private Timeout fastRoundCheck;
+    /* set from a collision until the classic round that resolves it has drained */
+    private boolean recovering;
+    /* fast ballot given up at the last collision, its values and those its recovery proposed */
+    private int collidedBallot = -1;
+    private final Set<Object> collidedValues;
+    private final Set<Object> recoveredValues;
+    private final Counter fastDecisions;
+    private final Counter collisions;
+    /* lease this proposer asks the acceptors for while it leads, or null if leases are off */
+    private LeaderLease lease;
+    private Timeout leaseRenewal;
+
     public Proposer(PaxosNode paxosNode) {
         this.proposalNumber = 0;
         this.promiseResponses = new HashSet<>();
-        highestPromisedId = -1;
+        this.promisedEntries = new HashMap<>();
+        this.acceptResponses = new HashMap<>();
+        this.proposedValues = new HashMap<>();
+        this.chosenSlots = new HashSet<>();
+        this.pendingValues = new ArrayDeque<>();
+        this.pipelineWindow = DEFAULT_PIPELINE_WINDOW;
         this.paxosNode = paxosNode;
+        this.proposedAt = new HashMap<>();
+        this.promiseQuorumLatency = paxosNode.metrics.histogram("proposer.prepare_to_promise_quorum");
+        this.acceptedQuorumLatency = paxosNode.metrics.histogram("proposer.propose_to_accepted_quorum");
+        this.nacksReceived = paxosNode.metrics.counter("proposer.nacks_received");
+        this.phaseOneRetries = paxosNode.metrics.counter("proposer.phase1_retries");
+        this.valuesForwarded = paxosNode.metrics.counter("proposer.values_forwarded");
+        this.contention = new ContentionManager();
+        this.retransmits = new HashMap<>();
+        this.retransmissions = paxosNode.metrics.counter("proposer.retransmissions");
+        this.fastVotes = new HashMap<>();
+        this.fastVotesStartedAt = new HashMap<>();
+        this.collidedValues = new LinkedHashSet<>();
+        this.recoveredValues = new HashSet<>();
+        this.fastDecisions = paxosNode.metrics.counter("proposer.fast_decisions");
+        this.collisions = paxosNode.metrics.counter("proposer.collisions");
     }
 
     /* Phase 1a: nominate self and send prepare message to all acceptor nodes */
-    protected void prepare() {
+    protected synchronized void prepare() {
         this.proposalValue = paxosNode.getHost().getId();
-        proposalNumber++;
-        Message prepareMessage = new Message(MessageType.PREPARE, proposalNumber,
+        this.candidacy = proposalValue;
+        submit(proposalValue);
+    }
+
+    /*
+     * Queues a value for the log. A leader proposes it straight away if the
+     * pipeline window has room; otherwise it waits for Phase 1 to be won or for
+     * an earlier slot to be chosen. While another proposer is taken to be the
+     * leader the value is forwarded to it instead.
+     */
+    protected synchronized void submit(Object value) {
+        pendingValues.add(value);
+        if (leader) {
+            proposePending();
+            return;
+        }
+        if (contention.hasLeader()) {
+            forwardPending();
+        }
+        if (!pendingValues.isEmpty() && !preparing && retry == null) {
+            startPhaseOne();
+        }
+    }
+
+    /*
+     * Hands queued values to the presumed leader. The election nomination
+     * stays, since it is only meaningful when this node proposes it.
+     */
+    private void forwardPending() {
+        Host leaderHost = paxosNode.hostList.getMember(contention.getLeaderIndex());
+        if (leaderHost == null || leaderHost.equals(paxosNode.host)) {
+            return;
+        }
+        Iterator<Object> values = pendingValues.iterator();
+        while (values.hasNext()) {
+            Object value = values.next();
+            if (value == candidacy) {
+                continue;
+            }
+            values.remove();
+            paxosNode.send(new Message(MessageType.FORWARD, 0, proposalNumber, value, paxosNode.host), leaderHost);
+            valuesForwarded.increment();
+        }
+    }
+
+    private void proposePending() {
+        if (fastFromSlot >= 0) {
+            // the acceptors pick the slots of the open fast round themselves
+            while (!pendingValues.isEmpty()) {
+                paxosNode.sendFast(pendingValues.poll());
+            }
+            return;
+        }
+        while (reconfigurationSlot < 0 && !pendingValues.isEmpty() && acceptResponses.size() < pipelineWindow) {
+            if (pendingValues.peek() instanceof Reconfiguration && !acceptResponses.isEmpty()) {
+                // the pipeline drains first, so no slot before it is left to the old quorums
+                return;
+            }
+            propose(nextSlot++, pendingValues.poll());
+        }
+    }
+
+    private void startPhaseOne() {
+        if (phaseOneStarted) {
+            phaseOneRetries.increment();
+        }
+        phaseOneStarted = true;
+        contention.onCompeting();
+        prepareStartedAt = now();
+        proposalNumber = paxosNode.isFastMode() && !recovering
+                ? Ballot.nextFast(proposalNumber, nodeIndex())
+                : Ballot.next(proposalNumber, nodeIndex());
+        preparing = true;
+        // slots this node's learner has applied are chosen, so Phase 1 does not need to ask about them
+        if (paxosNode.learner.getNextSlotToApply() > firstUnchosenSlot) {
+            skipChosenBefore(paxosNode.learner.getNextSlotToApply());
+        }
+        prepareSlot = firstUnchosenSlot;
+        promiseResponses.clear();
+        promisedEntries.clear();
+        Message prepareMessage = new Message(MessageType.PREPARE, prepareSlot, proposalNumber,
                 this.proposalValue, paxosNode.host);
         paxosNode.broadcast(prepareMessage, paxosNode.hostList.getAcceptorHosts());
+        armRetransmits();
     }
 
-    protected void propose() {
-        Object valueToSend = acceptedValue != null ? acceptedValue : proposalValue;
-        Message proposeMessage = new Message(MessageType.PROPOSE, proposalNumber,
-                valueToSend, paxosNode.host);
+    /* Member indexes never change, so ballots stay unique across reconfigurations */
+    private int nodeIndex() {
+        return Math.max(0, paxosNode.hostList.getMemberIndex(paxosNode.host));
+    }
+
+    /* Phase 2a for a single slot */
+    protected void propose(int slot, Object value) {
+        if (value instanceof Reconfiguration) {
+            reconfigurationSlot = slot;
+        }
+        acceptResponses.put(slot, new HashSet<>());
+        proposedValues.put(slot, value);
+        proposedAt.put(slot, now());
+        Message proposeMessage = new Message(MessageType.PROPOSE, slot, proposalNumber,
+                value, paxosNode.host);
         paxosNode.broadcast(proposeMessage, paxosNode.hostList.getAcceptorHosts());
+        armRetransmits();
+    }
+
+    /* Times requests with the node's scheduler, so simulated round trips are in virtual time */
+    private long now() {
+        return paxosNode.scheduler.nanoTime();
+    }
+
+    private void armRetransmits() {
+        for (Host acceptor : paxosNode.hostList.getAcceptorHosts()) {
+            if (!acceptor.equals(paxosNode.host) && !retransmits.containsKey(acceptor)) {
+                armRetransmit(acceptor);
+            }
+        }
+    }
+
+    private void armRetransmit(Host acceptor) {
+        retransmits.put(acceptor, paxosNode.scheduler.schedule(() -> retransmit(acceptor),
+                paxosNode.rtt.getTimeoutMillis(acceptor)));
+    }
+
+    /*
+     * Sends an acceptor again every request it has not answered for longer
+     * than its timeout, and keeps the timer going while it owes any reply.
+     * Requests younger than the timeout are left for the next round.
+     */
+    private synchronized void retransmit(Host acceptor) {
+        retransmits.remove(acceptor);
+        if (!paxosNode.isRunning()) {
+            return;
+        }
+        long now = now();
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(paxosNode.rtt.getTimeoutMillis(acceptor));
+        boolean owed = false;
+        boolean resent = false;
+        if (preparing && !promiseResponses.contains(acceptor)) {
+            owed = true;
+            if (now - prepareStartedAt >= timeoutNanos) {
+                paxosNode.send(new Message(MessageType.PREPARE, prepareSlot, proposalNumber, proposalValue,
+                        paxosNode.host), acceptor);
+                resent = true;
+            }
+        }
+        for (Map.Entry<Integer, Set<Host>> inFlight : acceptResponses.entrySet()) {
+            if (inFlight.getValue().contains(acceptor)) {
+                continue;
+            }
+            owed = true;
+            int slot = inFlight.getKey();
+            Long proposed = proposedAt.get(slot);
+            if (proposed != null && now - proposed >= timeoutNanos) {
+                paxosNode.send(new Message(MessageType.PROPOSE, slot, proposalNumber, proposedValues.get(slot),
+                        paxosNode.host), acceptor);
+                resent = true;
+            }
+        }
+        if (resent) {
+            retransmissions.increment();
+            paxosNode.rtt.onRetransmit(acceptor, now);
+        }
+        if (owed) {
+            armRetransmit(acceptor);
+        }
     }
 
-    /* Phase 2a */
-    protected void handlePromise(Message message) {
+    protected synchronized void handlePromise(Message message) {
         // A promise from an acceptor has been received.
         Host sender = message.getSenderHost();
+        if (!preparing || message.getProposalNumber() != proposalNumber) {
+            return;
+        }
         if (!promiseResponses.contains(sender)) {
             promiseResponses.add(sender);
-            int promisedId = message.getProposalNumber();
-            if (promisedId > highestPromisedId) {
-                highestPromisedId = promisedId;
-                acceptedValue = message.getProposedValue();
+            long now = now();
+            paxosNode.rtt.onReply(sender, prepareStartedAt, now);
+            if (message.getSlot() > firstUnchosenSlot) {
+                // the acceptor reports only slots it does not know to be chosen, so those below are
+                skipChosenBefore(message.getSlot());
+                paxosNode.learner.catchUp(message.getSlot(), sender);
+            }
+            recordPromisedEntries(message.getProposedValue());
+
+            if (paxosNode.isPhaseOneQuorum(promiseResponses)) {
+                promiseQuorumLatency.record(now - prepareStartedAt);
+                becomeLeader();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void recordPromisedEntries(Object promisedValue) {
+        if (!(promisedValue instanceof List)) {
+            return;
+        }
+        for (LogEntry entry : (List<LogEntry>) promisedValue) {
+            List<LogEntry> known = promisedEntries.get(entry.getSlot());
+            if (known == null || entry.getProposalNumber() > known.get(0).getProposalNumber()) {
+                known = new ArrayList<>();
+                promisedEntries.put(entry.getSlot(), known);
+            }
+            if (known.isEmpty() || entry.getProposalNumber() == known.get(0).getProposalNumber()) {
+                known.add(entry);
+            }
+        }
+    }
+
+    /*
+     * Under a classic ballot the reports of a slot agree. Under a fast one, a
+     * value a fast quorum may have chosen is reported by at least as many
+     * promises as that quorum overlaps with them, and no other value can be,
+     * so it must be taken. Otherwise nothing was chosen and a reported value
+     * not already placed in an earlier slot is preferred.
+     */
+    private Object pickReported(List<LogEntry> entries, Set<Object> placed) {
+        if (entries == null) {
+            return null;
+        }
+        Map<Object, Integer> reports = new HashMap<>();
+        Object most = null;
+        int mostReports = 0;
+        for (LogEntry entry : entries) {
+            int count = reports.merge(entry.getValue(), 1, Integer::sum);
+            if (count > mostReports) {
+                most = entry.getValue();
+                mostReports = count;
+            }
+        }
+        int ballot = entries.get(0).getProposalNumber();
+        int overlap = promiseResponses.size() + paxosNode.getFastQuorumSize() - paxosNode.getAcceptorsQuorumSize();
+        if (!Ballot.isFast(ballot) || mostReports >= overlap || !placed.contains(most)) {
+            return most;
+        }
+        for (Object value : reports.keySet()) {
+            if (!placed.contains(value)) {
+                return value;
             }
+        }
+        return most;
+    }
 
-            int acceptorMajority = paxosNode.getAcceptorsQuorumSize() / 2 + 1;
-            if (promiseResponses.size() >= acceptorMajority) {
-                propose();
+    /*
+     * Phase 1 is won for every slot from prepareSlot onwards. Values already
+     * accepted in those slots are proposed again under this ballot. Slots this
+     * proposer had proposed into under a lost ballot get their value again,
+     * other gaps are filled with no-ops, and then the queued values are
+     * streamed out.
+     */
+    private void becomeLeader() {
+        preparing = false;
+        leader = true;
+        contention.onLeadership();
+        if (candidacy != null && (promisedEntries.containsKey(ELECTION_SLOT) || firstUnchosenSlot > ELECTION_SLOT)) {
+            // another candidate may already be chosen, so back it rather than stand again
+            pendingValues.remove(candidacy);
+            candidacy = null;
+        }
+        int highestReportedSlot = prepareSlot - 1;
+        for (int slot : promisedEntries.keySet()) {
+            highestReportedSlot = Math.max(highestReportedSlot, slot);
+        }
+        for (int slot : proposedValues.keySet()) {
+            highestReportedSlot = Math.max(highestReportedSlot, slot);
+        }
+        Set<Object> placed = new HashSet<>();
+        for (int slot = prepareSlot; slot <= highestReportedSlot; slot++) {
+            if (slot < firstUnchosenSlot || chosenSlots.contains(slot)) {
+                continue;
             }
+            Object reported = pickReported(promisedEntries.get(slot), placed);
+            Object value = reported != null ? reported : proposedValues.getOrDefault(slot, NoOp.INSTANCE);
+            propose(slot, value);
+            placed.add(value);
+            if (reconfigurationSlot >= 0) {
+                // later slots belong to the next configuration, which Phase 1 is run again in
+                highestReportedSlot = slot;
+                break;
+            }
+        }
+        promisedEntries.clear();
+        nextSlot = Math.max(nextSlot, highestReportedSlot + 1);
+        if (recovering) {
+            recoveredValues.addAll(placed);
+            // collided values the recovery did not place were never chosen
+            for (Object value : collidedValues) {
+                if (!recoveredValues.contains(value)) {
+                    pendingValues.add(value);
+                }
+            }
+            collidedValues.clear();
+        }
+        openFastRound();
+        proposePending();
+        renewLease();
+    }
+
+    /*
+     * With nothing left in flight, a fast leader hands the following slots to
+     * the clients. A leader still on the classic ballot of a recovery first
+     * wins a fast ballot.
+     */
+    private void openFastRound() {
+        if (!paxosNode.isFastMode() || !leader || fastFromSlot >= 0 || !acceptResponses.isEmpty()
+                || reconfigurationSlot >= 0) {
+            return;
+        }
+        if (!Ballot.isFast(proposalNumber)) {
+            recovering = false;
+            leader = false;
+            startPhaseOne();
+            return;
         }
+        fastFromSlot = nextSlot;
+        paxosNode.broadcast(new Message(MessageType.ANY, fastFromSlot, proposalNumber, null, paxosNode.host),
+                paxosNode.hostList.getAcceptorHosts());
+        proposePending();
     }
 
-    protected void handleNack(Message message) {
+    /* Counts acceptances for slots this proposer proposed under its ballot */
+    protected synchronized void handleAccepted(Message message) {
+        Set<Host> accepted = acceptResponses.get(message.getSlot());
+        if (accepted == null || message.getProposalNumber() == collidedBallot) {
+            handleFastAccepted(message);
+            return;
+        }
+        if (message.getProposalNumber() != proposalNumber) {
+            return;
+        }
+        if (!accepted.add(message.getSenderHost())) {
+            return;
+        }
+        long now = now();
+        Long proposed = proposedAt.get(message.getSlot());
+        if (proposed != null) {
+            paxosNode.rtt.onReply(message.getSenderHost(), proposed, now);
+        }
+        if (paxosNode.isPhaseTwoQuorum(proposalNumber, accepted)) {
+            acceptResponses.remove(message.getSlot());
+            Object value = proposedValues.remove(message.getSlot());
+            proposedAt.remove(message.getSlot());
+            if (proposed != null) {
+                acceptedQuorumLatency.record(now - proposed);
+            }
+            markChosen(message.getSlot());
+            learnChosen(message.getSlot(), proposalNumber, value);
+            if (message.getSlot() == reconfigurationSlot) {
+                switchConfiguration(message.getSlot(), (Reconfiguration) value);
+                return;
+            }
+            proposePending();
+            openFastRound();
+        }
+    }
+
+    private void markChosen(int slot) {
+        chosenSlots.add(slot);
+        while (chosenSlots.remove(firstUnchosenSlot)) {
+            firstUnchosenSlot++;
+        }
+    }
+
+    /*
+     * Every slot below the given one is chosen, but not necessarily with the
+     * values this proposer had proposed there. A value is queued again only
+     * where this node's learner has learned something else in its slot. Where
+     * the learner has not caught up yet the value may well be the one chosen,
+     * so it is dropped rather than decided twice, and its client retries if it
+     * never hears back. A nomination proposed below it is dropped, and one
+     * still queued is withdrawn once Phase 1 is won.
+     */
+    private void skipChosenBefore(int slot) {
+        firstUnchosenSlot = slot;
+        chosenSlots.removeIf(chosen -> chosen < slot);
+        while (chosenSlots.remove(firstUnchosenSlot)) {
+            firstUnchosenSlot++;
+        }
+        nextSlot = Math.max(nextSlot, firstUnchosenSlot);
+        if (reconfigurationSlot >= 0 && reconfigurationSlot < slot) {
+            reconfigurationSlot = -1;
+        }
+        Iterator<Map.Entry<Integer, Object>> proposed = proposedValues.entrySet().iterator();
+        while (proposed.hasNext()) {
+            Map.Entry<Integer, Object> entry = proposed.next();
+            if (entry.getKey() >= slot) {
+                continue;
+            }
+            proposed.remove();
+            acceptResponses.remove(entry.getKey());
+            proposedAt.remove(entry.getKey());
+            Object learned = paxosNode.learner.getLearnedValue(entry.getKey());
+            if (entry.getValue() != candidacy && learned != null && !learned.equals(entry.getValue())) {
+                pendingValues.add(entry.getValue());
+            }
+        }
+    }
+
+    /* Hands a chosen slot to this node's learner, which acceptors do not report to in ALL_TO_ALL mode */
+    private void learnChosen(int slot, int ballot, Object value) {
+        paxosNode.learner.handleCommit(new Message(MessageType.COMMIT, slot, ballot, value, paxosNode.host));
+    }
+
+    /*
+     * Asks the acceptors for the lease under the current ballot, and again
+     * every renewal period for as long as this proposer leads
+     */
+    private synchronized void renewLease() {
+        if (leaseRenewal != null) {
+            leaseRenewal.cancel();
+            leaseRenewal = null;
+        }
+        if (lease == null || !leader || !paxosNode.isRunning()) {
+            return;
+        }
+        int request = lease.request(proposalNumber, now());
+        paxosNode.broadcast(new Message(MessageType.LEASE, request, proposalNumber, lease.getDurationMillis(),
+                paxosNode.host), paxosNode.hostList.getAcceptorHosts());
+        leaseRenewal = paxosNode.scheduler.schedule(this::renewLease, lease.getRenewalMillis());
+    }
+
+    /*
+     * The lease is held once acceptors that meet every Phase 1 quorum granted
+     * the newest request; the slot of a grant is the request it answers
+     */
+    protected synchronized void handleLeaseGranted(Message message) {
+        if (lease == null || !leader) {
+            return;
+        }
+        Set<Host> grants = lease.onGranted(message.getSlot(), message.getProposalNumber(), message.getSenderHost());
+        if (grants != null && paxosNode.isLeaseQuorum(grants)) {
+            lease.onQuorum();
+        }
+    }
+
+    /*
+     * Slots a local read has to wait to see applied: every slot this leader
+     * has proposed into, or -1 if it does not hold a lease, in which case the
+     * read has to go through the log
+     */
+    protected synchronized int getLeasedReadIndex() {
+        if (!leader || lease == null || !lease.isHeld(proposalNumber, now())) {
+            return -1;
+        }
+        return nextSlot;
+    }
+
+    /* Turns leases on for a duration, or off with a duration of 0 */
+    protected synchronized void setLeaderLease(long durationMillis, double maxClockDrift) {
+        lease = durationMillis > 0 ? new LeaderLease(durationMillis, maxClockDrift) : null;
+        if (leader) {
+            renewLease();
+        }
+    }
+
+    protected synchronized boolean hasLeaderLease() {
+        return lease != null;
+    }
+
+    /*
+     * Counts an acceptance of a client value in the open fast round. A slot is
+     * chosen once a fast quorum accepted one value, and has collided once the
+     * acceptors still to answer could not make any value reach one.
+     */
+    private void handleFastAccepted(Message message) {
+        int slot = message.getSlot();
+        Object value = message.getProposedValue();
+        if (slot < firstUnchosenSlot || chosenSlots.contains(slot)) {
+            return;
+        }
+        if (message.getProposalNumber() == collidedBallot) {
+            requeueCollided(value);
+            return;
+        }
+        if (fastFromSlot < 0 || slot < fastFromSlot || message.getProposalNumber() != proposalNumber) {
+            return;
+        }
+        Map<Object, Set<Host>> slotVotes = fastVotes.get(slot);
+        if (slotVotes == null) {
+            slotVotes = new HashMap<>();
+            fastVotes.put(slot, slotVotes);
+            fastVotesStartedAt.put(slot, now());
+            armFastRoundCheck();
+        }
+        slotVotes.computeIfAbsent(value, v -> new HashSet<>()).add(message.getSenderHost());
+        int voted = 0;
+        int most = 0;
+        for (Set<Host> voters : slotVotes.values()) {
+            voted += voters.size();
+            most = Math.max(most, voters.size());
+        }
+        int fastQuorum = paxosNode.getFastQuorumSize();
+        if (most >= fastQuorum) {
+            fastVotes.remove(slot);
+            fastVotesStartedAt.remove(slot);
+            fastDecisions.increment();
+            nextSlot = Math.max(nextSlot, slot + 1);
+            markChosen(slot);
+            learnChosen(slot, message.getProposalNumber(), value);
+        } else if (most + paxosNode.getAcceptorsQuorumSize() - voted < fastQuorum) {
+            recoverFromCollision();
+        }
+    }
+
+    private void armFastRoundCheck() {
+        if (fastRoundCheck == null) {
+            fastRoundCheck = paxosNode.scheduler.schedule(this::checkFastRound, fastRoundTimeoutMillis());
+        }
+    }
+
+    /* A fast slot needs every acceptor of a fast quorum, so it waits for the slowest */
+    private long fastRoundTimeoutMillis() {
+        long timeout = 0;
+        for (Host acceptor : paxosNode.hostList.getAcceptorHosts()) {
+            timeout = Math.max(timeout, paxosNode.rtt.getTimeoutMillis(acceptor));
+        }
+        return timeout;
+    }
+
+    /* A fast slot still undecided after the timeout is resolved like a collision */
+    private synchronized void checkFastRound() {
+        fastRoundCheck = null;
+        if (!paxosNode.isRunning() || fastFromSlot < 0 || fastVotes.isEmpty()) {
+            return;
+        }
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(fastRoundTimeoutMillis());
+        long now = now();
+        for (long startedAt : fastVotesStartedAt.values()) {
+            if (now - startedAt >= timeoutNanos) {
+                recoverFromCollision();
+                return;
+            }
+        }
+        armFastRoundCheck();
+    }
+
+    /*
+     * Closes the fast round and runs a classic Phase 1, whose promises report
+     * what every acceptor accepted in the collided slots
+     */
+    private void recoverFromCollision() {
+        collisions.increment();
+        collidedBallot = proposalNumber;
+        for (Map<Object, Set<Host>> slotVotes : fastVotes.values()) {
+            collidedValues.addAll(slotVotes.keySet());
+        }
+        fastVotes.clear();
+        fastVotesStartedAt.clear();
+        fastFromSlot = -1;
+        recoveredValues.clear();
+        leader = false;
+        recovering = true;
+        startPhaseOne();
+    }
+
+    /*
+     * An acceptance from the closed fast round that arrived late. Unless the
+     * recovery placed the value, it was not chosen and is proposed again.
+     */
+    private void requeueCollided(Object value) {
+        if (recoveredValues.contains(value) || pendingValues.contains(value) || proposedValues.containsValue(value)) {
+            return;
+        }
+        if (recovering && preparing) {
+            collidedValues.add(value);
+        } else {
+            recoveredValues.add(value);
+            submit(value);
+        }
+    }
+
+    /*
+     * The acceptors of the new configuration have promised nothing to this
+     * ballot, so leadership is won again with them before the next slot
+     */
+    private void switchConfiguration(int slot, Reconfiguration reconfiguration) {
+        reconfigurationSlot = -1;
+        paxosNode.installView(slot, reconfiguration);
+        leader = false;
+        for (Timeout retransmit : retransmits.values()) {
+            retransmit.cancel();
+        }
+        retransmits.clear();
+        if (retry == null) {
+            startPhaseOne();
+        }
+    }
+
+    /*
+     * An acceptor has seen a higher ballot. NACKs for a ballot this proposer
+     * already moved on from are ignored, so a round of NACKs causes one retry,
+     * and that retry waits out a backoff so dueling proposers spread apart.
+     */
+    protected synchronized void handleNack(Message message) {
+        nacksReceived.increment();
         Integer highestSeenProposalNumber = message.getHighestSeenProposalNumber();
-        if (highestSeenProposalNumber != null && highestSeenProposalNumber >= this.proposalNumber) {
-            this.proposalNumber = highestSeenProposalNumber + 1;
-            promiseResponses.clear();
-            this.acceptedValue = null;
+        if (highestSeenProposalNumber == null || message.getProposalNumber() != proposalNumber
+                || highestSeenProposalNumber <= proposalNumber) {
+            return;
+        }
+        this.proposalNumber = highestSeenProposalNumber;
+        promiseResponses.clear();
+        promisedEntries.clear();
+        acceptResponses.clear();
+        proposedAt.clear();
+        reconfigurationSlot = -1;
+        fastFromSlot = -1;
+        fastVotes.clear();
+        fastVotesStartedAt.clear();
+        // another proposer holds a higher ballot, so this one is no longer leader
+        leader = false;
+        preparing = false;
+        long backoff = contention.onPreempted(highestSeenProposalNumber, paxosNode.scheduler.getRandom());
+        forwardPending();
+        if (retry == null && (!pendingValues.isEmpty() || !proposedValues.isEmpty())) {
+            retry = paxosNode.scheduler.schedule(this::retryPhaseOne, backoff);
         }
     }
 
-    protected void reset() {
+    /*
+     * Values proposed under the lost ballot still need a Phase 1 to find out
+     * whether they were chosen, and a nomination cannot be forwarded
+     */
+    private synchronized void retryPhaseOne() {
+        retry = null;
+        if (!leader && !preparing && (!pendingValues.isEmpty() || !proposedValues.isEmpty())) {
+            startPhaseOne();
+        }
+    }
+
+    /* Sets the first and largest backoff window after a NACK; 0 retries at once */
+    protected synchronized void setBackoff(long baseBackoffMillis, long maxBackoffMillis) {
+        contention.setBackoff(baseBackoffMillis, maxBackoffMillis);
+    }
+
+    /* Sets how many slots may be in flight at once; 1 gives stop-and-wait */
+    protected synchronized void setPipelineWindow(int pipelineWindow) {
+        this.pipelineWindow = Math.max(1, pipelineWindow);
+        if (leader) {
+            proposePending();
+        }
+    }
+
+    public synchronized boolean isLeader() {
+        return leader;
+    }
+
+    public synchronized int getFirstUnchosenSlot() {
+        return firstUnchosenSlot;
+    }
+
+    /* The ballot of this proposer's latest Phase 1 */
+    protected synchronized int getProposalNumber() {
+        return proposalNumber;
+    }
+
+    protected synchronized void reset() {
         this.proposalNumber = 0;
         this.promiseResponses.clear();
-        highestPromisedId = -1;
+        this.promisedEntries.clear();
+        this.acceptResponses.clear();
+        this.proposedValues.clear();
+        this.candidacy = null;
+        this.chosenSlots.clear();
+        this.pendingValues.clear();
+        this.leader = false;
+        this.preparing = false;
+        this.reconfigurationSlot = -1;
+        this.fastFromSlot = -1;
+        this.fastVotes.clear();
+        this.fastVotesStartedAt.clear();
+        this.recovering = false;
+        this.collidedBallot = -1;
+        this.collidedValues.clear();
+        this.recoveredValues.clear();
+        if (retry != null) {
+            retry.cancel();
+            retry = null;
+        }
+        if (fastRoundCheck != null) {
+            fastRoundCheck.cancel();
+            fastRoundCheck = null;
+        }
+        if (leaseRenewal != null) {
+            leaseRenewal.cancel();
+            leaseRenewal = null;
+        }
+        if (lease != null) {
+            lease.reset();
+        }
+        for (Timeout retransmit : retransmits.values()) {
+            retransmit.cancel();
+        }
+        this.retransmits.clear();
+        this.contention.reset();
+        this.nextSlot = 0;
+        this.firstUnchosenSlot = 0;
     }
 }
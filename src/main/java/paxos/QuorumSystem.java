@@ -0,0 +1,41 @@
+package paxos;
+
+import java.util.Collection;
+import java.util.List;
+
+import models.Host;
+
+/**
+ * Which sets of acceptors make up a quorum in each phase. Paxos stays safe
+ * as long as every Phase 1 quorum has an acceptor in common with every
+ * Phase 2 quorum, so the two phases can use quorums of different shapes,
+ * e.g. small Phase 2 quorums for a stable leader's steady state paid for
+ * with larger Phase 1 quorums on a change of leader.
+ */
+public interface QuorumSystem {
+
+    /**
+     * Checks the quorums against the acceptors of a configuration.
+     *
+     * @param acceptors Acceptors of the configuration, in host list order.
+     * @throws IllegalArgumentException If a Phase 1 and a Phase 2 quorum could
+     *                                  miss each other, or the acceptors do not
+     *                                  fit the quorum system.
+     */
+    void validate(List<Host> acceptors);
+
+    /* Whether the responders include a Phase 1 quorum of the acceptors */
+    boolean isPhaseOneQuorum(Collection<Host> responders, List<Host> acceptors);
+
+    /* Whether the responders include a Phase 2 quorum of the acceptors */
+    boolean isPhaseTwoQuorum(Collection<Host> responders, List<Host> acceptors);
+
+    /* Fewest acceptors a Phase 1 quorum can have */
+    int getPhaseOneSize(List<Host> acceptors);
+
+    /* Fewest acceptors a Phase 2 quorum can have */
+    int getPhaseTwoSize(List<Host> acceptors);
+
+    /* Short name the choice is reported under in metrics */
+    String getName();
+}
@@ -0,0 +1,172 @@
+package paxos;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntFunction;
+
+import models.Host;
+import models.Message;
+import models.MessageType;
+import models.Snapshot;
+import storage.SnapshotStore;
+
+/**
+ * Checkpoints the learner's applied state every so many slots. The learner
+ * only hands over the state it has already built, which the state machine
+ * shares copy-on-write; the snapshot is serialized and written on a
+ * background thread, so the learner keeps applying meanwhile. Once the
+ * snapshot is on disk, the node's log is compacted up to its slot and the
+ * state is released. No snapshot is taken while one is being written, so the
+ * state machine only ever has one to share its state with.
+ */
+class SnapshotManager {
+    /* snapshots are sent to other nodes in chunks of this size, well below the transport's frame limit */
+    private static final int TRANSFER_CHUNK_BYTES = 1 << 20;
+
+    private final PaxosNode paxosNode;
+    private final SnapshotStore store;
+    private final int interval;
+    private final ExecutorService writer;
+    private final AtomicBoolean writing = new AtomicBoolean();
+    private final AtomicReference<Snapshot> latest = new AtomicReference<>();
+    private volatile int lastSnapshotSlot;
+    /* slot of the newest state taken, so a slow write does not make every apply take another copy */
+    private int lastOfferedSlot;
+
+    /**
+     * @param paxosNode Node whose log is compacted after each snapshot.
+     * @param store     Where snapshots are written.
+     * @param interval  Number of applied slots between snapshots.
+     */
+    SnapshotManager(PaxosNode paxosNode, SnapshotStore store, int interval) {
+        this.paxosNode = paxosNode;
+        this.store = store;
+        this.interval = Math.max(1, interval);
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Snapshotter-" + paxosNode.getId());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /* The snapshot to restart from, or null if there is none */
+    Snapshot recover() throws IOException {
+        Snapshot snapshot = store.load();
+        if (snapshot != null) {
+            lastSnapshotSlot = snapshot.getSlot();
+        }
+        return snapshot;
+    }
+
+    /*
+     * Called by the learner after it has applied every slot below appliedUpTo.
+     * The state is only taken when a snapshot is due and none is being
+     * written, and must not be changed afterwards by the caller.
+     */
+    void onApplied(int appliedUpTo, IntFunction<Snapshot> snapshot) {
+        if (appliedUpTo - Math.max(lastSnapshotSlot, lastOfferedSlot) < interval || writing.get()) {
+            return;
+        }
+        lastOfferedSlot = appliedUpTo;
+        latest.set(snapshot.apply(appliedUpTo));
+        if (writing.compareAndSet(false, true)) {
+            try {
+                writer.execute(this::writeLatest);
+            } catch (RuntimeException e) {
+                // rejected after stop()
+                Snapshot rejected = latest.getAndSet(null);
+                if (rejected != null) {
+                    paxosNode.releaseState(rejected.getState());
+                }
+                writing.set(false);
+            }
+        }
+    }
+
+    private void writeLatest() {
+        Snapshot snapshot = latest.getAndSet(null);
+        if (snapshot != null) {
+            write(snapshot);
+        }
+        writing.set(false);
+        // slots applied while it was written may already call for the next one
+        paxosNode.learner.offerSnapshot();
+    }
+
+    private void write(Snapshot snapshot) {
+        try {
+            store.write(snapshot);
+            lastSnapshotSlot = snapshot.getSlot();
+            paxosNode.compactLog(snapshot.getSlot());
+            if (paxosNode.debug) {
+                System.out.println("INFO: " + paxosNode.getId() + " took snapshot at slot " + snapshot.getSlot());
+            }
+        } catch (IOException e) {
+            System.out.println("ERROR: " + paxosNode.getId() + " could not write snapshot: " + e.getMessage());
+        } finally {
+            paxosNode.releaseState(snapshot.getState());
+        }
+    }
+
+    /*
+     * Answers a CATCH_UP from a learner behind the newest snapshot with that
+     * snapshot, in chunks, and then with the applied slots after it. It runs
+     * on the writer thread, so the snapshot sent is the one the log was
+     * compacted to and no compaction removes the slots after it meanwhile.
+     */
+    void sendTo(Host learner, int from) {
+        try {
+            writer.execute(() -> {
+                int next = from;
+                if (from < lastSnapshotSlot) {
+                    try {
+                        sendSnapshot(learner);
+                        next = lastSnapshotSlot;
+                    } catch (IOException e) {
+                        System.out.println("ERROR: " + paxosNode.getId() + " could not send snapshot: "
+                                + e.getMessage());
+                        return;
+                    }
+                }
+                paxosNode.learner.sendLearned(next, learner);
+            });
+        } catch (RuntimeException e) {
+            // rejected after stop()
+        }
+    }
+
+    private void sendSnapshot(Host learner) throws IOException {
+        byte[] bytes = store.readBytes();
+        if (bytes == null) {
+            throw new IOException("snapshot at slot " + lastSnapshotSlot + " is missing");
+        }
+        int offset = 0;
+        do {
+            int length = Math.min(TRANSFER_CHUNK_BYTES, bytes.length - offset);
+            byte[] chunk = new byte[length];
+            System.arraycopy(bytes, offset, chunk, 0, length);
+            Message message = new Message(MessageType.SNAPSHOT, lastSnapshotSlot, offset, chunk, paxosNode.host);
+            message.setHighestSeenProposalNumber(bytes.length);
+            paxosNode.send(message, learner);
+            offset += length;
+        } while (offset < bytes.length);
+    }
+
+    int getLastSnapshotSlot() {
+        return lastSnapshotSlot;
+    }
+
+    /* Lets a snapshot that is being written finish */
+    void stop() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package paxos;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A service replicated through the log. The learner hands it every decided
+ * command in slot order, one slot at a time, so every node's copy goes
+ * through the same states. Values the log uses itself, such as no-ops,
+ * reconfigurations and read markers, never reach it. Reads may come from
+ * other threads while commands are applied, so implementations guard their
+ * state.
+ */
+public interface StateMachine {
+
+    /**
+     * Applies one decided command.
+     *
+     * @param command The command, as it was submitted.
+     * @return Result handed back to the node that submitted the command.
+     */
+    Object apply(Object command);
+
+    /**
+     * Applies the commands batched into one slot, in order. Implementations
+     * can do it at the cost of one command, e.g. taking their lock once.
+     *
+     * @param commands Commands in the order they were submitted.
+     * @return The result of each command, in the same order.
+     */
+    default List<Object> applyBatch(List<Object> commands) {
+        List<Object> results = new ArrayList<>(commands.size());
+        for (Object command : commands) {
+            results.add(apply(command));
+        }
+        return results;
+    }
+
+    /*
+     * State for a snapshot; applying later commands must not change it. It is
+     * taken on the thread that applies commands, which waits meanwhile, and
+     * serialized later on a background thread, so implementations should
+     * share their state copy-on-write rather than copy it here.
+     */
+    Object snapshot();
+
+    /* The snapshot taken by snapshot() has been written and is no longer used */
+    default void snapshotReleased(Object state) {
+    }
+
+    /* Replaces the state with one taken by snapshot(), when a node restarts from a snapshot */
+    void restore(Object state);
+}
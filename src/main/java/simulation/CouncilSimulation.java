@@ -0,0 +1,140 @@
+package simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import council.M2;
+import council.M3;
+import council.M4_9;
+import models.Host;
+import models.HostList;
+import models.PaxosRole;
+import paxos.PaxosNode;
+import utils.NodeSetupUtils;
+
+/**
+ * Runs one council election on virtual time. Every behaviour is drawn from the
+ * seed: M2's delays and its trips to the café, M3's camping trips, the
+ * M4-M9 response times, when each proposer starts and how long each message
+ * is in flight. Nothing reads the wall clock, so a seed always replays the
+ * same election.
+ */
+public class CouncilSimulation {
+
+    private static final int MIN_LATENCY_MILLIS = 1;
+    private static final int MAX_LATENCY_MILLIS = 50;
+    /* longest a proposer waits before it starts its election */
+    private static final int MAX_START_MILLIS = 1000;
+    /* mean time between M2 going to or leaving the café, and M3 leaving for or coming back from camping */
+    private static final int MEAN_TOGGLE_MILLIS = 5000;
+
+    private final Simulator simulator;
+    private final SimulatedNetwork network;
+    private final List<PaxosNode> nodes = new ArrayList<>();
+    private final List<SimulatedHost> simulatedHosts = new ArrayList<>();
+
+    public CouncilSimulation(HostList hostList, long seed) {
+        this.simulator = new Simulator(seed);
+        this.network = new SimulatedNetwork(simulator, MIN_LATENCY_MILLIS, MAX_LATENCY_MILLIS);
+        for (Host host : hostList.getHosts()) {
+            SimulatedHost simulatedHost = network.connect(host);
+            PaxosNode node = NodeSetupUtils.createNode(host, hostList, simulatedHost);
+            if (node == null) {
+                throw new IllegalArgumentException("Could not create council member " + host.getId());
+            }
+            node.setQuiet(true);
+            simulatedHost.attach(node);
+            nodes.add(node);
+            simulatedHosts.add(simulatedHost);
+        }
+    }
+
+    /**
+     * Draws every member's behaviour from the seed, starts the proposers and
+     * runs until a learner has reached consensus or the time limit passes.
+     *
+     * @param timeLimitMillis Virtual time after which the election is given up.
+     */
+    public SimulationResult run(long timeLimitMillis) {
+        Random random = simulator.getRandom();
+        for (int i = 0; i < nodes.size(); i++) {
+            PaxosNode node = nodes.get(i);
+            if (node instanceof M2) {
+                M2 m2 = (M2) node;
+                m2.setSendDelay(100 + random.nextInt(4900));
+                m2.setReceiveDelay(100 + random.nextInt(4900));
+                scheduleToggles(random.nextBoolean(), m2::setAtCafe, timeLimitMillis);
+            } else if (node instanceof M3) {
+                scheduleToggles(random.nextInt(4) == 0, ((M3) node)::setIsCamping, timeLimitMillis);
+            } else if (node instanceof M4_9) {
+                ((M4_9) node).setSendDelay(random.nextInt(5000));
+                ((M4_9) node).setReceiveDelay(random.nextInt(5000));
+            }
+            if (node.getRole() == PaxosRole.PROPOSER) {
+                simulatedHosts.get(i).runAt(random.nextInt(MAX_START_MILLIS), node::initiateElection);
+            }
+        }
+
+        boolean decided = simulator.runUntil(this::anyLearnerDecided, timeLimitMillis);
+        return new SimulationResult(simulator.getSeed(), decided ? consensusValue() : null, learnersAgree(),
+                simulator.now(), simulator.getProcessedEventCount(), network.getSentCount(),
+                network.getTraceHash());
+    }
+
+    /* Flips a behaviour on and off at random times until the time limit */
+    private void scheduleToggles(boolean initial, Consumer<Boolean> setter, long timeLimitMillis) {
+        setter.accept(initial);
+        long time = 0;
+        boolean state = initial;
+        Random random = simulator.getRandom();
+        while (true) {
+            time += 1 + random.nextInt(2 * MEAN_TOGGLE_MILLIS);
+            if (time > timeLimitMillis) {
+                return;
+            }
+            state = !state;
+            boolean next = state;
+            simulator.scheduleAt(time, () -> setter.accept(next));
+        }
+    }
+
+    private boolean anyLearnerDecided() {
+        return consensusValue() != null;
+    }
+
+    private Object consensusValue() {
+        for (PaxosNode node : nodes) {
+            if (node.getRole() == PaxosRole.LEARNER && node.hasReachedConsensus()) {
+                return node.getConsensusValue();
+            }
+        }
+        return null;
+    }
+
+    /* Safety: no two members have learned different values for the first slot */
+    private boolean learnersAgree() {
+        Object learned = null;
+        for (PaxosNode node : nodes) {
+            Object value = node.getLearnedValue(0);
+            if (value == null) {
+                continue;
+            }
+            if (learned != null && !Objects.equals(learned, value)) {
+                return false;
+            }
+            learned = value;
+        }
+        return true;
+    }
+
+    public List<PaxosNode> getNodes() {
+        return nodes;
+    }
+
+    public Simulator getSimulator() {
+        return simulator;
+    }
+}
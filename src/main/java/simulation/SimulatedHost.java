@@ -0,0 +1,158 @@
+package simulation;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import models.Host;
+import models.Message;
+import paxos.PaxosNode;
+import utils.Scheduler;
+import utils.Timeout;
+import utils.Transport;
+
+/**
+ * One node's view of the simulation, standing in for both its transport and
+ * its clock. Messages that arrive wait in an inbox and are handled one at a
+ * time, like the node's message thread would. A sleep does not block: it
+ * moves the node's local time forward. Messages sent later in the same
+ * handler leave at that later time, and the next message is only handled
+ * once the node is free again.
+ */
+public class SimulatedHost implements Transport, Scheduler {
+
+    private final SimulatedNetwork network;
+    private final Simulator simulator;
+    private final Host host;
+    private final Queue<Message> inbox = new ArrayDeque<>();
+    private PaxosNode node;
+    /* virtual time reached by whatever the node is doing right now */
+    private long localTime;
+    private long busyUntil;
+    private boolean handlingScheduled;
+
+    SimulatedHost(SimulatedNetwork network, Host host) {
+        this.network = network;
+        this.simulator = network.getSimulator();
+        this.host = host;
+    }
+
+    /* Attaches the node whose messages this host handles */
+    public void attach(PaxosNode node) {
+        this.node = node;
+        node.setScheduler(this);
+    }
+
+    /* Runs an action as this node at the given virtual time */
+    public Timeout runAt(long timeMillis, Runnable action) {
+        SimulatedTimeout timeout = new SimulatedTimeout();
+        simulator.scheduleAt(timeMillis, () -> {
+            if (timeout.expire()) {
+                localTime = simulator.now();
+                action.run();
+            }
+        });
+        return timeout;
+    }
+
+    void arrive(Message message) {
+        inbox.add(message);
+        if (!handlingScheduled) {
+            handlingScheduled = true;
+            simulator.scheduleAt(busyUntil, this::handleNext);
+        }
+    }
+
+    private void handleNext() {
+        localTime = simulator.now();
+        node.handleMessage(inbox.poll());
+        busyUntil = localTime;
+        if (inbox.isEmpty()) {
+            handlingScheduled = false;
+        } else {
+            simulator.scheduleAt(busyUntil, this::handleNext);
+        }
+    }
+
+    @Override
+    public void sendMessage(Message message, Host targetHost) {
+        network.send(message, targetHost, Math.max(localTime, simulator.now()));
+    }
+
+    @Override
+    public Timeout schedule(Runnable task, long delayMillis) {
+        return runAt(Math.max(localTime, simulator.now()) + delayMillis, task);
+    }
+
+    @Override
+    public void sleep(long millis) {
+        localTime += millis;
+    }
+
+    @Override
+    public Random getRandom() {
+        return simulator.getRandom();
+    }
+
+    @Override
+    public long nanoTime() {
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(localTime, simulator.now()));
+    }
+
+    @Override
+    public void startListening(BlockingQueue<Message> messageQueue) {
+        // messages are handed to the node by the simulator, not through its queue
+    }
+
+    @Override
+    public void stopListening() {
+    }
+
+    @Override
+    public void startMessageProcessing() {
+    }
+
+    @Override
+    public void stopMessageProcessing() {
+    }
+
+    @Override
+    public Host getLocalHost() {
+        return host;
+    }
+
+    /* Left in the simulator's queue when cancelled, and skipped when its time comes */
+    private static final class SimulatedTimeout implements Timeout {
+        private boolean cancelled;
+        private boolean expired;
+
+        boolean expire() {
+            if (cancelled) {
+                return false;
+            }
+            expired = true;
+            return true;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (cancelled || expired) {
+                return false;
+            }
+            cancelled = true;
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return expired;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package simulation;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import models.Host;
+import models.Message;
+
+/**
+ * Links the simulated hosts. Every message takes a random time in flight,
+ * drawn from the simulator's generator. Each delivery is folded into a trace
+ * hash, so two runs can be compared message for message.
+ */
+public class SimulatedNetwork {
+
+    private final Simulator simulator;
+    private final Map<Host, SimulatedHost> hosts = new HashMap<>();
+    private final int minLatencyMillis;
+    private final int maxLatencyMillis;
+    private long sentCount;
+    private long traceHash = 17;
+
+    /**
+     * @param simulator        Simulator the network runs on.
+     * @param minLatencyMillis Shortest time a message is in flight.
+     * @param maxLatencyMillis Longest time a message is in flight.
+     */
+    public SimulatedNetwork(Simulator simulator, int minLatencyMillis, int maxLatencyMillis) {
+        this.simulator = simulator;
+        this.minLatencyMillis = minLatencyMillis;
+        this.maxLatencyMillis = Math.max(minLatencyMillis, maxLatencyMillis);
+    }
+
+    public SimulatedHost connect(Host host) {
+        SimulatedHost simulatedHost = new SimulatedHost(this, host);
+        hosts.put(host, simulatedHost);
+        return simulatedHost;
+    }
+
+    void send(Message message, Host targetHost, long sendTime) {
+        SimulatedHost target = hosts.get(targetHost);
+        if (target == null) {
+            return;
+        }
+        sentCount++;
+        long latency = minLatencyMillis + simulator.getRandom().nextInt(maxLatencyMillis - minLatencyMillis + 1);
+        simulator.scheduleAt(sendTime + latency, () -> {
+            traceHash = 31 * traceHash + simulator.now();
+            traceHash = 31 * traceHash + message.getType().ordinal();
+            traceHash = 31 * traceHash + message.getProposalNumber();
+            traceHash = 31 * traceHash + message.getSenderHost().getPort();
+            traceHash = 31 * traceHash + targetHost.getPort();
+            target.arrive(message);
+        });
+    }
+
+    public Simulator getSimulator() {
+        return simulator;
+    }
+
+    public long getSentCount() {
+        return sentCount;
+    }
+
+    /* Hash of every delivery so far: its time, type, ballot, sender and target */
+    public long getTraceHash() {
+        return traceHash;
+    }
+}
@@ -0,0 +1,86 @@
+package simulation;
+
+import java.util.Objects;
+
+/* Outcome of one simulated election; two runs of the same seed give equal results */
+public class SimulationResult {
+
+    private final long seed;
+    private final Object consensusValue;
+    private final boolean learnersAgree;
+    private final long virtualTimeMillis;
+    private final long eventCount;
+    private final long messageCount;
+    private final long traceHash;
+
+    public SimulationResult(long seed, Object consensusValue, boolean learnersAgree, long virtualTimeMillis,
+            long eventCount, long messageCount, long traceHash) {
+        this.seed = seed;
+        this.consensusValue = consensusValue;
+        this.learnersAgree = learnersAgree;
+        this.virtualTimeMillis = virtualTimeMillis;
+        this.eventCount = eventCount;
+        this.messageCount = messageCount;
+        this.traceHash = traceHash;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /* Value a learner reached consensus on, or null if the time limit passed first */
+    public Object getConsensusValue() {
+        return consensusValue;
+    }
+
+    public boolean isDecided() {
+        return consensusValue != null;
+    }
+
+    public boolean learnersAgree() {
+        return learnersAgree;
+    }
+
+    public long getVirtualTimeMillis() {
+        return virtualTimeMillis;
+    }
+
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    public long getMessageCount() {
+        return messageCount;
+    }
+
+    public long getTraceHash() {
+        return traceHash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SimulationResult)) {
+            return false;
+        }
+        SimulationResult other = (SimulationResult) o;
+        return seed == other.seed && learnersAgree == other.learnersAgree
+                && virtualTimeMillis == other.virtualTimeMillis && eventCount == other.eventCount
+                && messageCount == other.messageCount && traceHash == other.traceHash
+                && Objects.equals(consensusValue, other.consensusValue);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(seed, consensusValue, virtualTimeMillis, traceHash);
+    }
+
+    @Override
+    public String toString() {
+        return "seed " + seed + ": " + (isDecided() ? "consensus on " + consensusValue : "no consensus")
+                + " after " + virtualTimeMillis + " ms, " + messageCount + " messages, " + eventCount + " events"
+                + (learnersAgree ? "" : ", LEARNERS DISAGREE");
+    }
+}
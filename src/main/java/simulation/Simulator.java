@@ -0,0 +1,91 @@
+package simulation;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Discrete-event simulator with a virtual clock. Events run one at a time on
+ * the calling thread, in order of their time and then of when they were
+ * scheduled, and all randomness comes from one seeded generator. The same
+ * seed therefore always produces the same run.
+ */
+public class Simulator {
+
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+    private final Random random;
+    private final long seed;
+    private long now;
+    private long nextSequence;
+    private long processedEventCount;
+
+    public Simulator(long seed) {
+        this.seed = seed;
+        this.random = new Random(seed);
+    }
+
+    /* Runs the action after the given virtual delay */
+    public void schedule(long delayMillis, Runnable action) {
+        scheduleAt(now + Math.max(0, delayMillis), action);
+    }
+
+    /* Runs the action at the given virtual time, or now if that has passed */
+    public void scheduleAt(long timeMillis, Runnable action) {
+        events.add(new Event(Math.max(now, timeMillis), nextSequence++, action));
+    }
+
+    /**
+     * Runs events until the condition holds, no events are left or the next
+     * event is past the time limit.
+     *
+     * @return Whether the condition holds at the end.
+     */
+    public boolean runUntil(BooleanSupplier condition, long timeLimitMillis) {
+        while (!condition.getAsBoolean()) {
+            Event event = events.peek();
+            if (event == null || event.time > timeLimitMillis) {
+                return false;
+            }
+            events.poll();
+            now = event.time;
+            processedEventCount++;
+            event.action.run();
+        }
+        return true;
+    }
+
+    /* Current virtual time in milliseconds */
+    public long now() {
+        return now;
+    }
+
+    public Random getRandom() {
+        return random;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public long getProcessedEventCount() {
+        return processedEventCount;
+    }
+
+    private static final class Event implements Comparable<Event> {
+        private final long time;
+        private final long sequence;
+        private final Runnable action;
+
+        Event(long time, long sequence, Runnable action) {
+            this.time = time;
+            this.sequence = sequence;
+            this.action = action;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            int byTime = Long.compare(time, other.time);
+            return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/* A rename or a new file is only durable once the directory entry pointing at
+it is, so callers sync the directory after changing what it holds */
+final class Directories {
+
+    private static final boolean WINDOWS = System.getProperty("os.name", "").startsWith("Windows");
+
+    private Directories() {
+    }
+
+    /* Forces the directory holding the file to disk */
+    static void syncParent(File file) throws IOException {
+        sync(file.getAbsoluteFile().getParentFile());
+    }
+
+    static void sync(File directory) throws IOException {
+        if (WINDOWS) {
+            // directories cannot be opened there, and a completed rename is already durable
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+}
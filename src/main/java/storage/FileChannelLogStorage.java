@@ -0,0 +1,138 @@
+package storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Log storage in a single file written and read through a FileChannel. This
+ * is the plain baseline for {@link MappedSegmentLogStorage}. Each read copies
+ * the record into a new heap buffer, and the slot index is a heap array.
+ * Compaction only drops index entries. The file is not shrunk until
+ * {@link #clear()}.
+ *
+ * Records are stored as a 4 byte slot, a 4 byte length and the payload.
+ */
+public class FileChannelLogStorage implements LogStorage {
+
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    private final FileChannel channel;
+    /* file position of each slot's newest record plus one, from firstSlot on; 0 means none */
+    private long[] positions = new long[1024];
+    private long writePosition;
+    private int firstSlot;
+    private int lastSlot = -1;
+
+    public FileChannelLogStorage(File file) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        recover();
+    }
+
+    /* Rebuilds the index by scanning the file */
+    private void recover() throws IOException {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        while (writePosition + RECORD_HEADER_BYTES <= size) {
+            header.clear();
+            channel.read(header, writePosition);
+            int slot = header.getInt(0);
+            int length = header.getInt(4);
+            if (slot < 0 || length < 0 || writePosition + RECORD_HEADER_BYTES + length > size) {
+                break;
+            }
+            index(slot, writePosition);
+            writePosition += RECORD_HEADER_BYTES + length;
+        }
+        channel.truncate(writePosition);
+    }
+
+    @Override
+    public synchronized void append(int slot, byte[] record) throws IOException {
+        if (slot < 0) {
+            throw new IllegalArgumentException("Negative slot " + slot);
+        }
+        if (slot < firstSlot) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_BYTES + record.length);
+        buffer.putInt(slot).putInt(record.length).put(record);
+        buffer.flip();
+        long position = writePosition;
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+        writePosition += buffer.limit();
+        index(slot, position);
+    }
+
+    private void index(int slot, long position) {
+        int i = slot - firstSlot;
+        if (i >= positions.length) {
+            positions = Arrays.copyOf(positions, Math.max(positions.length * 2, i + 1));
+        }
+        positions[i] = position + 1;
+        lastSlot = Math.max(lastSlot, slot);
+    }
+
+    @Override
+    public synchronized ByteBuffer read(int slot) throws IOException {
+        if (slot < firstSlot || slot > lastSlot || positions[slot - firstSlot] == 0) {
+            return null;
+        }
+        long position = positions[slot - firstSlot] - 1;
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        channel.read(length, position + 4);
+        ByteBuffer record = ByteBuffer.allocate(length.getInt(0));
+        while (record.hasRemaining()) {
+            if (channel.read(record, position + RECORD_HEADER_BYTES + record.position()) < 0) {
+                throw new IOException("Record for slot " + slot + " is cut short");
+            }
+        }
+        record.flip();
+        return record.asReadOnlyBuffer();
+    }
+
+    @Override
+    public synchronized int getFirstSlot() {
+        return firstSlot;
+    }
+
+    @Override
+    public synchronized int getLastSlot() {
+        return lastSlot;
+    }
+
+    @Override
+    public synchronized void truncateBefore(int slot) {
+        if (slot <= firstSlot) {
+            return;
+        }
+        int dropped = Math.min(slot - firstSlot, positions.length);
+        positions = Arrays.copyOfRange(positions, dropped, Math.max(positions.length, dropped + 1024));
+        firstSlot = slot;
+    }
+
+    @Override
+    public synchronized void clear() throws IOException {
+        channel.truncate(0);
+        positions = new long[1024];
+        writePosition = 0;
+        firstSlot = 0;
+        lastSlot = -1;
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,37 @@
+package storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Stores one record per slot of the replicated log. Writing a slot again
+ * replaces its record. Slots below the first slot have been compacted away.
+ */
+public interface LogStorage {
+
+    void append(int slot, byte[] record) throws IOException;
+
+    /*
+     * Read-only view of the record for a slot, or null if there is none. The
+     * view may be released by a later truncate or close; implementations lock
+     * on themselves, so a caller holding that lock can copy it safely.
+     */
+    ByteBuffer read(int slot) throws IOException;
+
+    /* Lowest slot that may still hold a record */
+    int getFirstSlot();
+
+    /* Highest slot written so far, or -1 */
+    int getLastSlot();
+
+    /* Drops every record below the given slot and reclaims its space */
+    void truncateBefore(int slot) throws IOException;
+
+    /* Removes every record */
+    void clear() throws IOException;
+
+    /* Forces written records to disk */
+    void flush() throws IOException;
+
+    void close() throws IOException;
+}
@@ -0,0 +1,466 @@
+package storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Log storage kept in memory-mapped files, so the log can grow to tens of
+ * millions of slots without growing the heap.
+ *
+ * Records are appended to fixed-size segment files, one after the other, and
+ * a new segment is started when the current one is full. A slot's newest
+ * record is found through index files. Each index file covers a fixed range of
+ * slots and holds 8 bytes per slot: the segment number and the offset of the
+ * record. Reads return a read-only slice of the mapping, so nothing is copied.
+ *
+ * Only the segment and index headers are kept on the heap. When a prefix of
+ * the log is compacted, the watermark is first written to a manifest, then
+ * the oldest segments whose records are all below it are unmapped and
+ * deleted, and index files below it go the same way. Opening the storage
+ * finishes a compaction a crash interrupted, and refuses a directory where a
+ * live segment or index file is missing rather than reading holes as empty
+ * slots.
+ *
+ * Segment layout: an 8 byte write position, 4 byte lowest and highest slot,
+ * then records of 4 byte slot, 4 byte length and payload. Manifest layout:
+ * the 4 byte first live slot and its 4 byte CRC32.
+ */
+public class MappedSegmentLogStorage implements LogStorage {
+
+    public static final int DEFAULT_SEGMENT_BYTES = 64 * 1024 * 1024;
+    public static final int DEFAULT_SLOTS_PER_INDEX = 1 << 20;
+
+    private static final int SEGMENT_HEADER_BYTES = 16;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int INDEX_ENTRY_BYTES = 8;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String INDEX_PREFIX = "index-";
+    private static final String MANIFEST = "manifest";
+    /* written as the first slot while clear() deletes files; open() finishes the job */
+    private static final int CLEARING = -1;
+
+    private final File directory;
+    private final int segmentBytes;
+    private final int slotsPerIndex;
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    /* index files keyed by the first slot they cover */
+    private final TreeMap<Integer, MappedByteBuffer> indexes = new TreeMap<>();
+    private Segment activeSegment;
+    private int firstSlot;
+    private int lastSlot = -1;
+    private boolean closed;
+
+    public MappedSegmentLogStorage(File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_BYTES, DEFAULT_SLOTS_PER_INDEX);
+    }
+
+    /**
+     * Opens the storage in a directory, picking up any segments already there.
+     *
+     * @param directory     Directory holding the segment and index files.
+     * @param segmentBytes  Size of each segment file.
+     * @param slotsPerIndex Number of slots covered by each index file.
+     */
+    public MappedSegmentLogStorage(File directory, int segmentBytes, int slotsPerIndex) throws IOException {
+        if (segmentBytes <= SEGMENT_HEADER_BYTES + RECORD_HEADER_BYTES || slotsPerIndex <= 0) {
+            throw new IllegalArgumentException("Segment or index size too small");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.slotsPerIndex = slotsPerIndex;
+        open();
+    }
+
+    private void open() throws IOException {
+        Integer manifestSlot = readManifest();
+        if (manifestSlot != null && manifestSlot == CLEARING) {
+            deleteLogFiles();
+            manifestSlot = 0;
+            writeManifest(0);
+        }
+        File[] files = directory.listFiles();
+        if (files == null) {
+            throw new IOException("Could not list " + directory);
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith(SEGMENT_PREFIX)) {
+                Segment segment = new Segment(file, numberOf(name, SEGMENT_PREFIX));
+                segments.put(segment.number, segment);
+                lastSlot = Math.max(lastSlot, segment.maxSlot);
+            } else if (name.startsWith(INDEX_PREFIX)) {
+                indexes.put(numberOf(name, INDEX_PREFIX), map(file, (long) slotsPerIndex * INDEX_ENTRY_BYTES));
+            }
+        }
+        if (manifestSlot == null) {
+            // written before the manifest existed: index files are only deleted below the watermark
+            firstSlot = indexes.isEmpty() ? 0 : indexes.firstKey();
+            writeManifest(firstSlot);
+        } else {
+            firstSlot = manifestSlot;
+        }
+        if (segments.isEmpty()) {
+            activeSegment = newSegment(0);
+        } else {
+            activeSegment = segments.lastEntry().getValue();
+        }
+        deleteCompacted();
+        checkContiguous(manifestSlot != null);
+    }
+
+    /*
+     * Segments are numbered in the order they were started and compaction
+     * deletes the oldest first, so the live ones form a run of numbers, and
+     * every live slot's index entry must point into one of them. Directories
+     * written before the manifest may have compacted out of order, so only
+     * their index entries are checked.
+     */
+    private void checkContiguous(boolean prefixCompacted) throws IOException {
+        int expected = segments.firstKey();
+        for (int number : segments.keySet()) {
+            if (prefixCompacted && number != expected) {
+                throw new IOException("Segment " + expected + " is missing from " + directory);
+            }
+            expected = number + 1;
+        }
+        Integer previousBase = null;
+        for (Map.Entry<Integer, MappedByteBuffer> index : indexes.entrySet()) {
+            int base = index.getKey();
+            if (previousBase != null && base != previousBase + slotsPerIndex) {
+                throw new IOException("Index of slots from " + (previousBase + slotsPerIndex) + " is missing from "
+                        + directory);
+            }
+            previousBase = base;
+            for (int slot = Math.max(base, firstSlot); slot < base + slotsPerIndex; slot++) {
+                long location = index.getValue().getLong(indexPosition(slot));
+                if (location == 0) {
+                    continue;
+                }
+                Segment segment = segments.get((int) (location >>> 32));
+                if (segment == null || (int) location >= segment.writePosition) {
+                    throw new IOException("Record of slot " + slot + " is missing from " + directory);
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void append(int slot, byte[] record) throws IOException {
+        if (slot < 0) {
+            throw new IllegalArgumentException("Negative slot " + slot);
+        }
+        ensureOpen();
+        if (slot < firstSlot) {
+            // already compacted away
+            return;
+        }
+        int recordBytes = RECORD_HEADER_BYTES + record.length;
+        if (SEGMENT_HEADER_BYTES + recordBytes > segmentBytes) {
+            throw new IOException("Record of " + record.length + " bytes does not fit in a segment");
+        }
+        if (activeSegment.writePosition + recordBytes > segmentBytes) {
+            activeSegment = newSegment(activeSegment.number + 1);
+        }
+        int offset = activeSegment.append(slot, record);
+        MappedByteBuffer index = indexFor(slot, true);
+        index.putLong(indexPosition(slot), ((long) activeSegment.number << 32) | offset);
+        lastSlot = Math.max(lastSlot, slot);
+    }
+
+    @Override
+    public synchronized ByteBuffer read(int slot) throws IOException {
+        ensureOpen();
+        if (slot < firstSlot || slot > lastSlot) {
+            return null;
+        }
+        MappedByteBuffer index = indexFor(slot, false);
+        if (index == null) {
+            return null;
+        }
+        long location = index.getLong(indexPosition(slot));
+        Segment segment = location == 0 ? null : segments.get((int) (location >>> 32));
+        if (segment == null) {
+            return null;
+        }
+        return segment.view((int) location);
+    }
+
+    @Override
+    public synchronized int getFirstSlot() {
+        return firstSlot;
+    }
+
+    @Override
+    public synchronized int getLastSlot() {
+        return lastSlot;
+    }
+
+    /*
+     * Views returned by read() for dropped slots must not be used afterwards:
+     * the mapping behind them is released
+     */
+    @Override
+    public synchronized void truncateBefore(int slot) throws IOException {
+        ensureOpen();
+        if (slot <= firstSlot) {
+            return;
+        }
+        // the watermark is durable before any file goes, so a crash part way leaves only dead files behind
+        writeManifest(slot);
+        firstSlot = slot;
+        deleteCompacted();
+    }
+
+    /* Deletes the oldest segments holding nothing at or above the watermark, and the index files below it */
+    private void deleteCompacted() throws IOException {
+        Iterator<Segment> segmentIterator = segments.values().iterator();
+        while (segmentIterator.hasNext()) {
+            Segment segment = segmentIterator.next();
+            if (segment == activeSegment || segment.maxSlot >= firstSlot) {
+                // a later segment may hold only old slots written again, but it waits its turn
+                break;
+            }
+            segmentIterator.remove();
+            segment.delete();
+        }
+        Iterator<Map.Entry<Integer, MappedByteBuffer>> indexIterator = indexes.entrySet().iterator();
+        while (indexIterator.hasNext()) {
+            Map.Entry<Integer, MappedByteBuffer> index = indexIterator.next();
+            if (index.getKey() + slotsPerIndex <= firstSlot) {
+                indexIterator.remove();
+                deleteMapped(index.getValue(), indexFile(index.getKey()));
+            }
+        }
+    }
+
+    @Override
+    public synchronized void clear() throws IOException {
+        ensureOpen();
+        writeManifest(CLEARING);
+        for (Segment segment : new ArrayList<>(segments.values())) {
+            segment.delete();
+        }
+        segments.clear();
+        for (Map.Entry<Integer, MappedByteBuffer> index : indexes.entrySet()) {
+            deleteMapped(index.getValue(), indexFile(index.getKey()));
+        }
+        indexes.clear();
+        firstSlot = 0;
+        lastSlot = -1;
+        activeSegment = newSegment(0);
+        writeManifest(0);
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (closed) {
+            return;
+        }
+        activeSegment.buffer.force();
+        for (MappedByteBuffer index : indexes.values()) {
+            index.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        flush();
+        // the buffers are unmapped below, so nothing may touch them afterwards
+        closed = true;
+        for (Segment segment : segments.values()) {
+            MappedBuffers.unmap(segment.buffer);
+        }
+        for (MappedByteBuffer index : indexes.values()) {
+            MappedBuffers.unmap(index);
+        }
+        segments.clear();
+        indexes.clear();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Log storage in " + directory + " is closed");
+        }
+    }
+
+    /* Number of segment files currently mapped */
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /* The first live slot the manifest holds, or null if there is no manifest yet */
+    private Integer readManifest() throws IOException {
+        File manifest = new File(directory, MANIFEST);
+        if (!manifest.exists()) {
+            return null;
+        }
+        ByteBuffer contents = ByteBuffer.wrap(Files.readAllBytes(manifest.toPath()));
+        if (contents.remaining() != 8) {
+            throw new IOException("Corrupt manifest in " + directory);
+        }
+        int slot = contents.getInt();
+        if (contents.getInt() != checksum(slot)) {
+            throw new IOException("Corrupt manifest in " + directory);
+        }
+        return slot;
+    }
+
+    /* Replaces the manifest through a forced temporary file and a rename */
+    private void writeManifest(int slot) throws IOException {
+        File manifest = new File(directory, MANIFEST);
+        File temporary = new File(directory, MANIFEST + ".tmp");
+        ByteBuffer contents = ByteBuffer.allocate(8);
+        contents.putInt(slot).putInt(checksum(slot)).flip();
+        try (FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (contents.hasRemaining()) {
+                channel.write(contents);
+            }
+            channel.force(false);
+        }
+        Files.move(temporary.toPath(), manifest.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        Directories.sync(directory);
+    }
+
+    private static int checksum(int slot) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(4).putInt(slot).array());
+        return (int) crc.getValue();
+    }
+
+    /* Deletes the segment and index files of a directory that was being cleared */
+    private void deleteLogFiles() throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            throw new IOException("Could not list " + directory);
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if ((name.startsWith(SEGMENT_PREFIX) || name.startsWith(INDEX_PREFIX)) && !file.delete()) {
+                throw new IOException("Could not delete " + file);
+            }
+        }
+    }
+
+    private Segment newSegment(int number) throws IOException {
+        Segment segment = new Segment(new File(directory, fileName(SEGMENT_PREFIX, number, ".log")), number);
+        segments.put(number, segment);
+        return segment;
+    }
+
+    private MappedByteBuffer indexFor(int slot, boolean create) throws IOException {
+        int base = slot - slot % slotsPerIndex;
+        MappedByteBuffer index = indexes.get(base);
+        if (index == null && create) {
+            index = map(indexFile(base), (long) slotsPerIndex * INDEX_ENTRY_BYTES);
+            indexes.put(base, index);
+        }
+        return index;
+    }
+
+    private int indexPosition(int slot) {
+        return (slot % slotsPerIndex) * INDEX_ENTRY_BYTES;
+    }
+
+    private File indexFile(int base) {
+        return new File(directory, fileName(INDEX_PREFIX, base, ".idx"));
+    }
+
+    private static String fileName(String prefix, int number, String suffix) {
+        return prefix + String.format("%010d", number) + suffix;
+    }
+
+    private static int numberOf(String name, String prefix) {
+        return Integer.parseInt(name.substring(prefix.length(), name.indexOf('.')));
+    }
+
+    private static MappedByteBuffer map(File file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private static void deleteMapped(MappedByteBuffer buffer, File file) throws IOException {
+        MappedBuffers.unmap(buffer);
+        if (!file.delete() && file.exists()) {
+            throw new IOException("Could not delete " + file);
+        }
+    }
+
+    /* One mapped segment file */
+    private class Segment {
+        private final File file;
+        private final int number;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+        private int minSlot;
+        private int maxSlot;
+
+        Segment(File file, int number) throws IOException {
+            this.file = file;
+            this.number = number;
+            this.buffer = map(file, segmentBytes);
+            long position = buffer.getLong(0);
+            if (position == 0) {
+                writePosition = SEGMENT_HEADER_BYTES;
+                minSlot = Integer.MAX_VALUE;
+                maxSlot = -1;
+                writeHeader();
+            } else {
+                writePosition = (int) position;
+                minSlot = buffer.getInt(8);
+                maxSlot = buffer.getInt(12);
+            }
+        }
+
+        /* Returns the offset of the record */
+        int append(int slot, byte[] record) {
+            int offset = writePosition;
+            buffer.putInt(offset, slot);
+            buffer.putInt(offset + 4, record.length);
+            ByteBuffer target = buffer.duplicate();
+            target.position(offset + RECORD_HEADER_BYTES);
+            target.put(record);
+            writePosition = offset + RECORD_HEADER_BYTES + record.length;
+            minSlot = Math.min(minSlot, slot);
+            maxSlot = Math.max(maxSlot, slot);
+            // the header goes last so a reopened segment never points past its records
+            writeHeader();
+            return offset;
+        }
+
+        ByteBuffer view(int offset) {
+            ByteBuffer view = buffer.duplicate();
+            int length = view.getInt(offset + 4);
+            view.position(offset + RECORD_HEADER_BYTES);
+            view.limit(offset + RECORD_HEADER_BYTES + length);
+            return view.slice().asReadOnlyBuffer();
+        }
+
+        private void writeHeader() {
+            buffer.putLong(0, writePosition);
+            buffer.putInt(8, minSlot);
+            buffer.putInt(12, maxSlot);
+        }
+
+        void delete() throws IOException {
+            deleteMapped(buffer, file);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package storage;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import models.Snapshot;
+
+/**
+ * Keeps the newest snapshot of a node in one file. A snapshot is written to a
+ * temporary file, forced to disk and then renamed over the previous one, so a
+ * crash part way through leaves the previous snapshot in place. The directory
+ * is synced after the rename, so a written snapshot stays written.
+ */
+public class SnapshotStore {
+
+    private final File file;
+    private final File temporaryFile;
+
+    public SnapshotStore(File file) {
+        this.file = file;
+        this.temporaryFile = new File(file.getPath() + ".tmp");
+    }
+
+    public void write(Snapshot snapshot) throws IOException {
+        try (FileOutputStream fileOut = new FileOutputStream(temporaryFile);
+                ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(fileOut))) {
+            out.writeObject(snapshot);
+            out.flush();
+            fileOut.getFD().sync();
+        }
+        Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        // the caller compacts the log once this returns, so the rename must survive a crash
+        Directories.syncParent(file);
+    }
+
+    /* The newest snapshot, or null if none has been written */
+    public Snapshot load() throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file))) {
+            return (Snapshot) in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unreadable snapshot " + file, e);
+        }
+    }
+
+    /* The newest snapshot as written, to send to another node, or null if none has been written */
+    public byte[] readBytes() throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        return Files.readAllBytes(file.toPath());
+    }
+
+    /* A snapshot from the bytes readBytes() returned on another node */
+    public static Snapshot decode(byte[] bytes) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (Snapshot) in.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Unreadable snapshot", e);
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+}
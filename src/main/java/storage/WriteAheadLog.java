@@ -0,0 +1,274 @@
+package storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of records that are forced to disk before they are
+ * acknowledged. Appends from any number of threads are queued; a single
+ * writer thread takes everything that is waiting, writes it in one go and
+ * covers it with a single {@code force()}, so the cost of a sync is shared by
+ * every record in the group.
+ *
+ * Each record is stored as a 4 byte length, a 4 byte CRC32 and the payload.
+ * Replay stops at the first torn or corrupt record and the tail is cut off.
+ *
+ * {@link #compact(List)} replaces the log with the records still needed. It
+ * is queued like an append, so it takes effect between the records before it
+ * and those after it.
+ */
+public class WriteAheadLog {
+
+    private static final int HEADER_BYTES = 8;
+    /* queued by close() so the writer drains everything before it stops */
+    private static final PendingRecord CLOSE = new PendingRecord(null, null, null);
+    private static final Logger LOGGER = Logger.getLogger(WriteAheadLog.class.getName());
+
+    private final File file;
+    private FileChannel channel;
+    private final BlockingQueue<PendingRecord> pending = new LinkedBlockingQueue<>();
+    private final Thread writerThread;
+    private volatile boolean running;
+    private volatile long syncCount;
+    private volatile long recordCount;
+
+    public WriteAheadLog(File file) throws IOException {
+        this.file = file;
+        boolean created = !file.exists();
+        this.channel = open(file);
+        if (created) {
+            Directories.syncParent(file);
+        }
+        this.running = true;
+        this.writerThread = new Thread(this::writeLoop, "WriteAheadLog-" + file.getName());
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Reads every intact record from the start of the log in the order they
+     * were appended. Must be called before the first append.
+     */
+    public void replay(Consumer<byte[]> recordConsumer) throws IOException {
+        long position = 0;
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (position + HEADER_BYTES <= size) {
+            header.clear();
+            channel.read(header, position);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length < 0 || position + HEADER_BYTES + length > size) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            channel.read(payload, position + HEADER_BYTES);
+            if (checksum(payload.array()) != checksum) {
+                break;
+            }
+            recordConsumer.accept(payload.array());
+            position += HEADER_BYTES + length;
+        }
+        if (position < size) {
+            LOGGER.log(Level.WARNING, "Discarding torn tail of " + file + " at byte " + position);
+            channel.truncate(position);
+        }
+        channel.position(position);
+    }
+
+    /**
+     * Queues a record. The returned future completes once the record, and
+     * everything appended before it, is on disk.
+     */
+    public CompletableFuture<Void> append(byte[] record) {
+        CompletableFuture<Void> durable = new CompletableFuture<>();
+        if (!running) {
+            durable.completeExceptionally(new IOException("Write-ahead log is closed"));
+            return durable;
+        }
+        pending.add(new PendingRecord(record, null, durable));
+        return durable;
+    }
+
+    /**
+     * Queues a rewrite of the log that keeps only the given records. Everything
+     * appended before this call is dropped, and appends made after it follow
+     * the kept records. The returned future completes once the new log is on
+     * disk.
+     */
+    public CompletableFuture<Void> compact(List<byte[]> liveRecords) {
+        CompletableFuture<Void> durable = new CompletableFuture<>();
+        if (!running) {
+            durable.completeExceptionally(new IOException("Write-ahead log is closed"));
+            return durable;
+        }
+        pending.add(new PendingRecord(null, new ArrayList<>(liveRecords), durable));
+        return durable;
+    }
+
+    private void writeLoop() {
+        List<PendingRecord> group = new ArrayList<>();
+        boolean closing = false;
+        while (!closing) {
+            try {
+                group.add(pending.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            pending.drainTo(group);
+            closing = group.remove(CLOSE);
+            List<PendingRecord> appends = new ArrayList<>();
+            for (PendingRecord record : group) {
+                if (record.liveRecords == null) {
+                    appends.add(record);
+                    continue;
+                }
+                commit(appends);
+                appends.clear();
+                try {
+                    rewrite(record.liveRecords);
+                    record.durable.complete(null);
+                } catch (IOException e) {
+                    LOGGER.log(Level.SEVERE, "Could not compact " + file, e);
+                    record.durable.completeExceptionally(e);
+                }
+            }
+            commit(appends);
+            group.clear();
+        }
+    }
+
+    private void commit(List<PendingRecord> group) {
+        if (group.isEmpty()) {
+            return;
+        }
+        try {
+            writeGroup(group);
+            for (PendingRecord record : group) {
+                record.durable.complete(null);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Could not write to " + file, e);
+            for (PendingRecord record : group) {
+                record.durable.completeExceptionally(e);
+            }
+        }
+    }
+
+    /* Writes the kept records to a new file, renames it over the log and syncs the directory */
+    private void rewrite(List<byte[]> liveRecords) throws IOException {
+        File compacted = new File(file.getPath() + ".compact");
+        try (FileChannel out = FileChannel.open(compacted.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = encode(liveRecords);
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(false);
+        }
+        channel.close();
+        Files.move(compacted.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        // until the directory is synced, a crash can bring back the log as it was before
+        Directories.syncParent(file);
+        channel = open(file);
+        channel.position(channel.size());
+        syncCount++;
+    }
+
+    private static FileChannel open(File file) throws IOException {
+        return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+    }
+
+    private void writeGroup(List<PendingRecord> group) throws IOException {
+        List<byte[]> payloads = new ArrayList<>(group.size());
+        for (PendingRecord record : group) {
+            payloads.add(record.payload);
+        }
+        ByteBuffer buffer = encode(payloads);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+        syncCount++;
+        recordCount += group.size();
+    }
+
+    private static ByteBuffer encode(List<byte[]> payloads) {
+        int totalBytes = 0;
+        for (byte[] payload : payloads) {
+            totalBytes += HEADER_BYTES + payload.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(totalBytes);
+        for (byte[] payload : payloads) {
+            buffer.putInt(payload.length);
+            buffer.putInt(checksum(payload));
+            buffer.put(payload);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    /* Number of force() calls so far; with group commit this is below the record count */
+    public long getSyncCount() {
+        return syncCount;
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /* Flushes anything still queued and closes the file */
+    public void close() {
+        running = false;
+        pending.add(CLOSE);
+        try {
+            writerThread.join();
+            channel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Exception caught while closing " + file, e);
+        }
+    }
+
+    /* An append, or a compaction when liveRecords is set */
+    private static class PendingRecord {
+        private final byte[] payload;
+        private final List<byte[]> liveRecords;
+        private final CompletableFuture<Void> durable;
+
+        PendingRecord(byte[] payload, List<byte[]> liveRecords, CompletableFuture<Void> durable) {
+            this.payload = payload;
+            this.liveRecords = liveRecords;
+            this.durable = durable;
+        }
+    }
+}
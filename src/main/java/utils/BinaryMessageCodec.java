@@ -0,0 +1,331 @@
+package utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import models.CommandBatch;
+import models.CouncillorType;
+import models.Host;
+import models.HostList;
+import models.LogEntry;
+import models.Message;
+import models.MessageType;
+import models.PaxosRole;
+
+/**
+ * Hand written binary encoding of a message. The sender is sent as its index
+ * in the shared host list rather than as a serialized Host, so a typical frame
+ * is a few dozen bytes.
+ *
+ * <pre>
+ * byte  version
+ * byte  message type
+ * int   slot (from version 2)
+ * int   proposal number
+ * byte  flags (bit 0: highest seen proposal number present)
+ * int   highest seen proposal number
+ * short sender index, or -1 followed by the sender written inline
+ * byte  value tag
+ * int   value length, followed by the value bytes
+ * </pre>
+ *
+ * Frames written by {@link JavaSerializationCodec} are recognised by their
+ * stream header and decoded with it, so nodes using either codec can talk to
+ * this one.
+ */
+public class BinaryMessageCodec implements MessageCodec {
+
+    public static final byte VERSION = 2;
+    /* version 1 frames carry no slot and are read as slot 0 */
+    private static final byte VERSION_WITHOUT_SLOT = 1;
+
+    private static final byte JAVA_STREAM_MAGIC = (byte) 0xAC;
+    private static final short INLINE_SENDER = -1;
+    private static final byte FLAG_HIGHEST_SEEN = 1;
+
+    private static final byte VALUE_NULL = 0;
+    private static final byte VALUE_STRING = 1;
+    private static final byte VALUE_INTEGER = 2;
+    private static final byte VALUE_LONG = 3;
+    private static final byte VALUE_BYTES = 4;
+    private static final byte VALUE_SERIALIZED = 5;
+    private static final byte VALUE_LOG_ENTRIES = 6;
+    private static final byte VALUE_COMMAND_BATCH = 7;
+
+    private static final MessageType[] MESSAGE_TYPES = MessageType.values();
+    private static final PaxosRole[] ROLES = PaxosRole.values();
+    private static final CouncillorType[] COUNCILLOR_TYPES = CouncillorType.values();
+
+    private final Host[] hosts;
+    private final Map<String, Integer> hostIndexes = new HashMap<>();
+    private final JavaSerializationCodec fallback = new JavaSerializationCodec();
+
+    /**
+     * @param hostList The host list shared by every node in the cluster, used to
+     *                 translate senders to and from their index. Only the
+     *                 founding hosts are indexed, so nodes that join later
+     *                 agree with the rest; their own senders travel inline.
+     */
+    public BinaryMessageCodec(HostList hostList) {
+        List<Host> hostsInOrder = hostList.getFoundingHosts();
+        this.hosts = hostsInOrder.toArray(new Host[0]);
+        for (int i = 0; i < hosts.length; i++) {
+            hostIndexes.putIfAbsent(hosts[i].getId(), i);
+        }
+    }
+
+    @Override
+    public byte[] encode(Message message) throws IOException {
+        Host sender = message.getSenderHost();
+        int senderIndex = indexOf(sender);
+        byte[] inlineSender = senderIndex == INLINE_SENDER ? encodeHost(sender) : null;
+
+        Object value = message.getProposedValue();
+        byte valueTag = valueTag(value);
+        byte[] valueBytes = encodeValue(valueTag, value);
+
+        Integer highestSeen = message.getHighestSeenProposalNumber();
+        int size = 1 + 1 + 4 + 4 + 1 + 4 + 2 + (inlineSender == null ? 0 : inlineSender.length)
+                + 1 + 4 + valueBytes.length;
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(VERSION);
+        buffer.put((byte) message.getType().ordinal());
+        buffer.putInt(message.getSlot());
+        buffer.putInt(message.getProposalNumber());
+        buffer.put(highestSeen == null ? 0 : FLAG_HIGHEST_SEEN);
+        buffer.putInt(highestSeen == null ? 0 : highestSeen);
+        buffer.putShort((short) senderIndex);
+        if (inlineSender != null) {
+            buffer.put(inlineSender);
+        }
+        buffer.put(valueTag);
+        buffer.putInt(valueBytes.length);
+        buffer.put(valueBytes);
+        return buffer.array();
+    }
+
+    @Override
+    public Message decode(byte[] frame, int offset, int length) throws IOException {
+        if (length > 0 && frame[offset] == JAVA_STREAM_MAGIC) {
+            return fallback.decode(frame, offset, length);
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(frame, offset, length);
+            byte version = buffer.get();
+            if (version != VERSION && version != VERSION_WITHOUT_SLOT) {
+                throw new IOException("Unsupported message codec version " + version);
+            }
+            MessageType type = MESSAGE_TYPES[buffer.get()];
+            int slot = version == VERSION_WITHOUT_SLOT ? 0 : buffer.getInt();
+            int proposalNumber = buffer.getInt();
+            byte flags = buffer.get();
+            int highestSeen = buffer.getInt();
+            short senderIndex = buffer.getShort();
+            Host sender = senderIndex == INLINE_SENDER ? decodeHost(buffer) : hosts[senderIndex];
+            byte valueTag = buffer.get();
+            int valueLength = buffer.getInt();
+            Object value = decodeValue(valueTag, frame, buffer.arrayOffset() + buffer.position(), valueLength);
+
+            Message message = new Message(type, slot, proposalNumber, value, sender);
+            message.setHighestSeenProposalNumber((flags & FLAG_HIGHEST_SEEN) != 0 ? highestSeen : null);
+            return message;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Truncated or corrupt message frame", e);
+        }
+    }
+
+    private int indexOf(Host sender) {
+        Integer index = hostIndexes.get(sender.getId());
+        if (index != null && hosts[index].equals(sender)) {
+            return index;
+        }
+        return INLINE_SENDER;
+    }
+
+    private static byte[] encodeHost(Host host) {
+        byte[] address = host.getAddress().getBytes(StandardCharsets.UTF_8);
+        byte[] id = host.getId().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(2 + address.length + 4 + 2 + id.length + 1 + 1);
+        buffer.putShort((short) address.length);
+        buffer.put(address);
+        buffer.putInt(host.getPort());
+        buffer.putShort((short) id.length);
+        buffer.put(id);
+        buffer.put(host.getRole() == null ? -1 : (byte) host.getRole().ordinal());
+        buffer.put(host.getCouncillorType() == null ? -1 : (byte) host.getCouncillorType().ordinal());
+        return buffer.array();
+    }
+
+    private static Host decodeHost(ByteBuffer buffer) {
+        String address = readShortString(buffer);
+        int port = buffer.getInt();
+        String id = readShortString(buffer);
+        byte role = buffer.get();
+        byte councillorType = buffer.get();
+        return new Host(address, port, id, role < 0 ? null : ROLES[role],
+                councillorType < 0 ? null : COUNCILLOR_TYPES[councillorType]);
+    }
+
+    private static String readShortString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte valueTag(Object value) {
+        if (value == null) {
+            return VALUE_NULL;
+        } else if (value instanceof String) {
+            return VALUE_STRING;
+        } else if (value instanceof Integer) {
+            return VALUE_INTEGER;
+        } else if (value instanceof Long) {
+            return VALUE_LONG;
+        } else if (value instanceof byte[]) {
+            return VALUE_BYTES;
+        } else if (isLogEntryList(value)) {
+            return VALUE_LOG_ENTRIES;
+        } else if (value instanceof CommandBatch) {
+            return VALUE_COMMAND_BATCH;
+        }
+        return VALUE_SERIALIZED;
+    }
+
+    private static byte[] encodeValue(byte tag, Object value) throws IOException {
+        switch (tag) {
+            case VALUE_NULL:
+                return new byte[0];
+            case VALUE_STRING:
+                return ((String) value).getBytes(StandardCharsets.UTF_8);
+            case VALUE_INTEGER:
+                return ByteBuffer.allocate(4).putInt((Integer) value).array();
+            case VALUE_LONG:
+                return ByteBuffer.allocate(8).putLong((Long) value).array();
+            case VALUE_BYTES:
+                return (byte[]) value;
+            case VALUE_LOG_ENTRIES:
+                return encodeLogEntries((List<?>) value);
+            case VALUE_COMMAND_BATCH:
+                return encodeCommandBatch((CommandBatch) value);
+            default:
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+                    oos.writeObject(value);
+                }
+                return bytes.toByteArray();
+        }
+    }
+
+    private static Object decodeValue(byte tag, byte[] frame, int offset, int length) throws IOException {
+        switch (tag) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_STRING:
+                return new String(frame, offset, length, StandardCharsets.UTF_8);
+            case VALUE_INTEGER:
+                return ByteBuffer.wrap(frame, offset, length).getInt();
+            case VALUE_LONG:
+                return ByteBuffer.wrap(frame, offset, length).getLong();
+            case VALUE_BYTES:
+                byte[] bytes = new byte[length];
+                System.arraycopy(frame, offset, bytes, 0, length);
+                return bytes;
+            case VALUE_LOG_ENTRIES:
+                return decodeLogEntries(ByteBuffer.wrap(frame, offset, length));
+            case VALUE_COMMAND_BATCH:
+                return decodeCommandBatch(ByteBuffer.wrap(frame, offset, length));
+            case VALUE_SERIALIZED:
+                try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(frame, offset, length))) {
+                    return ois.readObject();
+                } catch (ClassNotFoundException e) {
+                    throw new IOException("Unknown class in message value", e);
+                }
+            default:
+                throw new IOException("Unknown value tag " + tag);
+        }
+    }
+
+    /* Promises carry the entries an acceptor has accepted, so they get a tag of their own */
+    private static boolean isLogEntryList(Object value) {
+        if (!(value instanceof ArrayList)) {
+            return false;
+        }
+        for (Object element : (List<?>) value) {
+            if (!(element instanceof LogEntry)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] encodeLogEntries(List<?> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(entries.size());
+        for (Object element : entries) {
+            LogEntry entry = (LogEntry) element;
+            byte tag = valueTag(entry.getValue());
+            byte[] value = encodeValue(tag, entry.getValue());
+            out.writeInt(entry.getSlot());
+            out.writeInt(entry.getProposalNumber());
+            out.writeByte(tag);
+            out.writeInt(value.length);
+            out.write(value);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static ArrayList<LogEntry> decodeLogEntries(ByteBuffer buffer) throws IOException {
+        int count = buffer.getInt();
+        ArrayList<LogEntry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int slot = buffer.getInt();
+            int proposalNumber = buffer.getInt();
+            byte tag = buffer.get();
+            int length = buffer.getInt();
+            Object value = decodeValue(tag, buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+            buffer.position(buffer.position() + length);
+            entries.add(new LogEntry(slot, proposalNumber, value));
+        }
+        return entries;
+    }
+
+    private static byte[] encodeCommandBatch(CommandBatch batch) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(batch.size());
+        for (Object command : batch.getCommands()) {
+            byte tag = valueTag(command);
+            byte[] value = encodeValue(tag, command);
+            out.writeByte(tag);
+            out.writeInt(value.length);
+            out.write(value);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static CommandBatch decodeCommandBatch(ByteBuffer buffer) throws IOException {
+        int count = buffer.getInt();
+        List<Object> commands = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte tag = buffer.get();
+            int length = buffer.getInt();
+            commands.add(decodeValue(tag, buffer.array(), buffer.arrayOffset() + buffer.position(), length));
+            buffer.position(buffer.position() + length);
+        }
+        return new CommandBatch(commands);
+    }
+}
@@ -0,0 +1,107 @@
+package utils;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import models.Host;
+
+/**
+ * Keeps one persistent connection per peer so that messages do not pay for a
+ * TCP handshake each. Broken connections are re-established on the next send
+ * and connections left unused for longer than the idle timeout are closed.
+ */
+public class ConnectionPool {
+
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = 30000;
+
+    private final Map<Host, PeerConnection> connections = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService evictor;
+    private final long idleTimeoutMs;
+    private static final Logger LOGGER = Logger.getLogger(ConnectionPool.class.getName());
+
+    public ConnectionPool() {
+        this(DEFAULT_IDLE_TIMEOUT_MS);
+    }
+
+    /**
+     * @param idleTimeoutMs Time in milliseconds after which an unused connection
+     *                      is closed.
+     */
+    public ConnectionPool(long idleTimeoutMs) {
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ConnectionEvictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long sweepPeriod = Math.max(1, idleTimeoutMs / 2);
+        evictor.scheduleAtFixedRate(this::evictIdleConnections, sweepPeriod, sweepPeriod,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sends a frame to the target host over its pooled connection. If the
+     * connection turns out to be broken it is replaced and the frame is retried
+     * once.
+     */
+    public void send(Host targetHost, byte[] frame) throws IOException {
+        try {
+            getConnection(targetHost).writeFrame(frame);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Reconnecting to " + targetHost.getAddress() + ":" + targetHost.getPort(), e);
+            closeConnection(targetHost);
+            getConnection(targetHost).writeFrame(frame);
+        }
+    }
+
+    private PeerConnection getConnection(Host targetHost) throws IOException {
+        PeerConnection connection = connections.get(targetHost);
+        if (connection == null || !connection.isOpen()) {
+            connection = new PeerConnection(targetHost);
+            PeerConnection previous = connections.put(targetHost, connection);
+            if (previous != null) {
+                previous.close();
+            }
+        }
+        return connection;
+    }
+
+    private void closeConnection(Host targetHost) {
+        PeerConnection connection = connections.remove(targetHost);
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    private void evictIdleConnections() {
+        long now = System.currentTimeMillis();
+        Iterator<PeerConnection> iterator = connections.values().iterator();
+        while (iterator.hasNext()) {
+            PeerConnection connection = iterator.next();
+            if (connection.isIdle(now, idleTimeoutMs) || !connection.isOpen()) {
+                iterator.remove();
+                connection.close();
+            }
+        }
+    }
+
+    public int getOpenConnectionCount() {
+        return connections.size();
+    }
+
+    /* Closes every pooled connection and stops the idle evictor */
+    public void closeAll() {
+        evictor.shutdownNow();
+        for (PeerConnection connection : connections.values()) {
+            connection.close();
+        }
+        connections.clear();
+    }
+}
@@ -6,8 +6,6 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.ScheduledExecutorService;
 
 import models.PaxosRole;
 import paxos.PaxosNode;
@@ -18,8 +16,7 @@ import paxos.PaxosNode;
 public class ElectionManager {
     private final List<PaxosNode> nodes;
     private final TimerUtils timerUtils;
-    private Object consensusValue;
-    private ScheduledExecutorService scheduler;
+    private volatile Object consensusValue;
     private final CountDownLatch electionConcludedLatch = new CountDownLatch(1);
 
     /**
@@ -31,43 +28,51 @@ public class ElectionManager {
         this.nodes = nodes;
         this.timerUtils = new TimerUtils(10000, 10000);
         this.consensusValue = null;
-        this.scheduler = Executors.newScheduledThreadPool(1);
     }
 
     /**
      * Starts the election process by initiating the proposal phase on a single
-     * proposer. A timer periodically checks if consensus has been reached and
-     * monitors election progression
+     * proposer. The returned future completes as soon as the first learner
+     * learns the decided value, so the time until it completes is the
+     * protocol's own latency; the nodes are then stopped in the background.
+     *
+     * @return Future of the decided value.
      */
-    public void runElection() {
+    public CompletableFuture<Object> runElection() {
         List<PaxosNode> proposerNodes = getProposers(nodes);
         if (proposerNodes.isEmpty()) {
             logNoProposersAvailable();
-            return;
+            return failed(new IllegalStateException("No proposers available"));
         }
 
+        CompletableFuture<Object> decided = awaitConsensus();
         PaxosNode proposer = proposerNodes.get(0);
         try {
             proposer.initiateElection();
-            startConsensusCheck();
         } catch (Exception e) {
             handleElectionError(e);
+            decided.completeExceptionally(e);
         }
+        return decided;
     }
 
     /**
      * Starts the election process with multiple proposers initiating the proposal
      * phase simultaneously. Used for testing
+     *
+     * @return Future of the decided value.
      */
-    public void runElectionWithSimultaneousProposals() {
+    public CompletableFuture<Object> runElectionWithSimultaneousProposals() {
         List<PaxosNode> proposerNodes = getProposers(nodes);
         if (proposerNodes.isEmpty()) {
             logNoProposersAvailable();
-            return;
+            return failed(new IllegalStateException("No proposers available"));
         }
 
+        CompletableFuture<Object> decided = awaitConsensus();
+
         ExecutorService executor = Executors.newFixedThreadPool(proposerNodes.size());
-        CompletableFuture<?>[] futures = new CompletableFuture[proposerNodes.size()];
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[proposerNodes.size()];
 
         System.out.println(
                 "INFO: starting an election with " + proposerNodes.size() + " proposers voting simultaneously");
@@ -85,35 +90,40 @@ public class ElectionManager {
         }
 
         CompletableFuture.allOf(futures).join();
-        startConsensusCheck();
         executor.shutdown();
+        return decided;
     }
 
-    private boolean hasElectionConcluded() {
+    /*
+     * Completes with the first value any learner learns for the election's
+     * slot. The election is concluded off the learner's thread, since
+     * concluding stops the very node that completed the future.
+     */
+    private CompletableFuture<Object> awaitConsensus() {
         List<PaxosNode> learnerNodes = getLearners(nodes);
-        for (PaxosNode learner : learnerNodes) {
-            if (learner.hasReachedConsensus()) {
-                consensusValue = learner.getConsensusValue();
-                return true;
-            }
+        if (learnerNodes.isEmpty()) {
+            return failed(new IllegalStateException("No learners to report consensus"));
         }
-        return false;
-    }
-
-    private void startConsensusCheck() {
-        scheduler.scheduleAtFixedRate(() -> {
-            if (hasElectionConcluded()) {
-                handleElectionSuccess();
-                scheduler.shutdownNow(); // Stop further checks after success
-            }
-        }, 0, 1, TimeUnit.SECONDS);
+        CompletableFuture<?>[] learned = new CompletableFuture<?>[learnerNodes.size()];
+        for (int i = 0; i < learned.length; i++) {
+            learned[i] = learnerNodes.get(i).whenLearned(0);
+        }
+        CompletableFuture<Object> decided = CompletableFuture.anyOf(learned);
+        decided.thenAcceptAsync(this::handleElectionSuccess);
+        return decided;
     }
 
-    private Object handleElectionSuccess() {
+    private void handleElectionSuccess(Object value) {
+        consensusValue = value;
         System.out.println("Consensus achieved for value " + consensusValue);
         concludeElection();
         electionConcludedLatch.countDown();
-        return consensusValue;
+    }
+
+    private static CompletableFuture<Object> failed(Throwable cause) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        future.completeExceptionally(cause);
+        return future;
     }
 
     private void logNoProposersAvailable() {
@@ -128,7 +138,6 @@ public class ElectionManager {
     private void concludeElection() {
         System.out.println("INFO: concluding election");
         timerUtils.stop();
-        scheduler.shutdown();
         for (PaxosNode node : nodes) {
             node.stopNode();
         }
@@ -0,0 +1,52 @@
+package utils;
+
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import models.Host;
+import models.Message;
+
+/**
+ * A network inside the JVM: the message queue of every listening host, keyed
+ * by host. Each network is its own address space, so clusters on separate
+ * networks can use the same ports and run side by side.
+ */
+public class InMemoryNetwork {
+
+    private final Map<Host, BlockingQueue<Message>> queues = new ConcurrentHashMap<>();
+    private final AtomicLong deliveredCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /* Creates a transport for a host on this network */
+    public InMemoryTransport connect(Host host) {
+        return new InMemoryTransport(this, host);
+    }
+
+    void register(Host host, BlockingQueue<Message> messageQueue) {
+        queues.put(host, messageQueue);
+    }
+
+    void unregister(Host host, BlockingQueue<Message> messageQueue) {
+        queues.remove(host, messageQueue);
+    }
+
+    /* Hands the message to the target's queue; like a refused connection, it is dropped if nobody listens */
+    void deliver(Message message, Host targetHost) {
+        BlockingQueue<Message> queue = queues.get(targetHost);
+        if (queue != null && queue.offer(message)) {
+            deliveredCount.incrementAndGet();
+        } else {
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    public long getDeliveredCount() {
+        return deliveredCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+}
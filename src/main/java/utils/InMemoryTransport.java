@@ -0,0 +1,56 @@
+package utils;
+
+import java.util.concurrent.BlockingQueue;
+
+import models.Host;
+import models.Message;
+
+/**
+ * Transport for a node of an {@link InMemoryNetwork}. A send looks up the
+ * target's queue and offers the message to it on the caller's thread, with no
+ * encoding, copying or send thread in between. Messages are shared by
+ * reference, so neither side may change one after sending it.
+ */
+public class InMemoryTransport implements Transport {
+
+    private final InMemoryNetwork network;
+    private final Host localHost;
+    private volatile BlockingQueue<Message> messageQueue;
+
+    InMemoryTransport(InMemoryNetwork network, Host localHost) {
+        this.network = network;
+        this.localHost = localHost;
+    }
+
+    @Override
+    public void startListening(BlockingQueue<Message> messageQueue) {
+        this.messageQueue = messageQueue;
+        network.register(localHost, messageQueue);
+    }
+
+    @Override
+    public void stopListening() {
+        if (messageQueue != null) {
+            network.unregister(localHost, messageQueue);
+        }
+    }
+
+    @Override
+    public void startMessageProcessing() {
+        // sends are delivered synchronously
+    }
+
+    @Override
+    public void stopMessageProcessing() {
+    }
+
+    @Override
+    public void sendMessage(Message message, Host targetHost) {
+        network.deliver(message, targetHost);
+    }
+
+    @Override
+    public Host getLocalHost() {
+        return localHost;
+    }
+}
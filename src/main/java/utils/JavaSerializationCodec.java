@@ -0,0 +1,32 @@
+package utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import models.Message;
+
+/* Encodes messages with standard Java serialization. Slow and verbose, but it
+handles any Serializable proposed value and needs no shared configuration */
+public class JavaSerializationCodec implements MessageCodec {
+
+    @Override
+    public byte[] encode(Message message) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(message);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public Message decode(byte[] frame, int offset, int length) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(frame, offset, length))) {
+            return (Message) ois.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unknown class in message frame", e);
+        }
+    }
+}
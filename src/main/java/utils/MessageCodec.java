@@ -0,0 +1,13 @@
+package utils;
+
+import java.io.IOException;
+
+import models.Message;
+
+/* Turns messages into the payload of a network frame and back again */
+public interface MessageCodec {
+
+    byte[] encode(Message message) throws IOException;
+
+    Message decode(byte[] frame, int offset, int length) throws IOException;
+}
@@ -1,35 +1,94 @@
 package utils;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import metrics.Counter;
+import metrics.MetricsRegistry;
 import models.Host;
 import models.Message;
 import models.MessageTargetHost;
 
-public class NetworkHandler {
+/* Transport over TCP: framed messages on pooled connections to each peer */
+public class NetworkHandler implements Transport {
 
+    /* How inbound connections are read */
+    public enum ReceiveMode {
+        /* one blocking reader thread per inbound connection */
+        BLOCKING,
+        /* a fixed pool of selector threads shared by all inbound connections */
+        NIO,
+    }
+
+    public static final int DEFAULT_IO_THREADS = 1;
+
+    private ServerSocketChannel serverChannel;
     private ServerSocket serverSocket;
+    private final ReceiveMode receiveMode;
+    private final int ioThreads;
+    private NioReceiver nioReceiver;
+    private final MessageCodec codec;
     private Thread listeningThread;
     private Thread sendingThread;
-    private boolean listening = false;
-    private boolean sending = false;
+    private volatile boolean listening = false;
+    private volatile boolean sending = false;
     private BlockingQueue<MessageTargetHost> sendingQueue = new LinkedBlockingQueue<>();
     private Host localHost;
+    private final ConnectionPool connectionPool = new ConnectionPool();
+    private final Set<Socket> clientSockets = ConcurrentHashMap.newKeySet();
+    /* bytes sent to and received from each peer, by host id; null until metrics are bound */
+    private volatile MetricsRegistry metrics;
+    private final Map<String, Counter> bytesSent = new ConcurrentHashMap<>();
+    private final Map<String, Counter> bytesReceived = new ConcurrentHashMap<>();
+    private static final int MAX_FRAME_BYTES = 16 * 1024 * 1024;
     private static final Logger LOGGER = Logger.getLogger(NetworkHandler.class.getName());
 
     public NetworkHandler(Host host) {
+        this(host, new JavaSerializationCodec());
+    }
+
+    /**
+     * @param host  The host this handler listens on.
+     * @param codec Codec used to encode outgoing and decode incoming frames.
+     */
+    public NetworkHandler(Host host, MessageCodec codec) {
+        this(host, ReceiveMode.NIO, DEFAULT_IO_THREADS, codec);
+    }
+
+    public NetworkHandler(Host host, ReceiveMode receiveMode, int ioThreads) {
+        this(host, receiveMode, ioThreads, new JavaSerializationCodec());
+    }
+
+    /**
+     * @param host        The host this handler listens on.
+     * @param receiveMode Whether inbound traffic is read with blocking threads
+     *                    or the selector based event loop.
+     * @param ioThreads   Number of selector threads used in NIO mode.
+     * @param codec       Codec used to encode outgoing and decode incoming
+     *                    frames.
+     */
+    public NetworkHandler(Host host, ReceiveMode receiveMode, int ioThreads, MessageCodec codec) {
         localHost = host;
+        this.codec = codec;
+        this.receiveMode = receiveMode;
+        this.ioThreads = ioThreads;
         try {
-            serverSocket = new ServerSocket();
+            serverChannel = ServerSocketChannel.open();
+            serverSocket = serverChannel.socket();
+            serverSocket.setReuseAddress(true);
             /*
              * Optionally we can bind to any available address on the machine
              * serverSocket.bind(new InetSocketAddress("0.0.0.0", host.getPort()));
@@ -41,27 +100,35 @@ public class NetworkHandler {
             LOGGER.log(Level.SEVERE, "Could not start server on port: " + host.getPort(),
                     e);
             serverSocket = null;
+            serverChannel = null;
         }
     }
 
+    @Override
     public void startMessageProcessing() {
         if (!sending) {
             sending = true;
-            sendingThread = new Thread(this::processMessageQueue);
-            sendingThread.start();
+            sendingThread = NodeThreads.start("Sender-" + localHost.getId(), this::processMessageQueue);
         }
     }
 
+    @Override
     public void stopMessageProcessing() {
         sending = false;
         if (sendingThread != null) {
             sendingThread.interrupt();
         }
+        connectionPool.closeAll();
     }
 
+    @Override
     public void startListening(BlockingQueue<Message> messageQueue) {
         listening = true;
-        listeningThread = new Thread(() -> {
+        if (receiveMode == ReceiveMode.NIO) {
+            startNioListening(messageQueue);
+            return;
+        }
+        listeningThread = NodeThreads.newThread("Listener-" + localHost.getId(), () -> {
             while (listening) {
                 try {
                     Socket clientSocket = serverSocket.accept();
@@ -78,35 +145,77 @@ public class NetworkHandler {
         listeningThread.start();
     }
 
+    private void startNioListening(BlockingQueue<Message> messageQueue) {
+        try {
+            nioReceiver = new NioReceiver(serverChannel, ioThreads, messageQueue, codec);
+            nioReceiver.setReceivedListener(this::recordReceived);
+            nioReceiver.start(localHost.getId());
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Could not start non-blocking receiver", e);
+        }
+    }
+
+    /*
+     * Each inbound connection gets a reader thread which keeps decoding frames
+     * until the peer closes the stream
+     */
     private void handleClientSocket(Socket clientSocket, BlockingQueue<Message> messageQueue) {
-        new Thread(() -> {
-            try (ObjectInputStream ois = new ObjectInputStream(clientSocket.getInputStream())) {
-                Message message = (Message) ois.readObject();
-                messageQueue.put(message);
-            } catch (IOException | ClassNotFoundException | InterruptedException e) {
-                LOGGER.log(Level.SEVERE, "Exception caught while handling client socket", e);
+        clientSockets.add(clientSocket);
+        NodeThreads.start("Reader-" + localHost.getId(), () -> {
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(clientSocket.getInputStream()))) {
+                while (listening) {
+                    int length = in.readInt();
+                    if (length < 0 || length > MAX_FRAME_BYTES) {
+                        throw new IOException("Invalid frame length " + length);
+                    }
+                    byte[] frame = new byte[length];
+                    in.readFully(frame);
+                    Message message = codec.decode(frame, 0, length);
+                    recordReceived(message, Integer.BYTES + length);
+                    messageQueue.put(message);
+                }
+            } catch (EOFException e) {
+                // the peer closed its end of the connection
+            } catch (IOException | InterruptedException e) {
+                if (listening && !clientSocket.isClosed()) {
+                    LOGGER.log(Level.SEVERE, "Exception caught while handling client socket", e);
+                }
             } finally {
+                clientSockets.remove(clientSocket);
                 try {
                     clientSocket.close(); // Close the client socket here, after handling it.
                 } catch (IOException e) {
                     LOGGER.log(Level.WARNING, "Exception caught while closing client socket", e);
                 }
             }
-        }).start();
+        });
     }
 
+    @Override
     public void stopListening() {
         listening = false;
+        if (nioReceiver != null) {
+            nioReceiver.stop();
+        }
         try {
             serverSocket.close();
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "Exception caught while closing server socket", e);
         }
+        for (Socket clientSocket : clientSockets) {
+            try {
+                clientSocket.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Exception caught while closing client socket", e);
+            }
+        }
         if (listeningThread != null) {
             listeningThread.interrupt();
         }
     }
 
+    @Override
     public void sendMessage(Message message, Host targetHost) {
         queueMessage(new MessageTargetHost(message, targetHost));
     }
@@ -130,17 +239,44 @@ public class NetworkHandler {
         }
     }
 
-    /* Sends a message to a target host */
+    /* Sends a message to a target host over its pooled connection */
     private void send(Message message, Host targetHost) {
-        try (Socket socket = new Socket(targetHost.getAddress(),
-                targetHost.getPort());
-                ObjectOutputStream oos = new ObjectOutputStream(socket.getOutputStream())) {
-            oos.writeObject(message);
+        try {
+            byte[] frame = codec.encode(message);
+            connectionPool.send(targetHost, frame);
+            MetricsRegistry registry = metrics;
+            if (registry != null) {
+                bytesSent.computeIfAbsent(targetHost.getId(),
+                        id -> registry.counter("network.bytes_sent." + id)).add(Integer.BYTES + frame.length);
+            }
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "Send Message Exception caught", e);
         }
     }
 
+    private void recordReceived(Message message, int frameBytes) {
+        MetricsRegistry registry = metrics;
+        if (registry != null && message.getSenderHost() != null) {
+            bytesReceived.computeIfAbsent(message.getSenderHost().getId(),
+                    id -> registry.counter("network.bytes_received." + id)).add(frameBytes);
+        }
+    }
+
+    @Override
+    public void bindMetrics(MetricsRegistry registry) {
+        registry.gauge("network.send_queue_depth", sendingQueue::size);
+        this.metrics = registry;
+    }
+
+    public ReceiveMode getReceiveMode() {
+        return receiveMode;
+    }
+
+    public MessageCodec getCodec() {
+        return codec;
+    }
+
+    @Override
     public Host getLocalHost() {
         return localHost;
     }
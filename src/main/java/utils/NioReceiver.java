@@ -0,0 +1,225 @@
+package utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.ObjIntConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import models.Message;
+
+/**
+ * Non-blocking receive path. A fixed number of I/O threads each run a selector
+ * loop; the first loop also accepts connections and hands them out round
+ * robin. Frames are decoded from a per-connection buffer that is reused for
+ * the lifetime of the connection, and decoded messages go straight into the
+ * node's message queue.
+ */
+public class NioReceiver {
+
+    private static final int INITIAL_BUFFER_BYTES = 8 * 1024;
+    private static final int MAX_FRAME_BYTES = 16 * 1024 * 1024;
+    private static final Logger LOGGER = Logger.getLogger(NioReceiver.class.getName());
+
+    private final ServerSocketChannel serverChannel;
+    private final BlockingQueue<Message> messageQueue;
+    private final MessageCodec codec;
+    private final IoLoop[] loops;
+    private volatile boolean running;
+    /* told about every decoded message and the size of its frame */
+    private volatile ObjIntConsumer<Message> receivedListener;
+    private int nextLoop;
+
+    /**
+     * @param serverChannel A bound server channel.
+     * @param ioThreads     Number of selector threads to read with.
+     * @param messageQueue  Queue that decoded messages are delivered to.
+     * @param codec         Codec used to decode frames.
+     */
+    public NioReceiver(ServerSocketChannel serverChannel, int ioThreads, BlockingQueue<Message> messageQueue,
+            MessageCodec codec) throws IOException {
+        this.serverChannel = serverChannel;
+        this.messageQueue = messageQueue;
+        this.codec = codec;
+        this.loops = new IoLoop[Math.max(1, ioThreads)];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new IoLoop(Selector.open());
+        }
+    }
+
+    public void setReceivedListener(ObjIntConsumer<Message> receivedListener) {
+        this.receivedListener = receivedListener;
+    }
+
+    public void start(String name) throws IOException {
+        running = true;
+        serverChannel.configureBlocking(false);
+        serverChannel.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+        for (int i = 0; i < loops.length; i++) {
+            loops[i].thread = NodeThreads.newThread("NioReceiver-" + name + "-" + i, loops[i]);
+            loops[i].thread.start();
+        }
+    }
+
+    public void stop() {
+        running = false;
+        for (IoLoop loop : loops) {
+            loop.selector.wakeup();
+        }
+        for (IoLoop loop : loops) {
+            if (loop.thread != null) {
+                try {
+                    loop.thread.join(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            IoLoop loop = loops[nextLoop];
+            nextLoop = (nextLoop + 1) % loops.length;
+            loop.pending.add(channel);
+            loop.selector.wakeup();
+        }
+    }
+
+    /* One selector thread and the connections assigned to it */
+    private class IoLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+        private Thread thread;
+
+        IoLoop(Selector selector) {
+            this.selector = selector;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    selector.select();
+                    registerPending();
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else if (key.isReadable()) {
+                            read(key);
+                        }
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                if (running) {
+                    LOGGER.log(Level.SEVERE, "Exception caught in receive loop", e);
+                }
+            } finally {
+                closeAll();
+            }
+        }
+
+        private void registerPending() throws IOException {
+            SocketChannel channel;
+            while ((channel = pending.poll()) != null) {
+                channel.register(selector, SelectionKey.OP_READ,
+                        ByteBuffer.allocate(INITIAL_BUFFER_BYTES));
+            }
+        }
+
+        private void read(SelectionKey key) {
+            SocketChannel channel = (SocketChannel) key.channel();
+            ByteBuffer buffer = (ByteBuffer) key.attachment();
+            try {
+                int read = channel.read(buffer);
+                if (read < 0) {
+                    close(key);
+                    return;
+                }
+                buffer.flip();
+                buffer = drainFrames(buffer);
+                buffer.compact();
+                key.attach(buffer);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Dropping connection after read failure", e);
+                close(key);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close(key);
+            }
+        }
+
+        /*
+         * Decodes every complete frame in the buffer. If the next frame does not
+         * fit, the buffer is swapped for a larger one holding the partial frame.
+         * Returns the buffer in read mode.
+         */
+        private ByteBuffer drainFrames(ByteBuffer buffer)
+                throws IOException, InterruptedException {
+            while (buffer.remaining() >= Integer.BYTES) {
+                int length = buffer.getInt(buffer.position());
+                if (length < 0 || length > MAX_FRAME_BYTES) {
+                    throw new IOException("Invalid frame length " + length);
+                }
+                if (buffer.remaining() < Integer.BYTES + length) {
+                    if (Integer.BYTES + length > buffer.capacity()) {
+                        ByteBuffer larger = ByteBuffer.allocate(Integer.BYTES + length);
+                        larger.put(buffer);
+                        larger.flip();
+                        return larger;
+                    }
+                    break;
+                }
+                int start = buffer.position() + Integer.BYTES;
+                Message message = codec.decode(buffer.array(), buffer.arrayOffset() + start, length);
+                ObjIntConsumer<Message> listener = receivedListener;
+                if (listener != null) {
+                    listener.accept(message, Integer.BYTES + length);
+                }
+                messageQueue.put(message);
+                buffer.position(start + length);
+            }
+            return buffer;
+        }
+
+        private void close(SelectionKey key) {
+            key.cancel();
+            try {
+                key.channel().close();
+            } catch (IOException e) {
+                // the connection is being discarded, nothing left to do
+            }
+        }
+
+        private void closeAll() {
+            try {
+                for (SelectionKey key : selector.keys()) {
+                    if (key.channel() != serverChannel) {
+                        close(key);
+                    }
+                }
+                selector.close();
+            } catch (IOException | ClosedSelectorException e) {
+                LOGGER.log(Level.WARNING, "Exception caught while closing selector", e);
+            }
+        }
+    }
+}
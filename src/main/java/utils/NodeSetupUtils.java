@@ -15,6 +15,33 @@ exact class of the object that will be created. */
 public class NodeSetupUtils {
 
     public static List<PaxosNode> setupNodesFromFile(String csvFilePath) {
+        return setupNodesFromFile(csvFilePath, null);
+    }
+
+    /*
+     * Same as above, but the nodes talk over the given in-memory network
+     * instead of TCP, or over TCP if it is null
+     */
+    public static List<PaxosNode> setupNodesFromFile(String csvFilePath, InMemoryNetwork network) {
+        HostList hostList = readHostList(csvFilePath);
+        if (hostList == null) {
+            return null;
+        }
+
+        List<PaxosNode> nodes = new ArrayList<>();
+        for (Host host : hostList.getHosts()) {
+            PaxosNode node = createNode(host, hostList, network == null ? null : network.connect(host));
+            if (node != null) {
+                node.startNode();
+                nodes.add(node);
+            }
+        }
+
+        return nodes;
+    }
+
+    /* Reads the hosts of a csv file, or returns null if it cannot be read */
+    public static HostList readHostList(String csvFilePath) {
         HostList hostList = new HostList();
         File file = new File(csvFilePath);
         try (Scanner scanner = new Scanner(file)) {
@@ -29,17 +56,7 @@ public class NodeSetupUtils {
             e.printStackTrace();
             return null;
         }
-
-        List<PaxosNode> nodes = new ArrayList<>();
-        for (Host host : hostList.getHosts()) {
-            PaxosNode node = instantiateNode(host.getCouncillorType(), host, hostList);
-            if (node != null) {
-                node.startNode();
-                nodes.add(node);
-            }
-        }
-
-        return nodes;
+        return hostList;
     }
 
     private static Host parseHost(String line) {
@@ -58,9 +75,17 @@ public class NodeSetupUtils {
         return new Host(address, port, id, role, councillorType);
     }
 
-    private static PaxosNode instantiateNode(CouncillorType councillorType, Host host, HostList hostList) {
+    /*
+     * Creates the council member class of the host, talking over the given
+     * transport, or over TCP if it is null. The node is not started.
+     */
+    public static PaxosNode createNode(Host host, HostList hostList, Transport transport) {
         try {
-            Class<?> clazz = councillorType.getCouncillorClass();
+            Class<?> clazz = host.getCouncillorType().getCouncillorClass();
+            if (transport != null) {
+                return (PaxosNode) clazz.getConstructor(Host.class, HostList.class, Transport.class)
+                        .newInstance(host, hostList, transport);
+            }
             return (PaxosNode) clazz.getConstructor(Host.class, HostList.class).newInstance(host, hostList);
         } catch (Exception e) {
             e.printStackTrace();
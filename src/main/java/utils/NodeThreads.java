@@ -0,0 +1,93 @@
+package utils;
+
+import java.lang.reflect.Method;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Creates the threads of nodes and their transports: the message loop, the
+ * listener, the sender, one reader per inbound connection and the selector
+ * loops. In {@link ThreadMode#VIRTUAL} mode they are virtual threads, so a
+ * JVM can host hundreds of nodes without hundreds of operating system
+ * threads and their stacks. The build still targets Java 8, so virtual
+ * threads are looked up reflectively. On a JVM without them, platform
+ * threads are used instead.
+ *
+ * The mode is read from the {@code paxos.threads} system property
+ * ({@code platform} or {@code virtual}) and can be changed with
+ * {@link #setMode(ThreadMode)} before the nodes are started.
+ */
+public final class NodeThreads {
+
+    private static final Logger LOGGER = Logger.getLogger(NodeThreads.class.getName());
+    /* Thread.ofVirtual() and Thread.Builder.unstarted(Runnable), or null before Java 21 */
+    private static final Method OF_VIRTUAL;
+    private static final Method UNSTARTED;
+    private static final Method NAME;
+
+    private static volatile ThreadMode mode;
+
+    static {
+        Method ofVirtual = null;
+        Method unstarted = null;
+        Method name = null;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            unstarted = builder.getMethod("unstarted", Runnable.class);
+            name = builder.getMethod("name", String.class);
+        } catch (ReflectiveOperationException e) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        UNSTARTED = unstarted;
+        NAME = name;
+        mode = "virtual".equalsIgnoreCase(System.getProperty("paxos.threads")) ? ThreadMode.VIRTUAL
+                : ThreadMode.PLATFORM;
+    }
+
+    private NodeThreads() {
+    }
+
+    /* Whether this JVM can run virtual threads */
+    public static boolean isVirtualAvailable() {
+        return OF_VIRTUAL != null;
+    }
+
+    public static ThreadMode getMode() {
+        return mode;
+    }
+
+    /* Mode for threads created from now on; threads already running keep theirs */
+    public static void setMode(ThreadMode newMode) {
+        if (newMode == ThreadMode.VIRTUAL && !isVirtualAvailable()) {
+            LOGGER.log(Level.WARNING, "Virtual threads need Java 21 or later; using platform threads");
+        }
+        mode = newMode;
+    }
+
+    /* Mode that threads are actually created with on this JVM */
+    public static ThreadMode getEffectiveMode() {
+        return mode == ThreadMode.VIRTUAL && isVirtualAvailable() ? ThreadMode.VIRTUAL : ThreadMode.PLATFORM;
+    }
+
+    /* Creates a thread in the current mode without starting it */
+    public static Thread newThread(String name, Runnable task) {
+        if (getEffectiveMode() == ThreadMode.VIRTUAL) {
+            try {
+                Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), name);
+                return (Thread) UNSTARTED.invoke(builder, task);
+            } catch (ReflectiveOperationException e) {
+                LOGGER.log(Level.WARNING, "Could not create virtual thread " + name, e);
+            }
+        }
+        return new Thread(task, name);
+    }
+
+    /* Creates and starts a thread in the current mode */
+    public static Thread start(String name, Runnable task) {
+        Thread thread = newThread(name, task);
+        thread.start();
+        return thread;
+    }
+}
@@ -0,0 +1,65 @@
+package utils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import models.Host;
+
+/* A long-lived TCP connection to a single peer. Messages are written as
+length-prefixed frames so that any number of them can share the one stream */
+public class PeerConnection {
+
+    private static final int CONNECT_TIMEOUT_MS = 2000;
+
+    private final Host targetHost;
+    private final Socket socket;
+    private final DataOutputStream out;
+    private volatile long lastUsed;
+
+    public PeerConnection(Host targetHost) throws IOException {
+        this.targetHost = targetHost;
+        this.socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true);
+            socket.connect(new InetSocketAddress(targetHost.getAddress(), targetHost.getPort()),
+                    CONNECT_TIMEOUT_MS);
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        this.lastUsed = System.currentTimeMillis();
+    }
+
+    /* Writes a single frame: a 4 byte length followed by the payload */
+    public synchronized void writeFrame(byte[] payload) throws IOException {
+        out.writeInt(payload.length);
+        out.write(payload);
+        out.flush();
+        lastUsed = System.currentTimeMillis();
+    }
+
+    public boolean isIdle(long now, long idleTimeoutMs) {
+        return now - lastUsed > idleTimeoutMs;
+    }
+
+    public boolean isOpen() {
+        return !socket.isClosed();
+    }
+
+    public Host getTargetHost() {
+        return targetHost;
+    }
+
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // the connection is being discarded, nothing left to do
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package utils;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/* Wall clock scheduling: delayed tasks wait on the shared hashed-wheel timer */
+public class RealTimeScheduler implements Scheduler {
+
+    private final HashedWheelTimer timer;
+    private final Random random = new Random();
+
+    public RealTimeScheduler() {
+        this(HashedWheelTimer.shared());
+    }
+
+    public RealTimeScheduler(HashedWheelTimer timer) {
+        this.timer = timer;
+    }
+
+    @Override
+    public Timeout schedule(Runnable task, long delayMillis) {
+        return timer.newTimeout(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+    }
+
+    @Override
+    public Random getRandom() {
+        return random;
+    }
+}
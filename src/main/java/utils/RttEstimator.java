@@ -0,0 +1,72 @@
+package utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round-trip time to one peer, estimated the way TCP does (RFC 6298). Each
+ * sample updates a smoothed RTT and an RTT variance, and the retransmission
+ * timeout is the smoothed RTT plus four variances, kept within bounds. A
+ * timeout doubles the retransmission timeout until the next sample, so a peer
+ * that has gone quiet is retried less and less often.
+ */
+public class RttEstimator {
+    public static final long DEFAULT_INITIAL_TIMEOUT_MILLIS = 1000;
+    public static final long DEFAULT_MIN_TIMEOUT_MILLIS = 20;
+    public static final long DEFAULT_MAX_TIMEOUT_MILLIS = 60000;
+
+    private static final double ALPHA = 1.0 / 8;
+    private static final double BETA = 1.0 / 4;
+    private static final int K = 4;
+
+    private final long minTimeoutMillis;
+    private final long maxTimeoutMillis;
+    /* negative until the first sample */
+    private double smoothedRttMillis = -1;
+    private double rttVarianceMillis;
+    private long timeoutMillis;
+
+    public RttEstimator() {
+        this(DEFAULT_INITIAL_TIMEOUT_MILLIS, DEFAULT_MIN_TIMEOUT_MILLIS, DEFAULT_MAX_TIMEOUT_MILLIS);
+    }
+
+    public RttEstimator(long initialTimeoutMillis, long minTimeoutMillis, long maxTimeoutMillis) {
+        this.minTimeoutMillis = minTimeoutMillis;
+        this.maxTimeoutMillis = maxTimeoutMillis;
+        this.timeoutMillis = clamp(initialTimeoutMillis);
+    }
+
+    /* Adds the round trip of a request that was sent only once */
+    public synchronized void sample(long rttNanos) {
+        double rttMillis = rttNanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        if (smoothedRttMillis < 0) {
+            smoothedRttMillis = rttMillis;
+            rttVarianceMillis = rttMillis / 2;
+        } else {
+            rttVarianceMillis = (1 - BETA) * rttVarianceMillis + BETA * Math.abs(smoothedRttMillis - rttMillis);
+            smoothedRttMillis = (1 - ALPHA) * smoothedRttMillis + ALPHA * rttMillis;
+        }
+        timeoutMillis = clamp((long) Math.ceil(smoothedRttMillis + K * rttVarianceMillis));
+    }
+
+    /* A request to the peer timed out; wait twice as long next time */
+    public synchronized void onTimeout() {
+        timeoutMillis = clamp(timeoutMillis * 2);
+    }
+
+    public synchronized long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /* Smoothed RTT, or -1 if there has been no sample yet */
+    public synchronized double getSmoothedRttMillis() {
+        return smoothedRttMillis;
+    }
+
+    public synchronized double getRttVarianceMillis() {
+        return rttVarianceMillis;
+    }
+
+    private long clamp(long millis) {
+        return Math.max(minTimeoutMillis, Math.min(maxTimeoutMillis, millis));
+    }
+}
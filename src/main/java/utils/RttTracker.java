@@ -0,0 +1,61 @@
+package utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import metrics.MetricsRegistry;
+import models.Host;
+
+/**
+ * An {@link RttEstimator} per peer. Requests carry no ids, so a round trip is
+ * only sampled when the request was sent once (Karn's rule): after a
+ * retransmission it is unknown which copy the reply answers. Each peer's
+ * smoothed RTT and retransmission timeout are exported as gauges.
+ */
+public class RttTracker {
+
+    private final Map<Host, RttEstimator> estimators = new ConcurrentHashMap<>();
+    /* when each peer was last sent a retransmission */
+    private final Map<Host, Long> retransmittedAt = new ConcurrentHashMap<>();
+    private final MetricsRegistry metrics;
+
+    public RttTracker(MetricsRegistry metrics) {
+        this.metrics = metrics;
+    }
+
+    public RttEstimator get(Host peer) {
+        return estimators.computeIfAbsent(peer, this::newEstimator);
+    }
+
+    private RttEstimator newEstimator(Host peer) {
+        RttEstimator estimator = new RttEstimator();
+        if (metrics != null) {
+            metrics.gauge("network.rtt_smoothed_millis." + peer.getId(),
+                    () -> Math.round(Math.max(0, estimator.getSmoothedRttMillis())));
+            metrics.gauge("network.rto_millis." + peer.getId(), estimator::getTimeoutMillis);
+        }
+        return estimator;
+    }
+
+    /*
+     * A reply from the peer arrived at nowNanos to a request first sent at
+     * sentNanos. It is ignored if the peer was sent a retransmission since.
+     */
+    public void onReply(Host peer, long sentNanos, long nowNanos) {
+        Long retransmitted = retransmittedAt.get(peer);
+        if (retransmitted != null && retransmitted >= sentNanos) {
+            return;
+        }
+        get(peer).sample(nowNanos - sentNanos);
+    }
+
+    /* The peer did not answer in time and is being sent its requests again */
+    public void onRetransmit(Host peer, long nowNanos) {
+        retransmittedAt.put(peer, nowNanos);
+        get(peer).onTimeout();
+    }
+
+    public long getTimeoutMillis(Host peer) {
+        return get(peer).getTimeoutMillis();
+    }
+}
@@ -0,0 +1,25 @@
+package utils;
+
+import java.util.Random;
+
+/**
+ * Time and randomness as seen by a node's behaviour. Council members use it
+ * for their delays and dropped messages, so the same behaviour can run
+ * against the wall clock or a simulator's virtual clock.
+ */
+public interface Scheduler {
+
+    /* Runs the task once the delay has passed, without holding up the caller */
+    Timeout schedule(Runnable task, long delayMillis);
+
+    /* Holds up the calling node for the given time */
+    void sleep(long millis) throws InterruptedException;
+
+    /* Source of randomness for the node's behaviour */
+    Random getRandom();
+
+    /* Clock the node times round trips with, in nanoseconds from an arbitrary origin */
+    default long nanoTime() {
+        return System.nanoTime();
+    }
+}
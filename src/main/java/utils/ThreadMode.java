@@ -0,0 +1,9 @@
+package utils;
+
+/* Kind of thread that node and network work runs on */
+public enum ThreadMode {
+    /* one operating system thread per task, as before */
+    PLATFORM,
+    /* lightweight threads scheduled by the JVM, where the JVM has them (Java 21+) */
+    VIRTUAL
+}
@@ -0,0 +1,13 @@
+package utils;
+
+/* Handle to a task scheduled to run later, through which it can be cancelled */
+public interface Timeout {
+
+    /* Stops the task from running; false if it has already run or been cancelled */
+    boolean cancel();
+
+    boolean isCancelled();
+
+    /* Whether the task has been run */
+    boolean isExpired();
+}
@@ -1,41 +1,53 @@
 package utils;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
 
 /* TimerUtils is a utility class for scheduling tasks to run after a delay
-and at fixed rate. */
+and at fixed rate. Tasks run on the shared hashed-wheel timer rather than a
+thread of their own. */
 public class TimerUtils {
-    private Timer timer;
+    private final HashedWheelTimer timer;
     private long delay;
     private long period;
-    private TimerTask currentTask;
+    private Runnable currentTask;
+    private Timeout currentTimeout;
 
     public TimerUtils(long delay, long period) {
-        this.timer = new Timer();
+        this(HashedWheelTimer.shared(), delay, period);
+    }
+
+    public TimerUtils(HashedWheelTimer timer, long delay, long period) {
+        this.timer = timer;
         this.delay = delay;
         this.period = period;
     }
 
-    public void start(Runnable task) {
+    public synchronized void start(Runnable task) {
         stop(); // Stop any existing tasks
-        currentTask = new TimerTask() {
-            @Override
-            public void run() {
-                task.run();
+        currentTask = task;
+        scheduleRun(task, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay));
+    }
+
+    /* Schedules the next run; the one after is due a period after this one was, not after it ran */
+    private void scheduleRun(Runnable task, long dueNanos) {
+        long delayNanos = Math.max(0, dueNanos - System.nanoTime());
+        currentTimeout = timer.newTimeout(() -> {
+            synchronized (this) {
+                if (currentTask != task) {
+                    return;
+                }
+                scheduleRun(task, dueNanos + TimeUnit.MILLISECONDS.toNanos(period));
             }
-        };
-        timer.scheduleAtFixedRate(currentTask, delay, period);
+            task.run();
+        }, delayNanos, TimeUnit.NANOSECONDS);
     }
 
-    public void stop() {
-        if (currentTask != null) {
-            currentTask.cancel();
-            currentTask = null;
-        }
-        if (timer != null) {
-            timer.purge(); // Remove cancelled tasks from the timer's task queue
+    public synchronized void stop() {
+        if (currentTimeout != null) {
+            currentTimeout.cancel();
+            currentTimeout = null;
         }
+        currentTask = null;
     }
 
     public void setDelay(long delay) {
@@ -52,13 +64,10 @@ public class TimerUtils {
         }
     }
 
-    private void restartLastTask() {
-        if (currentTask != null) {
-            Runnable lastRunnable = currentTask.scheduledExecutionTime() > 0 ? currentTask : null;
-            stop(); // Stop the current task
-            if (lastRunnable != null) {
-                start(lastRunnable); // Restart the task with the new values
-            }
+    private synchronized void restartLastTask() {
+        Runnable lastTask = currentTask;
+        if (lastTask != null) {
+            start(lastTask); // Restart the task with the new values
         }
     }
 
@@ -69,4 +78,4 @@ public class TimerUtils {
     public long getPeriod() {
         return period;
     }
-}
\ No newline at end of file
+}
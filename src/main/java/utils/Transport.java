@@ -0,0 +1,32 @@
+package utils;
+
+import java.util.concurrent.BlockingQueue;
+
+import metrics.MetricsRegistry;
+import models.Host;
+import models.Message;
+
+/**
+ * Moves messages between nodes. {@link NetworkHandler} does it over TCP and
+ * {@link InMemoryTransport} within one JVM.
+ */
+public interface Transport {
+
+    /* Starts delivering messages addressed to this host into the queue */
+    void startListening(BlockingQueue<Message> messageQueue);
+
+    void stopListening();
+
+    /* Starts sending queued messages, for transports that send asynchronously */
+    void startMessageProcessing();
+
+    void stopMessageProcessing();
+
+    void sendMessage(Message message, Host targetHost);
+
+    Host getLocalHost();
+
+    /* Records the transport's queue depth and traffic in the node's registry, if it keeps any */
+    default void bindMetrics(MetricsRegistry metrics) {
+    }
+}
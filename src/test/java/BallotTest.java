@@ -0,0 +1,76 @@
+import models.Ballot;
+import paxos.PaxosNode;
+import utils.ElectionManager;
+import utils.InMemoryNetwork;
+import utils.NodeSetupUtils;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/* Ballots are unique per proposer, and a proposer whose ballot is rejected
+hears about it through a NACK and wins the next round at a higher ballot */
+class BallotTest {
+
+    private List<PaxosNode> members;
+
+    @AfterEach
+    void tearDown() {
+        if (members != null) {
+            for (PaxosNode member : members) {
+                member.stopNode();
+            }
+        }
+    }
+
+    @Test
+    void BallotsOrderByRoundThenNode() {
+        int first = Ballot.of(1, 0);
+        int second = Ballot.of(1, 1);
+        assertNotEquals(first, second);
+        assertTrue(second > first);
+        assertTrue(Ballot.of(2, 0) > Ballot.of(1, Ballot.MAX_NODES - 1));
+        assertEquals(2, Ballot.round(Ballot.next(second, 0)));
+        assertEquals(0, Ballot.nodeIndex(Ballot.next(second, 0)));
+        assertEquals(Ballot.of(1, 3), Ballot.next(-1, 3));
+    }
+
+    @Test
+    void RejectedProposerRetriesAboveNackedBallot() throws Exception {
+        members = NodeSetupUtils.setupNodesFromFile("src/test/resources/simultaneous_vote.csv",
+                new InMemoryNetwork());
+        for (PaxosNode member : members) {
+            member.setQuiet(true);
+        }
+        List<PaxosNode> proposers = ElectionManager.getProposers(members);
+        PaxosNode low = proposers.get(0);
+        PaxosNode high = proposers.get(1);
+        PaxosNode learner = ElectionManager.getLearners(members).get(0);
+
+        // the second proposer wins first with ballot (1, 1)
+        high.initiateElection();
+        assertEquals(high.getId(), learner.whenLearned(0).get(5, TimeUnit.SECONDS));
+
+        // (1, 0) is below it, so the first proposer is NACKed and tries round 2
+        low.initiateElection();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!low.isLeader() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(low.isLeader());
+        assertTrue(low.getMetrics().counter("proposer.nacks_received").get() >= 1);
+        assertTrue(low.getMetrics().counter("proposer.phase1_retries").get() >= 1);
+        PaxosNode acceptor = ElectionManager.getAcceptors(members).get(0);
+        assertEquals(Ballot.of(2, 0), acceptor.getPromisedProposalNumber());
+
+        // the chosen candidate is kept and the late nomination is withdrawn
+        Thread.sleep(200);
+        assertEquals(high.getId(), learner.getLearnedValue(0));
+        assertNull(learner.getLearnedValue(1));
+    }
+}
@@ -0,0 +1,67 @@
+import paxos.PaxosNode;
+import utils.ElectionManager;
+import utils.InMemoryNetwork;
+import utils.NodeSetupUtils;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/* Learners report a decision the moment they learn it, so an election's
+future completes after the protocol's own latency rather than a polling tick */
+class ConsensusNotificationTest {
+
+    private static final String CONFIG = "src/test/resources/multi_paxos_log.csv";
+
+    private List<PaxosNode> members;
+
+    @BeforeEach
+    void setup() {
+        members = NodeSetupUtils.setupNodesFromFile(CONFIG, new InMemoryNetwork());
+        for (PaxosNode member : members) {
+            member.setQuiet(true);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (PaxosNode member : members) {
+            member.stopNode();
+        }
+    }
+
+    @Test
+    void ElectionFutureCompletesWithoutPolling() throws Exception {
+        ElectionManager manager = new ElectionManager(members);
+        long start = System.nanoTime();
+        Object consensusValue = manager.runElection().get(5, TimeUnit.SECONDS);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals("M1", consensusValue);
+        // the old check ran once a second, so a decision was never seen sooner
+        assertTrue(elapsedMillis < 900, "election took " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void SlotFuturesCompleteInLogOrder() throws Exception {
+        PaxosNode leader = ElectionManager.getProposers(members).get(0);
+        PaxosNode learner = ElectionManager.getLearners(members).get(0);
+        int valueCount = 20;
+        CompletableFuture<Object> last = learner.whenLearned(valueCount - 1);
+        assertTrue(!last.isDone());
+
+        for (int i = 0; i < valueCount; i++) {
+            leader.submit("command-" + i);
+        }
+        assertEquals("command-" + (valueCount - 1), last.get(5, TimeUnit.SECONDS));
+
+        // a slot that is already learned hands back a completed future
+        CompletableFuture<Object> first = learner.whenLearned(0);
+        assertTrue(first.isDone());
+        assertEquals("command-0", first.get());
+    }
+}
@@ -0,0 +1,102 @@
+import models.CouncillorType;
+import models.Host;
+import models.HostList;
+import models.PaxosRole;
+import paxos.PaxosNode;
+import utils.ElectionManager;
+import utils.InMemoryNetwork;
+import utils.NodeSetupUtils;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/* Pre-empted proposers back off instead of dueling, and once they know the
+leader they forward values to it rather than competing for the log */
+class ContentionTest {
+
+    private List<PaxosNode> members;
+
+    @AfterEach
+    void tearDown() {
+        if (members != null) {
+            for (PaxosNode member : members) {
+                member.stopNode();
+            }
+        }
+    }
+
+    @Test
+    void ProposersForwardToKnownLeader() throws Exception {
+        members = NodeSetupUtils.setupNodesFromFile("src/test/resources/simultaneous_vote.csv",
+                new InMemoryNetwork());
+        for (PaxosNode member : members) {
+            member.setQuiet(true);
+        }
+        List<PaxosNode> proposers = ElectionManager.getProposers(members);
+        PaxosNode follower = proposers.get(0);
+        PaxosNode leader = proposers.get(1);
+        PaxosNode learner = ElectionManager.getLearners(members).get(0);
+
+        leader.submit("first");
+        assertEquals("first", learner.whenLearned(0).get(5, TimeUnit.SECONDS));
+
+        // the follower's lower ballot is NACKed, which tells it who leads
+        follower.submit("second");
+        assertEquals("second", learner.whenLearned(1).get(5, TimeUnit.SECONDS));
+        long nacks = follower.getMetrics().counter("proposer.nacks_received").get();
+        assertTrue(nacks >= 1);
+
+        // later values go straight to the leader without another Phase 1
+        follower.submit("third");
+        assertEquals("third", learner.whenLearned(2).get(5, TimeUnit.SECONDS));
+        assertEquals(2, follower.getMetrics().counter("proposer.values_forwarded").get());
+        assertEquals(nacks, follower.getMetrics().counter("proposer.nacks_received").get());
+        assertTrue(leader.isLeader());
+    }
+
+    @Test
+    void SimultaneousProposersConverge() throws Exception {
+        InMemoryNetwork network = new InMemoryNetwork();
+        members = cluster(network, 8, 5);
+        for (PaxosNode member : members) {
+            member.setQuiet(true);
+            member.startNode();
+        }
+        PaxosNode learner = ElectionManager.getLearners(members).get(0);
+        for (PaxosNode proposer : ElectionManager.getProposers(members)) {
+            proposer.initiateElection();
+        }
+        Object elected = learner.whenLearned(0).get(20, TimeUnit.SECONDS);
+        assertNotNull(elected);
+
+        // every acceptor-learner that learned the election slot agrees with the learner
+        Thread.sleep(200);
+        for (PaxosNode member : members) {
+            Object learned = member.getLearnedValue(0);
+            assertTrue(learned == null || learned.equals(elected), member.getId() + " learned " + learned);
+        }
+    }
+
+    private static List<PaxosNode> cluster(InMemoryNetwork network, int proposerCount, int acceptorCount) {
+        HostList hostList = new HostList();
+        int port = 4570;
+        for (int i = 0; i < proposerCount; i++) {
+            hostList.addHost(new Host("127.0.0.1", port++, "P" + i, PaxosRole.PROPOSER, CouncillorType.M1));
+        }
+        for (int i = 0; i < acceptorCount; i++) {
+            hostList.addHost(new Host("127.0.0.1", port++, "A" + i, PaxosRole.ACCEPTOR, CouncillorType.M1));
+        }
+        hostList.addHost(new Host("127.0.0.1", port, "L", PaxosRole.LEARNER, CouncillorType.M1));
+        List<PaxosNode> nodes = new ArrayList<>();
+        for (Host host : hostList.getHosts()) {
+            nodes.add(NodeSetupUtils.createNode(host, hostList, network.connect(host)));
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,119 @@
+import models.Ballot;
+import models.CouncillorType;
+import models.Host;
+import models.HostList;
+import models.Message;
+import models.MessageType;
+import models.PaxosRole;
+import paxos.PaxosNode;
+import utils.InMemoryNetwork;
+import utils.NodeSetupUtils;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/* In fast mode clients' values are accepted straight from the clients, and
+values that collide in a slot are placed by a classic round, each in a
+slot of its own */
+class FastPaxosTest {
+
+    private static final int VALUE_COUNT = 10;
+
+    private final List<PaxosNode> members = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        for (PaxosNode member : members) {
+            member.stopNode();
+        }
+    }
+
+    @Test
+    void FastBallotsStayAboveClassicOnes() {
+        int fast = Ballot.fast(3, 2);
+        assertTrue(Ballot.isFast(fast));
+        assertFalse(Ballot.isFast(Ballot.of(3, 2)));
+        assertFalse(Ballot.isFast(-1));
+        assertEquals(3, Ballot.round(fast));
+        assertEquals(2, Ballot.nodeIndex(fast));
+        assertTrue(fast > Ballot.of(3, Ballot.MAX_NODES - 1));
+        assertTrue(Ballot.of(4, 0) > fast);
+        assertEquals(Ballot.fast(4, 1), Ballot.nextFast(fast, 1));
+    }
+
+    @Test
+    void ClientValuesSkipTheLeader() throws Exception {
+        cluster();
+        PaxosNode leader = members.get(0);
+        PaxosNode client = members.get(4);
+        leader.submit("first");
+        assertEquals("first", client.whenLearned(0).get(10, TimeUnit.SECONDS));
+
+        for (int i = 1; i <= VALUE_COUNT; i++) {
+            client.submit("value-" + i);
+            assertEquals("value-" + i, client.whenLearned(i).get(10, TimeUnit.SECONDS));
+        }
+        // the leader may count the last acceptances after the client learned them
+        long deadline = System.currentTimeMillis() + 5000;
+        while (leader.getMetrics().counter("proposer.fast_decisions").get() < VALUE_COUNT + 1
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(VALUE_COUNT + 1, leader.getMetrics().counter("proposer.fast_decisions").get());
+        assertEquals(0, leader.getMetrics().counter("proposer.collisions").get());
+    }
+
+    @Test
+    void CollisionFallsBackToClassicRound() throws Exception {
+        cluster();
+        PaxosNode leader = members.get(0);
+        PaxosNode learner = members.get(4);
+        leader.submit("first");
+        assertEquals("first", learner.whenLearned(0).get(10, TimeUnit.SECONDS));
+
+        // two clients' values reach the acceptors in different orders
+        Host client = learner.getHost();
+        Message x = new Message(MessageType.FAST_PROPOSE, 0, 0, "x", client);
+        Message y = new Message(MessageType.FAST_PROPOSE, 0, 0, "y", client);
+        members.get(1).handleMessage(x);
+        members.get(1).handleMessage(y);
+        members.get(2).handleMessage(y);
+        members.get(2).handleMessage(x);
+        members.get(3).handleMessage(x);
+        members.get(3).handleMessage(y);
+
+        List<Object> decided = new ArrayList<>();
+        decided.add(learner.whenLearned(1).get(10, TimeUnit.SECONDS));
+        decided.add(learner.whenLearned(2).get(10, TimeUnit.SECONDS));
+        assertTrue(decided.contains("x") && decided.contains("y"), "decided " + decided);
+        assertTrue(leader.getMetrics().counter("proposer.collisions").get() >= 1);
+
+        // the leader opens a fast round again once the collision is resolved
+        learner.submit("after");
+        assertEquals("after", learner.whenLearned(3).get(10, TimeUnit.SECONDS));
+    }
+
+    /* One proposer, three acceptors and a learner, all in fast mode */
+    private void cluster() {
+        InMemoryNetwork network = new InMemoryNetwork();
+        HostList hostList = new HostList();
+        hostList.addHost(new Host("127.0.0.1", 4590, "P", PaxosRole.PROPOSER, CouncillorType.M1));
+        for (int i = 0; i < 3; i++) {
+            hostList.addHost(new Host("127.0.0.1", 4591 + i, "A" + i, PaxosRole.ACCEPTOR, CouncillorType.M1));
+        }
+        hostList.addHost(new Host("127.0.0.1", 4594, "L", PaxosRole.LEARNER, CouncillorType.M1));
+        for (Host host : hostList.getHosts()) {
+            PaxosNode node = NodeSetupUtils.createNode(host, hostList, network.connect(host));
+            node.setQuiet(true);
+            node.setFastMode(true);
+            node.startNode();
+            members.add(node);
+        }
+    }
+}
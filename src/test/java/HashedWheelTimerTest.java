@@ -0,0 +1,87 @@
+import utils.HashedWheelTimer;
+import utils.Timeout;
+import utils.TimerUtils;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/* Delayed tasks run from one thread, in deadline order, and cancelled tasks
+never run */
+class HashedWheelTimerTest {
+
+    private HashedWheelTimer timer;
+
+    @BeforeEach
+    void setup() {
+        timer = new HashedWheelTimer("TestTimer", 5, 64);
+    }
+
+    @AfterEach
+    void tearDown() {
+        timer.stop();
+    }
+
+    @Test
+    void RunsTaskAfterDelay() throws InterruptedException {
+        CountDownLatch ran = new CountDownLatch(1);
+        long start = System.nanoTime();
+        Timeout timeout = timer.newTimeout(ran::countDown, 50, TimeUnit.MILLISECONDS);
+
+        assertTrue(ran.await(2, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 50);
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+    }
+
+    @Test
+    void CancelledTaskNeverRuns() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        Timeout timeout = timer.newTimeout(runs::incrementAndGet, 30, TimeUnit.MILLISECONDS);
+        assertTrue(timeout.cancel());
+
+        Thread.sleep(100);
+        assertEquals(0, runs.get());
+        assertTrue(timeout.isCancelled());
+        assertEquals(0, timer.getPendingCount());
+    }
+
+    @Test
+    void ManyPendingTasksShareOneThread() throws InterruptedException {
+        int taskCount = 20000;
+        CountDownLatch ran = new CountDownLatch(taskCount);
+        int threadsBefore = Thread.activeCount();
+        for (int i = 0; i < taskCount; i++) {
+            // spread over more than one turn of the 64 bucket wheel
+            timer.newTimeout(ran::countDown, i % 500, TimeUnit.MILLISECONDS);
+        }
+        assertTrue(Thread.activeCount() <= threadsBefore + 1);
+
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        assertEquals(0, timer.getPendingCount());
+    }
+
+    @Test
+    void StopReturnsTasksThatHaveNotRun() {
+        timer.newTimeout(() -> {
+        }, 10, TimeUnit.SECONDS);
+        List<Timeout> unprocessed = timer.stop();
+        assertEquals(1, unprocessed.size());
+    }
+
+    @Test
+    void TimerUtilsRepeatsAtFixedRate() throws InterruptedException {
+        TimerUtils timerUtils = new TimerUtils(timer, 10, 20);
+        CountDownLatch ran = new CountDownLatch(5);
+        timerUtils.start(ran::countDown);
+
+        assertTrue(ran.await(2, TimeUnit.SECONDS));
+        timerUtils.stop();
+    }
+}
@@ -0,0 +1,78 @@
+import models.Host;
+import models.Message;
+import models.MessageType;
+import models.PaxosRole;
+import paxos.PaxosNode;
+import utils.ElectionManager;
+import utils.InMemoryNetwork;
+import utils.InMemoryTransport;
+import utils.NodeSetupUtils;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/* Clusters on separate in-memory networks share the same ports without
+interfering, and messages go straight into the target's queue */
+class InMemoryTransportTest {
+
+    private static final String CONFIG = "src/test/resources/multi_paxos_log.csv";
+
+    private final List<PaxosNode> members = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        for (PaxosNode member : members) {
+            member.stopNode();
+        }
+    }
+
+    @Test
+    void DeliversIntoTargetQueue() throws InterruptedException {
+        InMemoryNetwork network = new InMemoryNetwork();
+        Host sender = new Host("127.0.0.1", 4570, "M1", PaxosRole.PROPOSER);
+        Host receiver = new Host("127.0.0.1", 4571, "M2", PaxosRole.ACCEPTOR);
+        InMemoryTransport receiving = network.connect(receiver);
+        BlockingQueue<Message> queue = new LinkedBlockingQueue<>();
+        receiving.startListening(queue);
+
+        Message message = new Message(MessageType.PREPARE, 1, "M1", sender);
+        network.connect(sender).sendMessage(message, receiver);
+        assertSame(message, queue.take());
+
+        receiving.stopListening();
+        network.connect(sender).sendMessage(message, receiver);
+        assertEquals(1, network.getDeliveredCount());
+        assertEquals(1, network.getDroppedCount());
+    }
+
+    @Test
+    void ClustersRunSideBySideOnSamePorts() throws InterruptedException {
+        int clusterCount = 4;
+        int valueCount = 200;
+        List<PaxosNode> learners = new ArrayList<>();
+        for (int c = 0; c < clusterCount; c++) {
+            List<PaxosNode> cluster = NodeSetupUtils.setupNodesFromFile(CONFIG, new InMemoryNetwork());
+            members.addAll(cluster);
+            PaxosNode leader = ElectionManager.getProposers(cluster).get(0);
+            for (int i = 0; i < valueCount; i++) {
+                leader.submit("cluster-" + c + "-command-" + i);
+            }
+            learners.add(ElectionManager.getLearners(cluster).get(0));
+        }
+
+        long deadline = System.currentTimeMillis() + 10000;
+        for (int c = 0; c < clusterCount; c++) {
+            PaxosNode learner = learners.get(c);
+            while (learner.getAppliedSlotCount() < valueCount && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals("cluster-" + c + "-command-" + (valueCount - 1), learner.getConsensusValue());
+        }
+    }
+}
@@ -0,0 +1,375 @@
+import council.M1;
+import kv.KeyValueClient;
+import kv.KeyValueStore;
+import kv.KvCommand;
+import kv.LongHashMap;
+import models.CouncillorType;
+import models.Host;
+import models.HostList;
+import models.PaxosRole;
+import models.Snapshot;
+import paxos.PaxosNode;
+import storage.SnapshotStore;
+import utils.InMemoryNetwork;
+import utils.NodeSetupUtils;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/* The key-value store applies puts and compare-and-sets once each, a client
+on the leader reads its own writes, and every replica applying the log,
+batched or not, ends up with the same entries, including a new leader that
+has to catch up from a snapshot. Snapshots share the store copy-on-write,
+so the learner keeps applying while one is written */
+class KeyValueStoreTest {
+
+    private final InMemoryNetwork network = new InMemoryNetwork();
+    private final List<PaxosNode> members = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        for (PaxosNode member : members) {
+            member.stopNode();
+        }
+    }
+
+    @Test
+    void LongHashMapHoldsAnyKey() {
+        LongHashMap<String> map = new LongHashMap<>();
+        assertNull(map.put(0, "zero"));
+        assertNull(map.put(-1, "minus one"));
+        assertNull(map.put(Long.MIN_VALUE, "min"));
+        assertEquals("zero", map.put(0, "zero again"));
+        assertEquals("zero again", map.get(0));
+        assertEquals("minus one", map.get(-1));
+        assertEquals("min", map.get(Long.MIN_VALUE));
+        assertFalse(map.containsKey(1));
+
+        // grows well past the default capacity
+        for (long key = 1; key <= 10000; key++) {
+            map.put(key * 1024, "v" + key);
+        }
+        assertEquals(10003, map.size());
+        for (long key = 1; key <= 10000; key++) {
+            assertEquals("v" + key, map.get(key * 1024));
+        }
+        long[] sum = { 0 };
+        map.forEach((key, value) -> sum[0]++);
+        assertEquals(map.size(), sum[0]);
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(0));
+    }
+
+    @Test
+    void CommandsApplyOnce() {
+        KeyValueStore store = new KeyValueStore();
+        assertNull(store.apply(KvCommand.put("c", 0, 0, 7, "a")));
+        assertEquals("a", store.apply(KvCommand.put("c", 1, 0, 7, "b")));
+        assertEquals(false, store.apply(KvCommand.compareAndSet("c", 2, 0, 7, "a", "c")));
+        assertEquals(true, store.apply(KvCommand.compareAndSet("c", 3, 0, 7, "b", "c")));
+        assertEquals(true, store.apply(KvCommand.compareAndSet("c", 4, 0, 8, null, "x")));
+        assertEquals("c", store.get(7));
+        assertEquals("x", store.get(8));
+
+        // a second copy of a decided command gets the first one's result and changes nothing
+        assertEquals(true, store.apply(KvCommand.compareAndSet("c", 3, 0, 7, "b", "c")));
+        assertEquals("a", store.apply(KvCommand.put("c", 1, 0, 7, "b")));
+        assertEquals("c", store.get(7));
+
+        // once the client has every result below 5, late copies of those are ignored
+        store.apply(KvCommand.put("c", 5, 5, 9, "y"));
+        assertNull(store.apply(KvCommand.put("c", 1, 0, 7, "b")));
+        assertEquals("c", store.get(7));
+        // other clients have sessions of their own
+        assertEquals("c", store.apply(KvCommand.put("d", 1, 0, 7, "d")));
+
+        List<Object> results = store.applyBatch(Arrays.asList(KvCommand.put("d", 2, 0, 10, "p"),
+                "not a command", KvCommand.compareAndSet("d", 3, 0, 10, "p", "q")));
+        assertEquals(Arrays.asList(null, null, true), results);
+        assertEquals("q", store.get(10));
+    }
+
+    @Test
+    void SnapshotRestoresEntriesAndSessions() {
+        KeyValueStore store = new KeyValueStore();
+        for (int i = 0; i < 100; i++) {
+            store.apply(KvCommand.put("c", i, 0, i, "v" + i));
+        }
+        Object snapshot = store.snapshot();
+        // later writes leave the snapshot alone
+        store.apply(KvCommand.put("c", 100, 0, 0, "changed"));
+
+        KeyValueStore restored = new KeyValueStore();
+        restored.restore(snapshot);
+        assertEquals(100, restored.size());
+        assertEquals("v0", restored.get(0));
+        assertEquals("v99", restored.get(99));
+        // the restored session still recognises a request applied before the snapshot
+        assertNull(restored.apply(KvCommand.put("c", 42, 0, 42, "again")));
+        assertEquals("v42", restored.get(42));
+        assertEquals("v0", restored.apply(KvCommand.put("c", 100, 0, 0, "changed")));
+    }
+
+    @Test
+    void ClientReadsItsWritesAndReplicasAgree() throws Exception {
+        cluster(4640);
+        PaxosNode leader = members.get(0);
+        KeyValueStore learnerStore = (KeyValueStore) members.get(4).getStateMachine();
+        KeyValueClient client = new KeyValueClient(leader, "client");
+
+        assertNull(client.put(1, "one").get(10, TimeUnit.SECONDS));
+        assertEquals("one", client.put(1, "uno").get(10, TimeUnit.SECONDS));
+        assertEquals("uno", client.get(1).get(10, TimeUnit.SECONDS));
+        assertFalse(client.compareAndSet(1, "one", "eins").get(10, TimeUnit.SECONDS));
+        assertTrue(client.compareAndSet(1, "uno", "eins").get(10, TimeUnit.SECONDS));
+        assertTrue(client.compareAndSet(2, null, "two").get(10, TimeUnit.SECONDS));
+        assertEquals("eins", client.get(1).get(10, TimeUnit.SECONDS));
+        assertNull(client.get(3).get(10, TimeUnit.SECONDS));
+
+        awaitSize(learnerStore, 2);
+        assertEquals("eins", learnerStore.get(1));
+        assertEquals("two", learnerStore.get(2));
+    }
+
+    @Test
+    void BatchedWritesApplyInOrder() throws Exception {
+        cluster(4650);
+        PaxosNode leader = members.get(0);
+        KeyValueStore learnerStore = (KeyValueStore) members.get(4).getStateMachine();
+        leader.enableBatching(64 * 1024, 100, 5);
+        KeyValueClient client = new KeyValueClient(leader, "client");
+        int writeCount = 500;
+
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < writeCount; i++) {
+            // every write replaces the one before under the same key
+            results.add(client.put(i % 10, "v" + i));
+        }
+        for (int i = 0; i < writeCount; i++) {
+            assertEquals(i < 10 ? null : "v" + (i - 10), results.get(i).get(10, TimeUnit.SECONDS));
+        }
+        assertTrue(leader.getBatchMetrics().getBatchCount() < writeCount, "Writes should have been batched");
+        assertEquals("v" + (writeCount - 1), client.get((writeCount - 1) % 10).get(10, TimeUnit.SECONDS));
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!("v" + (writeCount - 1)).equals(learnerStore.get((writeCount - 1) % 10))
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        for (int key = 0; key < 10; key++) {
+            assertEquals("v" + (writeCount - 10 + key), learnerStore.get(key));
+        }
+    }
+
+    @Test
+    void RestartedReplicaRestoresStoreFromSnapshot(@TempDir File directory) throws Exception {
+        cluster(4660);
+        PaxosNode learner = members.get(4);
+        learner.enableSnapshots(directory, 10);
+        KeyValueClient client = new KeyValueClient(members.get(0), "client");
+        for (int i = 0; i < 45; i++) {
+            client.put(i, "v" + i).get(10, TimeUnit.SECONDS);
+        }
+        long deadline = System.currentTimeMillis() + 10000;
+        while (learner.getLastSnapshotSlot() < 40 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        learner.stopNode();
+        int snapshotSlot = learner.getLastSnapshotSlot();
+        assertTrue(snapshotSlot >= 40, "snapshot at slot " + snapshotSlot);
+
+        PaxosNode restarted = new M1(learner.getHost(), new HostList());
+        KeyValueStore store = new KeyValueStore();
+        restarted.setStateMachine(store);
+        restarted.enableSnapshots(directory, 10);
+        assertEquals(snapshotSlot, restarted.getAppliedSlotCount());
+        // writes were decided one after another, so the snapshot holds a prefix of them
+        assertTrue(store.size() >= 40, store.size() + " keys restored");
+        for (int i = 0; i < store.size(); i++) {
+            assertEquals("v" + i, store.get(i));
+        }
+        restarted.stopNode();
+    }
+
+    @Test
+    void LearnerKeepsApplyingWhileSnapshotIsWritten(@TempDir File directory) throws Exception {
+        HeldSnapshotStore learnerStore = new HeldSnapshotStore();
+        cluster(4690, learnerStore);
+        PaxosNode learner = members.get(4);
+        learner.enableSnapshots(directory, 10);
+        KeyValueClient client = new KeyValueClient(members.get(0), "client");
+        for (int i = 0; i < 10; i++) {
+            client.put(i, "v" + i).get(10, TimeUnit.SECONDS);
+        }
+        assertTrue(learnerStore.started.tryAcquire(10, TimeUnit.SECONDS), "snapshot at slot 10 was not written");
+
+        // the snapshot is stuck in serialization, and every write still gets applied
+        for (int i = 0; i < 10; i++) {
+            client.put(i, "w" + i).get(10, TimeUnit.SECONDS);
+        }
+        for (int i = 10; i < 30; i++) {
+            client.put(i, "v" + i).get(10, TimeUnit.SECONDS);
+        }
+        awaitSize(learnerStore, 30);
+        assertEquals("w0", learnerStore.get(0));
+        assertEquals(0, learner.getLastSnapshotSlot());
+
+        // once it is written, the slots applied meanwhile call for the next one straight away
+        learnerStore.permits.release();
+        assertTrue(learnerStore.started.tryAcquire(10, TimeUnit.SECONDS), "snapshot at slot 40 was not taken");
+        assertEquals(10, learner.getLastSnapshotSlot());
+        Snapshot snapshot = new SnapshotStore(new File(directory, "snapshot-L.snap")).load();
+        assertEquals(10, snapshot.getSlot());
+        KeyValueStore restored = new KeyValueStore();
+        restored.restore(((HeldState) snapshot.getState()).state);
+        assertEquals(10, restored.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals("v" + i, restored.get(i));
+        }
+        // the writes made meanwhile were merged back once the snapshot was released
+        assertEquals(30, learnerStore.size());
+        assertEquals("w9", learnerStore.get(9));
+        learnerStore.permits.release(Integer.MAX_VALUE / 2);
+    }
+
+    @Test
+    void NewLeaderBelowCompactedSlotsCatchesUp(@TempDir File directory) throws Exception {
+        HostList hostList = new HostList();
+        int port = 4670;
+        for (int i = 0; i < 2; i++) {
+            hostList.addHost(new Host("127.0.0.1", port++, "P" + i, PaxosRole.PROPOSER, CouncillorType.M1));
+        }
+        for (int i = 0; i < 3; i++) {
+            hostList.addHost(new Host("127.0.0.1", port++, "A" + i, PaxosRole.ACCEPTOR, CouncillorType.M1));
+        }
+        hostList.addHost(new Host("127.0.0.1", port, "L", PaxosRole.LEARNER, CouncillorType.M1));
+        for (Host host : hostList.getHosts()) {
+            PaxosNode node = NodeSetupUtils.createNode(host, hostList, network.connect(host));
+            node.setQuiet(true);
+            node.setStateMachine(new KeyValueStore());
+            if (host.getRole() == PaxosRole.ACCEPTOR) {
+                node.enableSnapshots(new File(directory, host.getId()), 10);
+            }
+            members.add(node);
+        }
+        PaxosNode first = members.get(0);
+        PaxosNode second = members.get(1);
+        for (PaxosNode member : members) {
+            if (member != second) {
+                member.startNode();
+            }
+        }
+
+        KeyValueClient firstClient = new KeyValueClient(first, "first");
+        for (int i = 0; i < 30; i++) {
+            firstClient.put(i, "v" + i).get(10, TimeUnit.SECONDS);
+        }
+        long deadline = System.currentTimeMillis() + 10000;
+        for (PaxosNode acceptor : members.subList(2, 5)) {
+            while (acceptor.getLastSnapshotSlot() < 20 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(acceptor.getLastSnapshotSlot() >= 20, "snapshot at slot " + acceptor.getLastSnapshotSlot());
+        }
+
+        // the second proposer missed every decision, so it prepares from slot 0
+        second.startNode();
+        KeyValueClient secondClient = new KeyValueClient(second, "second");
+        assertEquals("v0", secondClient.put(0, "zero").get(10, TimeUnit.SECONDS));
+        KeyValueStore secondStore = (KeyValueStore) second.getStateMachine();
+        for (int i = 1; i < 30; i++) {
+            assertEquals("v" + i, secondStore.get(i));
+        }
+        KeyValueStore learnerStore = (KeyValueStore) members.get(5).getStateMachine();
+        deadline = System.currentTimeMillis() + 10000;
+        while (!"zero".equals(learnerStore.get(0)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals("zero", learnerStore.get(0));
+        for (int slot = 0; slot < 30; slot++) {
+            // nothing chosen before the compaction was proposed over
+            assertEquals(members.get(5).getLearnedValue(slot), first.getLearnedValue(slot));
+        }
+    }
+
+    private void cluster(int port) {
+        cluster(port, new KeyValueStore());
+    }
+
+    /* A proposer, three acceptors and a learner, each running its own store */
+    private void cluster(int port, KeyValueStore learnerStore) {
+        HostList hostList = new HostList();
+        hostList.addHost(new Host("127.0.0.1", port++, "P", PaxosRole.PROPOSER, CouncillorType.M1));
+        for (int i = 0; i < 3; i++) {
+            hostList.addHost(new Host("127.0.0.1", port++, "A" + i, PaxosRole.ACCEPTOR, CouncillorType.M1));
+        }
+        hostList.addHost(new Host("127.0.0.1", port, "L", PaxosRole.LEARNER, CouncillorType.M1));
+        for (Host host : hostList.getHosts()) {
+            PaxosNode node = NodeSetupUtils.createNode(host, hostList, network.connect(host));
+            node.setQuiet(true);
+            node.setStateMachine(host.getRole() == PaxosRole.LEARNER ? learnerStore : new KeyValueStore());
+            node.startNode();
+            members.add(node);
+        }
+    }
+
+    /* Store whose snapshots each block in serialization until the test hands out a permit */
+    private static final class HeldSnapshotStore extends KeyValueStore {
+        private final Semaphore started = new Semaphore(0);
+        private final Semaphore permits = new Semaphore(0);
+
+        @Override
+        public Object snapshot() {
+            return new HeldState(super.snapshot(), started, permits);
+        }
+
+        @Override
+        public void snapshotReleased(Object snapshot) {
+            super.snapshotReleased(((HeldState) snapshot).state);
+        }
+    }
+
+    private static final class HeldState implements Serializable {
+        static final long serialVersionUID = 1L;
+
+        private final Object state;
+        private final transient Semaphore started;
+        private final transient Semaphore permits;
+
+        HeldState(Object state, Semaphore started, Semaphore permits) {
+            this.state = state;
+            this.started = started;
+            this.permits = permits;
+        }
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            started.release();
+            permits.acquireUninterruptibly();
+            out.defaultWriteObject();
+        }
+    }
+
+    private static void awaitSize(KeyValueStore store, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (store.size() < size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(size, store.size());
+    }
+}
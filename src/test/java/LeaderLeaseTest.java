@@ -0,0 +1,127 @@
+import models.CouncillorType;
+import models.Host;
+import models.HostList;
+import models.LogRead;
+import models.PaxosRole;
+import paxos.PaxosNode;
+import utils.InMemoryNetwork;
+import utils.NodeSetupUtils;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/* A leader holding a lease serves reads locally and still sees its own
+latest writes, reads without a lease go through the log, and while the
+lease runs no other proposer can take over */
+class LeaderLeaseTest {
+
+    private static final long LEASE_MILLIS = 600;
+    private static final int READ_COUNT = 100;
+
+    private final InMemoryNetwork network = new InMemoryNetwork();
+    private final List<PaxosNode> members = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        for (PaxosNode member : members) {
+            member.stopNode();
+        }
+    }
+
+    @Test
+    void LeasedReadsSeeLatestWrites() throws Exception {
+        cluster(1, LEASE_MILLIS);
+        PaxosNode leader = members.get(0);
+        leader.submit("first");
+        members.get(4).whenLearned(0).get(10, TimeUnit.SECONDS);
+        awaitLease(leader);
+
+        for (int i = 0; i < READ_COUNT; i++) {
+            leader.submit("value-" + i);
+            // the read waits for the write just proposed, not for a round of its own
+            assertEquals("value-" + i, leader.read(leader::getConsensusValue).get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(READ_COUNT, leader.getMetrics().counter("node.reads_leased").get());
+        assertEquals(0, leader.getMetrics().counter("node.reads_through_log").get());
+    }
+
+    @Test
+    void ReadsWithoutLeaseGoThroughLog() throws Exception {
+        cluster(1, 0);
+        PaxosNode leader = members.get(0);
+        PaxosNode learner = members.get(4);
+        leader.submit("first");
+        learner.whenLearned(0).get(10, TimeUnit.SECONDS);
+
+        assertEquals("first", leader.read(leader::getConsensusValue).get(10, TimeUnit.SECONDS));
+        assertTrue(learner.whenLearned(1).get(10, TimeUnit.SECONDS) instanceof LogRead);
+        assertEquals(1, leader.getMetrics().counter("node.reads_through_log").get());
+        assertEquals(0, leader.getMetrics().counter("node.reads_leased").get());
+        // the read marker leaves the applied state alone
+        assertEquals("first", learner.getConsensusValue());
+    }
+
+    @Test
+    void LeaseHoldsOffOtherProposers() throws Exception {
+        cluster(2, LEASE_MILLIS);
+        PaxosNode holder = members.get(0);
+        PaxosNode challenger = members.get(1);
+        PaxosNode learner = members.get(5);
+        holder.submit("first");
+        learner.whenLearned(0).get(10, TimeUnit.SECONDS);
+        awaitLease(holder);
+
+        // the challenger's ballot is higher, but acceptors turn it away while the lease is renewed
+        challenger.submit("challenge");
+        Thread.sleep(2 * LEASE_MILLIS);
+        assertTrue(holder.isLeader());
+        assertFalse(challenger.isLeader());
+        assertNull(learner.getLearnedValue(1));
+        assertEquals("first", holder.read(holder::getConsensusValue).get(10, TimeUnit.SECONDS));
+        assertEquals(1, holder.getMetrics().counter("node.reads_leased").get());
+
+        // once the holder stops renewing, the challenger takes over after the lease runs out
+        long stoppedAt = System.nanoTime();
+        holder.stopNode();
+        assertEquals("challenge", learner.whenLearned(1).get(10, TimeUnit.SECONDS));
+        long takeover = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stoppedAt);
+        // the last renewal reached the acceptors at most a renewal period before the stop
+        assertTrue(takeover >= LEASE_MILLIS * 2 / 3 - 50, "took over after " + takeover + "ms");
+    }
+
+    /* Proposers, three acceptors and a learner, with leases of the given duration or none */
+    private void cluster(int proposers, long leaseMillis) {
+        HostList hostList = new HostList();
+        int port = 4620;
+        for (int i = 0; i < proposers; i++) {
+            hostList.addHost(new Host("127.0.0.1", port++, "P" + i, PaxosRole.PROPOSER, CouncillorType.M1));
+        }
+        for (int i = 0; i < 3; i++) {
+            hostList.addHost(new Host("127.0.0.1", port++, "A" + i, PaxosRole.ACCEPTOR, CouncillorType.M1));
+        }
+        hostList.addHost(new Host("127.0.0.1", port, "L", PaxosRole.LEARNER, CouncillorType.M1));
+        for (Host host : hostList.getHosts()) {
+            PaxosNode node = NodeSetupUtils.createNode(host, hostList, network.connect(host));
+            node.setQuiet(true);
+            node.setLeaderLease(leaseMillis);
+            node.startNode();
+            members.add(node);
+        }
+    }
+
+    private static void awaitLease(PaxosNode leader) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (leader.getMetrics().getGauges().get("proposer.lease_held").getValue() == 0
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, leader.getMetrics().getGauges().get("proposer.lease_held").getValue());
+    }
+}
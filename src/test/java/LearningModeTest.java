@@ -0,0 +1,167 @@
+import models.Ballot;
+import models.CouncillorType;
+import models.Host;
+import models.HostList;
+import models.Message;
+import models.MessageType;
+import models.PaxosRole;
+import paxos.FlexibleQuorums;
+import paxos.LearningMode;
+import paxos.PaxosNode;
+import utils.ElectionManager;
+import utils.InMemoryNetwork;
+import utils.NodeSetupUtils;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/* Learners only learn what a Phase 2 quorum of acceptors accepted under one
+ballot, in either mode, and the distinguished learner's commits reach every
+node with far fewer messages than the all-to-all broadcast */
+class LearningModeTest {
+
+    private static final int VALUE_COUNT = 20;
+
+    private List<PaxosNode> members = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        for (PaxosNode member : members) {
+            member.stopNode();
+        }
+        members.clear();
+    }
+
+    @Test
+    void DistinguishedLearnerWaitsForMajority() {
+        HostList hostList = new HostList();
+        List<Host> acceptors = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Host acceptor = new Host("127.0.0.1", 4571 + i, "A" + i, PaxosRole.ACCEPTOR, CouncillorType.M1);
+            hostList.addHost(acceptor);
+            acceptors.add(acceptor);
+        }
+        Host learnerHost = new Host("127.0.0.1", 4574, "L", PaxosRole.LEARNER, CouncillorType.M1);
+        hostList.addHost(learnerHost);
+        PaxosNode learner = NodeSetupUtils.createNode(learnerHost, hostList,
+                new InMemoryNetwork().connect(learnerHost));
+        members.add(learner);
+        learner.setQuiet(true);
+        learner.setLearningMode(LearningMode.DISTINGUISHED);
+
+        learner.handleMessage(new Message(MessageType.ACCEPTED, 0, 7, "value", acceptors.get(0)));
+        learner.handleMessage(new Message(MessageType.ACCEPTED, 0, 7, "value", acceptors.get(0)));
+        assertNull(learner.getLearnedValue(0));
+        // a second acceptor under another ballot is no majority either
+        learner.handleMessage(new Message(MessageType.ACCEPTED, 0, 9, "value", acceptors.get(1)));
+        assertNull(learner.getLearnedValue(0));
+        learner.handleMessage(new Message(MessageType.ACCEPTED, 0, 7, "value", acceptors.get(2)));
+        assertEquals("value", learner.getLearnedValue(0));
+    }
+
+    @Test
+    void CompetingProposersNeedQuorumToBeLearned() {
+        List<Host> acceptors = new ArrayList<>();
+        PaxosNode learner = learnerOf(acceptors);
+        int firstBallot = Ballot.of(1, 0);
+        int secondBallot = Ballot.of(1, 1);
+
+        // each proposer got one acceptance, which chooses neither value
+        learner.handleMessage(new Message(MessageType.ACCEPTED, 0, firstBallot, "first", acceptors.get(0)));
+        learner.handleMessage(new Message(MessageType.ACCEPTED, 0, secondBallot, "second", acceptors.get(1)));
+        assertNull(learner.getLearnedValue(0));
+        learner.handleMessage(new Message(MessageType.ACCEPTED, 0, secondBallot, "second", acceptors.get(2)));
+        assertEquals("second", learner.getLearnedValue(0));
+        // a late acceptance of the losing ballot changes nothing
+        learner.handleMessage(new Message(MessageType.ACCEPTED, 0, firstBallot, "first", acceptors.get(1)));
+        learner.handleMessage(new Message(MessageType.ACCEPTED, 0, firstBallot, "first", acceptors.get(2)));
+        assertEquals("second", learner.getLearnedValue(0));
+        assertEquals("second", learner.getConsensusValue());
+    }
+
+    @Test
+    void LearnersUsePhaseTwoQuorumSize() {
+        List<Host> acceptors = new ArrayList<>();
+        PaxosNode learner = learnerOf(acceptors);
+        learner.setQuorumSystem(new FlexibleQuorums(3, 1));
+
+        learner.handleMessage(new Message(MessageType.ACCEPTED, 0, Ballot.of(1, 0), "value", acceptors.get(0)));
+        assertEquals("value", learner.getLearnedValue(0));
+    }
+
+    /* An unstarted all-to-all learner next to two proposers and three acceptors, which are added to the list */
+    private PaxosNode learnerOf(List<Host> acceptors) {
+        HostList hostList = new HostList();
+        hostList.addHost(new Host("127.0.0.1", 4570, "P0", PaxosRole.PROPOSER, CouncillorType.M1));
+        hostList.addHost(new Host("127.0.0.1", 4571, "P1", PaxosRole.PROPOSER, CouncillorType.M1));
+        for (int i = 0; i < 3; i++) {
+            Host acceptor = new Host("127.0.0.1", 4572 + i, "A" + i, PaxosRole.ACCEPTOR, CouncillorType.M1);
+            hostList.addHost(acceptor);
+            acceptors.add(acceptor);
+        }
+        Host learnerHost = new Host("127.0.0.1", 4575, "L", PaxosRole.LEARNER, CouncillorType.M1);
+        hostList.addHost(learnerHost);
+        PaxosNode learner = NodeSetupUtils.createNode(learnerHost, hostList,
+                new InMemoryNetwork().connect(learnerHost));
+        members.add(learner);
+        learner.setQuiet(true);
+        return learner;
+    }
+
+    @Test
+    void DistinguishedModeSendsFewerMessages() throws Exception {
+        long allToAll = decide(LearningMode.ALL_TO_ALL);
+        long distinguished = decide(LearningMode.DISTINGUISHED);
+        assertTrue(distinguished * 2 < allToAll,
+                "distinguished sent " + distinguished + " messages, all-to-all " + allToAll);
+    }
+
+    /* Decides VALUE_COUNT values on a 9 node cluster and returns the messages it took */
+    private long decide(LearningMode mode) throws Exception {
+        InMemoryNetwork network = new InMemoryNetwork();
+        List<PaxosNode> cluster = cluster(network, 4, 4);
+        members.addAll(cluster);
+        for (PaxosNode node : cluster) {
+            node.setQuiet(true);
+            node.setLearningMode(mode);
+            node.startNode();
+        }
+        PaxosNode leader = ElectionManager.getProposers(cluster).get(0);
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            leader.submit("command-" + i);
+        }
+        // every acceptor and learner, not just the learner acceptors report to, learns every value
+        for (PaxosNode node : cluster) {
+            if (node.getRole() == PaxosRole.PROPOSER) {
+                continue;
+            }
+            assertEquals("command-" + (VALUE_COUNT - 1), node.whenLearned(VALUE_COUNT - 1).get(10, TimeUnit.SECONDS));
+        }
+        Thread.sleep(100);
+        tearDown();
+        return network.getDeliveredCount();
+    }
+
+    private static List<PaxosNode> cluster(InMemoryNetwork network, int acceptorCount, int learnerCount) {
+        HostList hostList = new HostList();
+        int port = 4570;
+        hostList.addHost(new Host("127.0.0.1", port++, "P", PaxosRole.PROPOSER, CouncillorType.M1));
+        for (int i = 0; i < acceptorCount; i++) {
+            hostList.addHost(new Host("127.0.0.1", port++, "A" + i, PaxosRole.ACCEPTOR, CouncillorType.M1));
+        }
+        for (int i = 0; i < learnerCount; i++) {
+            hostList.addHost(new Host("127.0.0.1", port++, "L" + i, PaxosRole.LEARNER, CouncillorType.M1));
+        }
+        List<PaxosNode> nodes = new ArrayList<>();
+        for (Host host : hostList.getHosts()) {
+            nodes.add(NodeSetupUtils.createNode(host, hostList, network.connect(host)));
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,167 @@
+import storage.FileChannelLogStorage;
+import storage.LogStorage;
+import storage.MappedSegmentLogStorage;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/* Both log storages return the newest record per slot and survive a reopen;
+the mapped storage deletes segments once they are compacted, finishes a
+compaction a crash interrupted and refuses a log with a segment missing */
+class LogStorageTest {
+
+    @TempDir
+    File directory;
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(ByteBuffer view) {
+        byte[] bytes = new byte[view.remaining()];
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void checkNewestRecordWins(LogStorage storage) throws Exception {
+        for (int slot = 0; slot < 100; slot++) {
+            storage.append(slot, bytes("value-" + slot));
+        }
+        storage.append(42, bytes("replaced"));
+        assertEquals("value-7", string(storage.read(7)));
+        assertEquals("replaced", string(storage.read(42)));
+        assertNull(storage.read(100));
+        assertEquals(99, storage.getLastSlot());
+    }
+
+    @Test
+    void MappedStorageReadsAndReopens() throws Exception {
+        File segments = new File(directory, "mapped");
+        MappedSegmentLogStorage storage = new MappedSegmentLogStorage(segments, 4096, 64);
+        checkNewestRecordWins(storage);
+        storage.close();
+
+        MappedSegmentLogStorage reopened = new MappedSegmentLogStorage(segments, 4096, 64);
+        assertEquals("replaced", string(reopened.read(42)));
+        assertEquals(99, reopened.getLastSlot());
+        reopened.close();
+    }
+
+    @Test
+    void FileChannelStorageReadsAndReopens() throws Exception {
+        File file = new File(directory, "plain.log");
+        FileChannelLogStorage storage = new FileChannelLogStorage(file);
+        checkNewestRecordWins(storage);
+        storage.close();
+
+        FileChannelLogStorage reopened = new FileChannelLogStorage(file);
+        assertEquals("replaced", string(reopened.read(42)));
+        assertEquals("value-99", string(reopened.read(99)));
+        reopened.close();
+    }
+
+    @Test
+    void CompactionDeletesOldSegments() throws Exception {
+        File segments = new File(directory, "compacted");
+        MappedSegmentLogStorage storage = new MappedSegmentLogStorage(segments, 1024, 128);
+        byte[] record = new byte[100];
+        for (int slot = 0; slot < 1000; slot++) {
+            storage.append(slot, record);
+        }
+        int before = storage.getSegmentCount();
+        assertTrue(before > 50);
+
+        storage.truncateBefore(900);
+        assertTrue(storage.getSegmentCount() < before / 5);
+        assertNull(storage.read(10));
+        assertEquals(100, storage.read(950).remaining());
+        // only the last index file and the manifest remain besides the segments
+        assertEquals(storage.getSegmentCount() + 2, segments.list().length);
+
+        storage.append(5, record);
+        assertNull(storage.read(5));
+        storage.close();
+    }
+
+    @Test
+    void InterruptedCompactionIsFinishedOnOpen() throws Exception {
+        File segments = new File(directory, "interrupted");
+        File crashed = new File(directory, "crashed");
+        MappedSegmentLogStorage storage = new MappedSegmentLogStorage(segments, 1024, 128);
+        byte[] record = new byte[100];
+        for (int slot = 0; slot < 1000; slot++) {
+            storage.append(slot, record);
+        }
+        storage.close();
+        copyDirectory(segments, crashed);
+
+        storage = new MappedSegmentLogStorage(segments, 1024, 128);
+        storage.truncateBefore(900);
+        int compactedCount = storage.getSegmentCount();
+        storage.close();
+        // a crash right after the watermark was written leaves every old file in place
+        Files.copy(new File(segments, "manifest").toPath(), new File(crashed, "manifest").toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+
+        MappedSegmentLogStorage reopened = new MappedSegmentLogStorage(crashed, 1024, 128);
+        assertEquals(900, reopened.getFirstSlot());
+        assertEquals(compactedCount, reopened.getSegmentCount());
+        assertNull(reopened.read(10));
+        assertEquals(100, reopened.read(950).remaining());
+        reopened.close();
+    }
+
+    @Test
+    void MissingSegmentIsDetected() throws Exception {
+        File segments = new File(directory, "gap");
+        MappedSegmentLogStorage storage = new MappedSegmentLogStorage(segments, 1024, 128);
+        byte[] record = new byte[100];
+        for (int slot = 0; slot < 100; slot++) {
+            storage.append(slot, record);
+        }
+        storage.truncateBefore(20);
+        storage.close();
+
+        // a live segment in the middle of the log, not a compacted one
+        assertTrue(new File(segments, "segment-0000000005.log").delete());
+        assertThrows(IOException.class, () -> new MappedSegmentLogStorage(segments, 1024, 128));
+    }
+
+    @Test
+    void ClearedStorageReopensEmpty() throws Exception {
+        File segments = new File(directory, "cleared");
+        MappedSegmentLogStorage storage = new MappedSegmentLogStorage(segments, 1024, 128);
+        byte[] record = new byte[100];
+        for (int slot = 0; slot < 100; slot++) {
+            storage.append(slot, record);
+        }
+        storage.truncateBefore(50);
+        storage.clear();
+        storage.append(3, record);
+        storage.close();
+
+        MappedSegmentLogStorage reopened = new MappedSegmentLogStorage(segments, 1024, 128);
+        assertEquals(0, reopened.getFirstSlot());
+        assertEquals(3, reopened.getLastSlot());
+        assertEquals(100, reopened.read(3).remaining());
+        reopened.close();
+    }
+
+    private static void copyDirectory(File from, File to) throws IOException {
+        assertTrue(to.mkdirs());
+        for (File file : from.listFiles()) {
+            Files.copy(file.toPath(), new File(to, file.getName()).toPath());
+        }
+    }
+}
@@ -0,0 +1,102 @@
+import models.*;
+import utils.BinaryMessageCodec;
+import utils.JavaSerializationCodec;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/* Messages survive a round trip through the binary codec and frames written
+with Java serialization are still understood */
+class MessageCodecTest {
+
+    private HostList hostList;
+    private Host hostA;
+    private Host hostB;
+    private BinaryMessageCodec codec;
+
+    @BeforeEach
+    void setUp() {
+        String address = "127.0.0.1";
+        hostA = new Host(address, 4570, "M1", PaxosRole.PROPOSER, CouncillorType.M1);
+        hostB = new Host(address, 4571, "M2", PaxosRole.ACCEPTOR, CouncillorType.M2);
+
+        hostList = new HostList();
+        hostList.addHost(hostA);
+        hostList.addHost(hostB);
+        codec = new BinaryMessageCodec(hostList);
+    }
+
+    private Message roundTrip(Message message) throws IOException {
+        byte[] frame = codec.encode(message);
+        return codec.decode(frame, 0, frame.length);
+    }
+
+    @Test
+    void RoundTripKnownSender() throws IOException {
+        Message message = new Message(MessageType.PROMISE, 7, "M1", hostA);
+        message.setHighestSeenProposalNumber(9);
+
+        Message decoded = roundTrip(message);
+        assertEquals(message.toString(), decoded.toString());
+        assertEquals(9, decoded.getHighestSeenProposalNumber());
+        assertTrue(decoded.getSenderHost() == hostA, "Known senders should resolve to the shared host");
+    }
+
+    @Test
+    void RoundTripUnknownSender() throws IOException {
+        Host stranger = new Host("10.0.0.1", 5000, "M9", PaxosRole.LEARNER, CouncillorType.M4_9);
+        Message decoded = roundTrip(new Message(MessageType.ACCEPTED, 3, 42L, stranger));
+
+        assertEquals(stranger, decoded.getSenderHost());
+        assertEquals("M9", decoded.getSenderId());
+        assertEquals(PaxosRole.LEARNER, decoded.getSenderHost().getRole());
+        assertEquals(42L, decoded.getProposedValue());
+    }
+
+    @Test
+    void RoundTripValueTypes() throws IOException {
+        assertNull(roundTrip(new Message(MessageType.PREPARE, 1, null, hostB)).getProposedValue());
+        assertEquals(5, roundTrip(new Message(MessageType.PREPARE, 1, 5, hostB)).getProposedValue());
+        assertArrayEquals(new byte[] { 1, 2, 3 },
+                (byte[]) roundTrip(new Message(MessageType.PREPARE, 1, new byte[] { 1, 2, 3 }, hostB))
+                        .getProposedValue());
+        assertEquals(Arrays.asList("a", "b"),
+                roundTrip(new Message(MessageType.PREPARE, 1, new ArrayList<>(Arrays.asList("a", "b")), hostB))
+                        .getProposedValue());
+    }
+
+    @Test
+    void DecodeJavaSerializedFrame() throws IOException {
+        Message message = new Message(MessageType.PROPOSE, 2, "M2", hostB);
+        byte[] frame = new JavaSerializationCodec().encode(message);
+
+        Message decoded = codec.decode(frame, 0, frame.length);
+        assertEquals(message.toString(), decoded.toString());
+    }
+
+    @Test
+    void BinaryFrameIsSmaller() throws IOException {
+        Message message = new Message(MessageType.PROPOSE, 2, "M2", hostB);
+        int binarySize = codec.encode(message).length;
+        int javaSize = new JavaSerializationCodec().encode(message).length;
+        assertTrue(binarySize * 4 < javaSize, "binary " + binarySize + " bytes vs java " + javaSize + " bytes");
+    }
+
+    @Test
+    void RoundTripPromiseWithLogEntries() throws IOException {
+        ArrayList<LogEntry> entries = new ArrayList<>();
+        entries.add(new LogEntry(4, 2, "M1"));
+        entries.add(new LogEntry(5, 3, 17L));
+        Message decoded = roundTrip(new Message(MessageType.PROMISE, 4, 3, entries, hostB));
+
+        assertEquals(4, decoded.getSlot());
+        assertEquals(entries.toString(), decoded.getProposedValue().toString());
+    }
+}
@@ -0,0 +1,95 @@
+import metrics.JmxMetricsExporter;
+import metrics.LatencyHistogram;
+import metrics.MetricsRegistry;
+import metrics.TextMetricsExporter;
+import paxos.PaxosNode;
+import utils.ElectionManager;
+import utils.NodeSetupUtils;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import javax.management.MBeanServer;
+
+/* Phase latencies, queue depths and traffic are recorded while a leader
+streams values, and can be read back as text and over JMX */
+class MetricsTest {
+
+    private List<PaxosNode> members;
+
+    @AfterEach
+    void tearDown() {
+        if (members != null) {
+            for (PaxosNode member : members) {
+                member.stopNode();
+            }
+        }
+    }
+
+    @Test
+    void HistogramPercentilesWithinBucketResolution() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100000; value++) {
+            histogram.record(value * 1000);
+        }
+        assertEquals(100000, histogram.getCount());
+        assertEquals(100000000, histogram.getMax());
+        assertWithin(50000000, histogram.getValueAtPercentile(50));
+        assertWithin(99000000, histogram.getValueAtPercentile(99));
+        assertWithin(50000500, (long) histogram.getMean());
+        assertEquals(0, new LatencyHistogram().getValueAtPercentile(99));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(Math.abs(actual - expected) <= expected * 0.04, "expected about " + expected + " but was " + actual);
+    }
+
+    @Test
+    void ConsensusPhasesAndTrafficAreRecorded() throws Exception {
+        members = NodeSetupUtils.setupNodesFromFile("src/test/resources/multi_paxos_log.csv");
+        PaxosNode leader = ElectionManager.getProposers(members).get(0);
+        PaxosNode learner = ElectionManager.getLearners(members).get(0);
+        int valueCount = 50;
+        for (int i = 0; i < valueCount; i++) {
+            leader.submit("command-" + i);
+        }
+        long deadline = System.currentTimeMillis() + 10000;
+        while (learner.getAppliedSlotCount() < valueCount && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(valueCount, learner.getAppliedSlotCount());
+
+        MetricsRegistry leaderMetrics = leader.getMetrics();
+        LatencyHistogram acceptedQuorum = leaderMetrics.histogram("proposer.propose_to_accepted_quorum");
+        // the leader hears of the quorum independently of the learner
+        while (acceptedQuorum.getCount() < valueCount && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, leaderMetrics.histogram("proposer.prepare_to_promise_quorum").getCount());
+        assertEquals(valueCount, leaderMetrics.histogram("proposer.propose_to_accepted_quorum").getCount());
+        assertTrue(leaderMetrics.getCounters().get("network.bytes_sent.M2").get() > 0);
+        assertTrue(leaderMetrics.getGauges().containsKey("network.send_queue_depth"));
+        assertTrue(leaderMetrics.getGauges().containsKey("node.message_queue_depth"));
+        assertEquals(valueCount, learner.getMetrics().histogram("learner.accepted_to_applied").getCount());
+        assertTrue(learner.getMetrics().getCounters().get("network.bytes_received.M2").get() > 0);
+
+        String dump = TextMetricsExporter.format(leaderMetrics);
+        System.out.print(dump);
+        assertTrue(dump.contains("M1.proposer.propose_to_accepted_quorum count=" + valueCount));
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        JmxMetricsExporter exporter = new JmxMetricsExporter(server);
+        exporter.start(leaderMetrics);
+        try {
+            assertEquals((long) valueCount,
+                    server.getAttribute(exporter.getObjectName(), "proposer.propose_to_accepted_quorum.count"));
+        } finally {
+            exporter.stop();
+        }
+        assertEquals(0, server.queryNames(new javax.management.ObjectName("paxos:type=Metrics,*"), null).size());
+    }
+}
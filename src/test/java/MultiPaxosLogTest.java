@@ -0,0 +1,185 @@
+import council.M1;
+import models.CouncillorType;
+import models.Host;
+import models.HostList;
+import models.LogEntry;
+import models.Message;
+import models.MessageType;
+import models.PaxosRole;
+import paxos.*;
+import utils.ElectionManager;
+import utils.InMemoryNetwork;
+import utils.NodeSetupUtils;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/* A stable leader decides a sequence of values into consecutive slots of the
+replicated log without the nodes being reset between decisions */
+public class MultiPaxosLogTest {
+
+    private List<PaxosNode> members;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        members = NodeSetupUtils.setupNodesFromFile("src/test/resources/multi_paxos_log.csv");
+        assertNotNull(members, "Members should be initialized.");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        for (PaxosNode member : members) {
+            member.stopNode();
+        }
+    }
+
+    private Object awaitLearnedValue(PaxosNode learner, int slot) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (learner.getLearnedValue(slot) == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        return learner.getLearnedValue(slot);
+    }
+
+    @Test
+    void testLeaderStreamsValuesIntoLog() throws InterruptedException {
+        PaxosNode leader = ElectionManager.getProposers(members).get(0);
+        PaxosNode learner = ElectionManager.getLearners(members).get(0);
+        int valueCount = 20;
+
+        for (int i = 0; i < valueCount; i++) {
+            leader.submit("command-" + i);
+        }
+
+        for (int i = 0; i < valueCount; i++) {
+            assertEquals("command-" + i, awaitLearnedValue(learner, i));
+        }
+        assertTrue(leader.isLeader(), "Proposer should keep leadership between slots");
+        assertEquals("command-" + (valueCount - 1), learner.getConsensusValue());
+    }
+
+    @Test
+    void testLogKeptInMappedSegments(@TempDir File directory) throws Exception {
+        for (PaxosNode member : members) {
+            member.useMappedLogStorage(directory);
+        }
+        PaxosNode leader = ElectionManager.getProposers(members).get(0);
+        PaxosNode learner = ElectionManager.getLearners(members).get(0);
+        int valueCount = 20;
+
+        for (int i = 0; i < valueCount; i++) {
+            leader.submit("command-" + i);
+        }
+
+        for (int i = 0; i < valueCount; i++) {
+            assertEquals("command-" + i, awaitLearnedValue(learner, i));
+        }
+        assertTrue(new File(directory, "learned-" + learner.getId()).list().length > 0);
+    }
+
+    @Test
+    void testPromiseReportsOnlyUnchosenSlots() throws InterruptedException {
+        HostList hostList = new HostList();
+        Host proposerHost = new Host("127.0.0.1", 4680, "P", PaxosRole.PROPOSER, CouncillorType.M1);
+        Host acceptorHost = new Host("127.0.0.1", 4681, "A", PaxosRole.ACCEPTOR, CouncillorType.M1);
+        hostList.addHost(proposerHost);
+        hostList.addHost(acceptorHost);
+        InMemoryNetwork network = new InMemoryNetwork();
+        BlockingQueue<Message> replies = new LinkedBlockingQueue<>();
+        network.connect(proposerHost).startListening(replies);
+        PaxosNode acceptor = NodeSetupUtils.createNode(acceptorHost, hostList, network.connect(acceptorHost));
+        acceptor.setQuiet(true);
+        members.add(acceptor);
+
+        // the acceptor accepted 100 slots and has seen the first 90 chosen
+        for (int slot = 0; slot < 100; slot++) {
+            acceptor.handleMessage(new Message(MessageType.PROPOSE, slot, 1, "command-" + slot, proposerHost));
+        }
+        for (int slot = 0; slot < 90; slot++) {
+            acceptor.handleMessage(new Message(MessageType.COMMIT, slot, 1, "command-" + slot, proposerHost));
+        }
+        replies.clear();
+
+        acceptor.handleMessage(new Message(MessageType.PREPARE, 0, 2, null, proposerHost));
+        Message promise = replies.poll(10, TimeUnit.SECONDS);
+        assertNotNull(promise);
+        assertEquals(MessageType.PROMISE, promise.getType());
+        // the chosen prefix is only marked by the slot the PROMISE starts at
+        assertEquals(90, promise.getSlot());
+        @SuppressWarnings("unchecked")
+        List<LogEntry> entries = (List<LogEntry>) promise.getProposedValue();
+        assertEquals(10, entries.size());
+        assertEquals(90, entries.get(0).getSlot());
+        assertEquals("command-99", entries.get(9).getValue());
+    }
+
+    @Test
+    void testSnapshotsCompactLogAndRestoreState(@TempDir File directory) throws Exception {
+        PaxosNode leader = ElectionManager.getProposers(members).get(0);
+        PaxosNode learner = ElectionManager.getLearners(members).get(0);
+        int interval = 10;
+        learner.enableSnapshots(directory, interval);
+        int valueCount = 45;
+
+        for (int i = 0; i < valueCount; i++) {
+            leader.submit("command-" + i);
+        }
+        // the learned value itself may already be compacted away, so wait on the applied state
+        long deadline = System.currentTimeMillis() + 10000;
+        while (learner.getAppliedSlotCount() < valueCount && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals("command-" + (valueCount - 1), learner.getConsensusValue());
+
+        deadline = System.currentTimeMillis() + 5000;
+        // no snapshot is taken while one is written, so the newest is only
+        // known to be less than an interval behind
+        while (learner.getLastSnapshotSlot() <= valueCount - interval && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(learner.getLastSnapshotSlot() > valueCount - interval,
+                "Snapshots should follow the applied slots");
+        assertEquals(null, learner.getLearnedValue(0), "Slots below the snapshot should be compacted");
+        // stopping lets a snapshot still being written finish, so read the slot afterwards
+        learner.stopNode();
+        int snapshotSlot = learner.getLastSnapshotSlot();
+
+        PaxosNode restarted = new M1(learner.getHost(), new HostList());
+        restarted.enableSnapshots(directory, interval);
+        assertEquals(snapshotSlot, restarted.getAppliedSlotCount());
+        assertEquals("command-" + (snapshotSlot - 1), restarted.getConsensusValue());
+        restarted.stopNode();
+    }
+
+    @Test
+    void testBatchedCommandsShareSlots() throws InterruptedException {
+        PaxosNode leader = ElectionManager.getProposers(members).get(0);
+        PaxosNode learner = ElectionManager.getLearners(members).get(0);
+        int commandCount = 500;
+        leader.enableBatching(64 * 1024, 100, 20);
+
+        for (int i = 0; i < commandCount; i++) {
+            leader.submit("command-" + i);
+        }
+
+        long deadline = System.currentTimeMillis() + 10000;
+        String lastCommand = "command-" + (commandCount - 1);
+        while (!lastCommand.equals(learner.getConsensusValue()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(lastCommand, learner.getConsensusValue());
+
+        BatchMetrics metrics = leader.getBatchMetrics();
+        System.out.println("INFO: " + metrics);
+        assertEquals(commandCount, metrics.getCommandCount());
+        assertTrue(metrics.getBatchCount() < commandCount, "Commands should have been batched");
+    }
+}
@@ -89,4 +89,19 @@ class NetworkHandlerTest {
         assertEquals(receivedByB.toString(), message.toString());
         assertEquals(receivedByC.toString(), message.toString());
     }
+
+    /* Many messages from A to B share one pooled connection and arrive in order */
+    @Test
+    void SendManyMessagesOverPooledConnection() throws InterruptedException {
+        System.out.println("INFO: testing SendManyMessagesOverPooledConnection");
+        int messageCount = 200;
+        for (int i = 0; i < messageCount; i++) {
+            memberA.send(new Message(MessageType.PREPARE, i, "Value " + i, hostA), hostB);
+        }
+
+        for (int i = 0; i < messageCount; i++) {
+            Message received = memberB.getReceivedMessage();
+            assertEquals(i, received.getProposalNumber());
+        }
+    }
 }
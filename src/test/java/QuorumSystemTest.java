@@ -0,0 +1,203 @@
+import models.CouncillorType;
+import models.Host;
+import models.HostList;
+import models.PaxosRole;
+import models.Message;
+import paxos.FlexibleQuorums;
+import paxos.GridQuorums;
+import paxos.LearningMode;
+import paxos.MajorityQuorums;
+import paxos.PaxosNode;
+import paxos.QuorumSystem;
+import utils.InMemoryNetwork;
+import utils.NodeSetupUtils;
+import utils.Transport;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/* Phase 1 and Phase 2 quorums can be sized separately as long as they
+intersect, and small Phase 2 quorums keep slow acceptors off the path of
+every decision */
+class QuorumSystemTest {
+
+    private static final int SAMPLES = 10;
+    private static final int SLOW_DELAY_MILLIS = 100;
+
+    private final List<PaxosNode> members = new ArrayList<>();
+    private static final ScheduledExecutorService links = Executors.newSingleThreadScheduledExecutor();
+
+    @AfterEach
+    void tearDown() {
+        for (PaxosNode member : members) {
+            member.stopNode();
+        }
+        members.clear();
+    }
+
+    @AfterAll
+    static void shutDown() {
+        links.shutdownNow();
+    }
+
+    @Test
+    void QuorumsMustIntersect() {
+        List<Host> acceptors = acceptors(4);
+        new FlexibleQuorums(3, 2).validate(acceptors);
+        new FlexibleQuorums(4, 1).validate(acceptors);
+        assertThrows(IllegalArgumentException.class, () -> new FlexibleQuorums(2, 2).validate(acceptors));
+        assertThrows(IllegalArgumentException.class, () -> new FlexibleQuorums(5, 1).validate(acceptors));
+        new GridQuorums(2, 2).validate(acceptors);
+        assertThrows(IllegalArgumentException.class, () -> new GridQuorums(3, 2).validate(acceptors));
+
+        QuorumSystem flexible = new FlexibleQuorums(4, 1);
+        assertTrue(flexible.isPhaseTwoQuorum(acceptors.subList(3, 4), acceptors));
+        assertFalse(flexible.isPhaseOneQuorum(acceptors.subList(0, 3), acceptors));
+        // responders outside the configuration do not count
+        assertFalse(new MajorityQuorums().isPhaseTwoQuorum(acceptors(6).subList(4, 6), acceptors.subList(0, 3)));
+    }
+
+    @Test
+    void GridUsesColumnsThenRows() {
+        List<Host> acceptors = acceptors(6);
+        QuorumSystem grid = new GridQuorums(2, 3);
+        Host a0 = acceptors.get(0);
+        Host a1 = acceptors.get(1);
+        Host a2 = acceptors.get(2);
+        Host a3 = acceptors.get(3);
+        Host a4 = acceptors.get(4);
+        // rows are a0 a1 a2 and a3 a4 a5
+        assertTrue(grid.isPhaseTwoQuorum(Arrays.asList(a0, a1, a2), acceptors));
+        assertFalse(grid.isPhaseTwoQuorum(Arrays.asList(a0, a1, a3, a4), acceptors));
+        assertTrue(grid.isPhaseOneQuorum(Arrays.asList(a1, a4), acceptors));
+        assertFalse(grid.isPhaseOneQuorum(Arrays.asList(a0, a1, a2), acceptors));
+        assertEquals(2, grid.getPhaseOneSize(acceptors));
+        assertEquals(3, grid.getPhaseTwoSize(acceptors));
+    }
+
+    @Test
+    void InvalidQuorumsAreRefused() {
+        HostList hostList = hostList();
+        PaxosNode node = NodeSetupUtils.createNode(hostList.getHosts().get(0), hostList,
+                new InMemoryNetwork().connect(hostList.getHosts().get(0)));
+        assertThrows(IllegalArgumentException.class, () -> node.setQuorumSystem(new FlexibleQuorums(1, 2)));
+        node.setQuorumSystem(new FlexibleQuorums(3, 1));
+        node.setFastMode(true);
+        assertThrows(IllegalStateException.class, node::startNode);
+    }
+
+    @Test
+    void SmallPhaseTwoQuorumsSkipSlowAcceptors() throws Exception {
+        long majority = decideSequentially(new MajorityQuorums());
+        tearDown();
+        long flexible = decideSequentially(new FlexibleQuorums(3, 1));
+        assertTrue(flexible * 3 < majority, "majority " + majority + "ms, flexible " + flexible + "ms");
+
+        PaxosNode leader = members.get(0);
+        assertEquals(1, leader.getMetrics().getGauges().get("quorum.phase2_size").getValue());
+        assertEquals(1, leader.getMetrics().getGauges().get("quorum.system.flexible").getValue());
+        assertEquals(0, leader.getMetrics().getGauges().get("quorum.system.majority").getValue());
+    }
+
+    /* Starts the cluster of hostList() and times SAMPLES decisions after the first */
+    private long decideSequentially(QuorumSystem quorums) throws Exception {
+        HostList hostList = hostList();
+        InMemoryNetwork network = new InMemoryNetwork();
+        for (Host host : hostList.getHosts()) {
+            Transport transport = network.connect(host);
+            if (host.getId().startsWith("Slow")) {
+                transport = new SlowTransport(transport, links);
+            }
+            PaxosNode node = NodeSetupUtils.createNode(host, hostList, transport);
+            node.setQuiet(true);
+            // the learner counts a Phase 2 quorum, so latency follows the quorum size
+            node.setLearningMode(LearningMode.DISTINGUISHED);
+            node.setQuorumSystem(quorums);
+            node.startNode();
+            members.add(node);
+        }
+        PaxosNode leader = members.get(0);
+        PaxosNode learner = members.get(4);
+        // Phase 1 waits for the slow acceptors once
+        leader.submit("first");
+        learner.whenLearned(0).get(10, TimeUnit.SECONDS);
+
+        long start = System.nanoTime();
+        for (int i = 1; i <= SAMPLES; i++) {
+            leader.submit("value-" + i);
+            assertEquals("value-" + i, learner.whenLearned(i).get(10, TimeUnit.SECONDS));
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    /* A proposer, one fast and two slow acceptors, and a learner */
+    private static HostList hostList() {
+        HostList hostList = new HostList();
+        hostList.addHost(new Host("127.0.0.1", 4600, "P", PaxosRole.PROPOSER, CouncillorType.M1));
+        hostList.addHost(new Host("127.0.0.1", 4601, "A0", PaxosRole.ACCEPTOR, CouncillorType.M1));
+        hostList.addHost(new Host("127.0.0.1", 4602, "Slow1", PaxosRole.ACCEPTOR, CouncillorType.M1));
+        hostList.addHost(new Host("127.0.0.1", 4603, "Slow2", PaxosRole.ACCEPTOR, CouncillorType.M1));
+        hostList.addHost(new Host("127.0.0.1", 4604, "L", PaxosRole.LEARNER, CouncillorType.M1));
+        return hostList;
+    }
+
+    private static List<Host> acceptors(int count) {
+        List<Host> acceptors = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            acceptors.add(new Host("127.0.0.1", 4610 + i, "A" + i, PaxosRole.ACCEPTOR, CouncillorType.M1));
+        }
+        return acceptors;
+    }
+
+    /* Sends every message a fixed delay late, so retransmissions cannot overtake the first reply */
+    private static final class SlowTransport implements Transport {
+        private final Transport transport;
+        private final ScheduledExecutorService links;
+
+        SlowTransport(Transport transport, ScheduledExecutorService links) {
+            this.transport = transport;
+            this.links = links;
+        }
+
+        @Override
+        public void sendMessage(Message message, Host targetHost) {
+            links.schedule(() -> transport.sendMessage(message, targetHost), SLOW_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void startListening(BlockingQueue<Message> messageQueue) {
+            transport.startListening(messageQueue);
+        }
+
+        @Override
+        public void stopListening() {
+            transport.stopListening();
+        }
+
+        @Override
+        public void startMessageProcessing() {
+            transport.startMessageProcessing();
+        }
+
+        @Override
+        public void stopMessageProcessing() {
+            transport.stopMessageProcessing();
+        }
+
+        @Override
+        public Host getLocalHost() {
+            return transport.getLocalHost();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+import models.CouncillorType;
+import models.Host;
+import models.HostList;
+import models.PaxosRole;
+import models.Reconfiguration;
+import council.M1;
+import council.M4_9;
+import paxos.LearningMode;
+import paxos.PaxosNode;
+import utils.InMemoryNetwork;
+import utils.NodeSetupUtils;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/* Membership changes are decided in the log, and quorums after the change
+are counted in the new configuration, so swapping out a slow acceptor
+brings decision latency back down while the cluster keeps deciding */
+class ReconfigurationTest {
+
+    private static final int SAMPLES = 10;
+
+    private final InMemoryNetwork network = new InMemoryNetwork();
+    private final List<PaxosNode> members = new ArrayList<>();
+    private int nextSlot;
+
+    @AfterEach
+    void tearDown() {
+        for (PaxosNode member : members) {
+            member.stopNode();
+        }
+    }
+
+    @Test
+    void ViewsKeepMemberIndexes() {
+        HostList founding = new HostList();
+        Host proposer = new Host("127.0.0.1", 4570, "P", PaxosRole.PROPOSER, CouncillorType.M1);
+        Host a0 = new Host("127.0.0.1", 4571, "A0", PaxosRole.ACCEPTOR, CouncillorType.M1);
+        Host a1 = new Host("127.0.0.1", 4572, "A1", PaxosRole.ACCEPTOR, CouncillorType.M1);
+        Host a2 = new Host("127.0.0.1", 4573, "A2", PaxosRole.ACCEPTOR, CouncillorType.M1);
+        founding.addHost(proposer);
+        founding.addHost(a0);
+        founding.addHost(a1);
+        assertEquals(0, founding.getEpoch());
+
+        List<Host> hosts = new ArrayList<>(founding.getHosts());
+        hosts.remove(a1);
+        hosts.add(a2);
+        HostList next = founding.reconfigure(7, hosts);
+        assertEquals(1, next.getEpoch());
+        assertEquals(7, next.getConfigSlot());
+        assertEquals(hosts, next.getHosts());
+        assertEquals(founding.getHosts(), next.getFoundingHosts());
+        // the removed acceptor keeps its index and the new one gets the next
+        assertEquals(2, next.getMemberIndex(a1));
+        assertEquals(3, next.getMemberIndex(a2));
+        assertEquals(a2, next.getMember(3));
+
+        HostList shrunk = next.reconfigure(9, founding.getHosts().subList(0, 2));
+        assertEquals(2, shrunk.getEpoch());
+        assertEquals(1, shrunk.getAcceptorHosts().size());
+        assertEquals(3, shrunk.getMemberIndex(a2));
+    }
+
+    @Test
+    void SwappingSlowAcceptorRestoresLatency() throws Exception {
+        HostList hostList = new HostList();
+        Host proposerHost = new Host("127.0.0.1", 4580, "P", PaxosRole.PROPOSER, CouncillorType.M1);
+        Host fast = new Host("127.0.0.1", 4581, "A0", PaxosRole.ACCEPTOR, CouncillorType.M1);
+        Host slow = new Host("127.0.0.1", 4582, "A1", PaxosRole.ACCEPTOR, CouncillorType.M4_9);
+        Host slowest = new Host("127.0.0.1", 4583, "A2", PaxosRole.ACCEPTOR, CouncillorType.M4_9);
+        Host learnerHost = new Host("127.0.0.1", 4584, "L", PaxosRole.LEARNER, CouncillorType.M1);
+        for (Host host : new Host[] { proposerHost, fast, slow, slowest, learnerHost }) {
+            hostList.addHost(host);
+        }
+        for (Host host : hostList.getHosts()) {
+            start(host, hostList);
+        }
+        PaxosNode proposer = members.get(0);
+        PaxosNode learner = members.get(4);
+
+        long before = decideSequentially(proposer, learner, "before");
+
+        // replace A2 by a fast acceptor, and keep submitting while the change is decided
+        Host replacement = new Host("127.0.0.1", 4585, "A3", PaxosRole.ACCEPTOR, CouncillorType.M1);
+        List<Host> hosts = hostList.getHosts();
+        hosts.remove(slowest);
+        hosts.add(replacement);
+        proposer.reconfigure(hosts);
+        int reconfigurationSlot = nextSlot++;
+        for (int i = 0; i < SAMPLES; i++) {
+            proposer.submit("during-" + i);
+            nextSlot++;
+        }
+        assertEquals(new Reconfiguration(hosts),
+                learner.whenLearned(reconfigurationSlot).get(10, TimeUnit.SECONDS));
+        assertEquals("during-" + (SAMPLES - 1), learner.whenLearned(nextSlot - 1).get(10, TimeUnit.SECONDS));
+        assertEquals(1, learner.getHostList().getEpoch());
+        assertEquals(1, proposer.getHostList().getEpoch());
+        assertEquals(3, proposer.getAcceptorsQuorumSize());
+
+        start(replacement, proposer.getHostList());
+        members.get(3).stopNode();
+
+        long after = decideSequentially(proposer, learner, "after");
+        assertTrue(after * 3 < before, "before " + before + "ms, after " + after + "ms");
+    }
+
+    @Test
+    void RestoredSnapshotKeepsView(@TempDir File directory) throws Exception {
+        HostList hostList = new HostList();
+        Host proposerHost = new Host("127.0.0.1", 4590, "P", PaxosRole.PROPOSER, CouncillorType.M1);
+        Host a0 = new Host("127.0.0.1", 4591, "A0", PaxosRole.ACCEPTOR, CouncillorType.M1);
+        Host a1 = new Host("127.0.0.1", 4592, "A1", PaxosRole.ACCEPTOR, CouncillorType.M1);
+        Host a2 = new Host("127.0.0.1", 4593, "A2", PaxosRole.ACCEPTOR, CouncillorType.M1);
+        Host learnerHost = new Host("127.0.0.1", 4594, "L", PaxosRole.LEARNER, CouncillorType.M1);
+        for (Host host : new Host[] { proposerHost, a0, a1, a2, learnerHost }) {
+            hostList.addHost(host);
+        }
+        for (Host host : hostList.getHosts()) {
+            start(host, hostList);
+        }
+        PaxosNode proposer = members.get(0);
+        PaxosNode learner = members.get(4);
+        learner.enableSnapshots(directory, 5);
+
+        decideSequentially(proposer, learner, "before");
+        Host replacement = new Host("127.0.0.1", 4595, "A3", PaxosRole.ACCEPTOR, CouncillorType.M1);
+        List<Host> hosts = hostList.getHosts();
+        hosts.remove(a2);
+        hosts.add(replacement);
+        proposer.reconfigure(hosts);
+        int reconfigurationSlot = nextSlot++;
+        assertEquals(new Reconfiguration(hosts),
+                learner.whenLearned(reconfigurationSlot).get(10, TimeUnit.SECONDS));
+        start(replacement, proposer.getHostList());
+        decideSequentially(proposer, learner, "after");
+
+        // the reconfiguration is compacted away, so only the snapshot can bring back its view
+        long deadline = System.currentTimeMillis() + 10000;
+        while (learner.getLastSnapshotSlot() <= reconfigurationSlot && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        learner.stopNode();
+        int snapshotSlot = learner.getLastSnapshotSlot();
+        assertTrue(snapshotSlot > reconfigurationSlot, "snapshot at slot " + snapshotSlot);
+
+        HostList founding = new HostList();
+        for (Host host : new Host[] { proposerHost, a0, a1, a2, learnerHost }) {
+            founding.addHost(host);
+        }
+        PaxosNode restarted = new M1(learnerHost, founding);
+        restarted.enableSnapshots(directory, 5);
+        HostList view = restarted.getHostList();
+        assertEquals(snapshotSlot, restarted.getAppliedSlotCount());
+        assertEquals(1, view.getEpoch());
+        assertEquals(reconfigurationSlot, view.getConfigSlot());
+        assertEquals(hosts, view.getHosts());
+        assertEquals(founding.getHosts(), view.getFoundingHosts());
+        // the removed acceptor keeps its index and the new one keeps the next
+        assertEquals(3, view.getMemberIndex(a2));
+        assertEquals(5, view.getMemberIndex(replacement));
+        restarted.stopNode();
+    }
+
+    /* Decides SAMPLES values one after another and returns the time taken in milliseconds */
+    private long decideSequentially(PaxosNode proposer, PaxosNode learner, String prefix) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < SAMPLES; i++) {
+            proposer.submit(prefix + "-" + i);
+            assertEquals(prefix + "-" + i, learner.whenLearned(nextSlot++).get(10, TimeUnit.SECONDS));
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private void start(Host host, HostList hostList) {
+        PaxosNode node = NodeSetupUtils.createNode(host, hostList, network.connect(host));
+        node.setQuiet(true);
+        // the learner counts a majority of acceptors, so latency follows the quorum
+        node.setLearningMode(LearningMode.DISTINGUISHED);
+        if (node instanceof M4_9) {
+            ((M4_9) node).setSendDelay(300);
+            ((M4_9) node).setReceiveDelay(0);
+        }
+        node.startNode();
+        members.add(node);
+    }
+}
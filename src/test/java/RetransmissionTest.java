@@ -0,0 +1,137 @@
+import models.Host;
+import models.HostList;
+import models.Message;
+import models.MessageType;
+import models.PaxosRole;
+import paxos.PaxosNode;
+import utils.ElectionManager;
+import utils.InMemoryNetwork;
+import utils.NodeSetupUtils;
+import utils.RttEstimator;
+import utils.Transport;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/* Round trips to each acceptor set its retransmission timeout, and a proposer
+whose messages or replies are lost sends them again instead of stalling */
+class RetransmissionTest {
+
+    private List<PaxosNode> members;
+
+    @AfterEach
+    void tearDown() {
+        if (members != null) {
+            for (PaxosNode member : members) {
+                member.stopNode();
+            }
+        }
+    }
+
+    @Test
+    void TimeoutFollowsSmoothedRtt() {
+        RttEstimator estimator = new RttEstimator(1000, 20, 60000);
+        assertEquals(1000, estimator.getTimeoutMillis());
+        for (int i = 0; i < 50; i++) {
+            estimator.sample(TimeUnit.MILLISECONDS.toNanos(100));
+        }
+        assertEquals(100, estimator.getSmoothedRttMillis(), 1);
+        assertTrue(estimator.getTimeoutMillis() >= 100 && estimator.getTimeoutMillis() < 120);
+
+        long before = estimator.getTimeoutMillis();
+        estimator.onTimeout();
+        assertEquals(2 * before, estimator.getTimeoutMillis());
+        for (int i = 0; i < 20; i++) {
+            estimator.onTimeout();
+        }
+        assertEquals(60000, estimator.getTimeoutMillis());
+
+        // jittery samples widen the timeout beyond the mean
+        RttEstimator jittery = new RttEstimator(1000, 20, 60000);
+        for (int i = 0; i < 50; i++) {
+            jittery.sample(TimeUnit.MILLISECONDS.toNanos(i % 2 == 0 ? 50 : 150));
+        }
+        assertTrue(jittery.getTimeoutMillis() > 250);
+    }
+
+    @Test
+    void LostPromisesAreRetransmitted() throws Exception {
+        HostList hostList = NodeSetupUtils.readHostList("src/test/resources/multi_paxos_log.csv");
+        InMemoryNetwork network = new InMemoryNetwork();
+        members = new ArrayList<>();
+        for (Host host : hostList.getHosts()) {
+            Transport transport = network.connect(host);
+            if (host.getRole() == PaxosRole.ACCEPTOR) {
+                transport = new FirstPromiseLost(transport);
+            }
+            PaxosNode node = NodeSetupUtils.createNode(host, hostList, transport);
+            node.setQuiet(true);
+            node.startNode();
+            members.add(node);
+        }
+        PaxosNode proposer = ElectionManager.getProposers(members).get(0);
+        PaxosNode learner = ElectionManager.getLearners(members).get(0);
+
+        proposer.initiateElection();
+        assertEquals(proposer.getId(), learner.whenLearned(0).get(10, TimeUnit.SECONDS));
+        assertTrue(proposer.getMetrics().counter("proposer.retransmissions").get() >= 1);
+
+        // replies to requests sent once bring the timeout down to the in-memory round trip
+        for (int i = 1; i <= 20; i++) {
+            proposer.submit("command-" + i);
+        }
+        learner.whenLearned(20).get(10, TimeUnit.SECONDS);
+        Host acceptor = hostList.getAcceptorHosts().get(0);
+        assertTrue(proposer.getRttTracker().getTimeoutMillis(acceptor) < RttEstimator.DEFAULT_INITIAL_TIMEOUT_MILLIS);
+    }
+
+    /* Drops the first PROMISE the acceptor sends */
+    private static class FirstPromiseLost implements Transport {
+        private final Transport transport;
+        private boolean dropped;
+
+        FirstPromiseLost(Transport transport) {
+            this.transport = transport;
+        }
+
+        @Override
+        public synchronized void sendMessage(Message message, Host targetHost) {
+            if (!dropped && message.getType() == MessageType.PROMISE) {
+                dropped = true;
+                return;
+            }
+            transport.sendMessage(message, targetHost);
+        }
+
+        @Override
+        public void startListening(BlockingQueue<Message> messageQueue) {
+            transport.startListening(messageQueue);
+        }
+
+        @Override
+        public void stopListening() {
+            transport.stopListening();
+        }
+
+        @Override
+        public void startMessageProcessing() {
+            transport.startMessageProcessing();
+        }
+
+        @Override
+        public void stopMessageProcessing() {
+            transport.stopMessageProcessing();
+        }
+
+        @Override
+        public Host getLocalHost() {
+            return transport.getLocalHost();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+import models.HostList;
+import simulation.CouncilSimulation;
+import simulation.SimulationResult;
+import utils.NodeSetupUtils;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/* Elections of the varied response council on virtual time: randomized
+behaviours never make learners disagree, and a seed replays exactly */
+class SimulatedElectionTest {
+
+    private static final String CONFIG = "src/test/resources/varied_response_vote.csv";
+    private static final long TIME_LIMIT_MILLIS = 120000;
+
+    private static HostList hostList;
+
+    @BeforeAll
+    static void readHosts() {
+        hostList = NodeSetupUtils.readHostList(CONFIG);
+        assertNotNull(hostList, "Hosts should be read from " + CONFIG);
+    }
+
+    @Test
+    void ThousandsOfRandomizedElectionsStaySafe() {
+        int elections = 5000;
+        int decided = 0;
+        long start = System.nanoTime();
+        for (long seed = 0; seed < elections; seed++) {
+            SimulationResult result = new CouncilSimulation(hostList, seed).run(TIME_LIMIT_MILLIS);
+            assertTrue(result.learnersAgree(), result.toString());
+            if (result.isDecided()) {
+                decided++;
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("INFO: %d simulated elections in %.2f s (%.0f per second), %d reached consensus%n",
+                elections, seconds, elections / seconds, decided);
+        assertTrue(decided > elections / 2, "Most elections should reach consensus, got " + decided);
+    }
+
+    @Test
+    void SeedReplaysExactly() {
+        for (long seed = 1000; seed < 1100; seed++) {
+            SimulationResult first = new CouncilSimulation(hostList, seed).run(TIME_LIMIT_MILLIS);
+            SimulationResult replay = new CouncilSimulation(hostList, seed).run(TIME_LIMIT_MILLIS);
+            assertEquals(first, replay, "Seed " + seed + " should replay the same election");
+        }
+    }
+}
@@ -0,0 +1,76 @@
+import paxos.PaxosNode;
+import utils.ElectionManager;
+import utils.InMemoryNetwork;
+import utils.NodeSetupUtils;
+import utils.NodeThreads;
+import utils.ThreadMode;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/* Node threads run in the chosen mode, falling back to platform threads on a
+JVM without virtual threads, and hundreds of nodes fit in one JVM */
+class VirtualThreadModeTest {
+
+    private static final String CONFIG = "src/test/resources/multi_paxos_log.csv";
+
+    private final List<PaxosNode> members = new ArrayList<>();
+    private ThreadMode previousMode;
+
+    @BeforeEach
+    void setup() {
+        previousMode = NodeThreads.getMode();
+        NodeThreads.setMode(ThreadMode.VIRTUAL);
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (PaxosNode member : members) {
+            member.stopNode();
+        }
+        NodeThreads.setMode(previousMode);
+    }
+
+    @Test
+    void CreatesThreadsInEffectiveMode() throws Exception {
+        CountDownLatch ran = new CountDownLatch(1);
+        Thread thread = NodeThreads.start("VirtualThreadModeTest", ran::countDown);
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+
+        boolean virtual = NodeThreads.isVirtualAvailable()
+                && (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+        assertEquals(NodeThreads.getEffectiveMode() == ThreadMode.VIRTUAL, virtual);
+        assertEquals(NodeThreads.isVirtualAvailable(), NodeThreads.getEffectiveMode() == ThreadMode.VIRTUAL);
+    }
+
+    @Test
+    void HundredsOfNodesInOneJvm() throws InterruptedException {
+        int clusterCount = 100;
+        List<PaxosNode> learners = new ArrayList<>();
+        for (int c = 0; c < clusterCount; c++) {
+            List<PaxosNode> cluster = NodeSetupUtils.setupNodesFromFile(CONFIG, new InMemoryNetwork());
+            members.addAll(cluster);
+            for (PaxosNode node : cluster) {
+                node.setQuiet(true);
+            }
+            ElectionManager.getProposers(cluster).get(0).submit("cluster-" + c);
+            learners.add(ElectionManager.getLearners(cluster).get(0));
+        }
+        assertTrue(members.size() >= 3 * clusterCount);
+
+        long deadline = System.currentTimeMillis() + 20000;
+        for (int c = 0; c < clusterCount; c++) {
+            PaxosNode learner = learners.get(c);
+            while (learner.getConsensusValue() == null && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals("cluster-" + c, learner.getConsensusValue());
+        }
+    }
+}
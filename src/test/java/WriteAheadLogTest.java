@@ -0,0 +1,104 @@
+import storage.WriteAheadLog;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/* Records appended concurrently are group committed and replayed in order
+after a restart, and a torn tail is ignored */
+class WriteAheadLogTest {
+
+    @TempDir
+    File directory;
+
+    private List<String> replay(File file) throws IOException {
+        List<String> records = new ArrayList<>();
+        WriteAheadLog log = new WriteAheadLog(file);
+        log.replay(bytes -> records.add(new String(bytes, StandardCharsets.UTF_8)));
+        log.close();
+        return records;
+    }
+
+    @Test
+    void ConcurrentAppendsAreGroupCommitted() throws Exception {
+        File file = new File(directory, "test.wal");
+        WriteAheadLog log = new WriteAheadLog(file);
+        int threads = 8;
+        int recordsPerThread = 250;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<CompletableFuture<Void>> appends = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            executor.submit(() -> {
+                for (int i = 0; i < recordsPerThread; i++) {
+                    CompletableFuture<Void> durable = log.append(
+                            ("record-" + thread + "-" + i).getBytes(StandardCharsets.UTF_8));
+                    synchronized (appends) {
+                        appends.add(durable);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        CompletableFuture.allOf(appends.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+
+        System.out.println("INFO: " + log.getRecordCount() + " records in " + log.getSyncCount() + " syncs");
+        assertEquals(threads * recordsPerThread, log.getRecordCount());
+        assertTrue(log.getSyncCount() <= log.getRecordCount());
+        log.close();
+
+        List<String> records = replay(file);
+        assertEquals(threads * recordsPerThread, records.size());
+        assertTrue(records.contains("record-7-249"));
+    }
+
+    @Test
+    void TornTailIsDiscarded() throws Exception {
+        File file = new File(directory, "torn.wal");
+        WriteAheadLog log = new WriteAheadLog(file);
+        log.append("first".getBytes(StandardCharsets.UTF_8));
+        log.append("second".getBytes(StandardCharsets.UTF_8)).get(5, TimeUnit.SECONDS);
+        log.close();
+
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(new byte[] { 0, 0, 0, 42, 1, 2 }); // a header with no payload behind it
+        }
+
+        List<String> records = replay(file);
+        assertEquals(2, records.size());
+        assertEquals("second", records.get(1));
+        assertEquals(records, replay(file));
+    }
+
+    @Test
+    void CompactionKeepsOnlyLiveRecords() throws Exception {
+        File file = new File(directory, "compacted.wal");
+        WriteAheadLog log = new WriteAheadLog(file);
+        for (int i = 0; i < 100; i++) {
+            log.append(("old-" + i).getBytes(StandardCharsets.UTF_8));
+        }
+        List<byte[]> live = new ArrayList<>();
+        live.add("kept".getBytes(StandardCharsets.UTF_8));
+        log.compact(live);
+        log.append("after".getBytes(StandardCharsets.UTF_8)).get(5, TimeUnit.SECONDS);
+        log.close();
+
+        List<String> records = replay(file);
+        assertEquals(2, records.size());
+        assertEquals("kept", records.get(0));
+        assertEquals("after", records.get(1));
+    }
+}